@@ -0,0 +1,143 @@
+package benchmarks;
+
+import database.ConnectionProfile;
+import database.PostingRow;
+import database.SqliteConnection;
+import database.SqliteDb;
+import tools.DateCodec;
+import tools.PasswordHasher;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * BenchmarkDatabase creates a throwaway application database in a temporary file and points
+ * SqliteConnection at it, so benchmarks never touch database.db. The file is migrated to the current schema
+ * and gets one user whose accounts hold postings generated from a fixed seed: three quarters expenses,
+ * one quarter incomes, spread over the last year. close() restores the previous profile and deletes the file.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    public static final String USERNAME = "benchmark";
+    public static final String PASSWORD = "benchmark";
+    private static final long SEED = 42;
+
+    private final ConnectionProfile previousProfile;
+    private final File file;
+    private final int userId;
+    private final List<Integer> accountIds;
+
+    private BenchmarkDatabase(ConnectionProfile previousProfile, File file, int userId, List<Integer> accountIds) {
+        this.previousProfile = previousProfile;
+        this.file = file;
+        this.userId = userId;
+        this.accountIds = accountIds;
+    }
+
+    /**
+     * @param accounts number of the user's accounts
+     * @param rowsPerAccount expenses and incomes of every account
+     * @return database used by SqliteConnection until close()
+     */
+    public static BenchmarkDatabase create(int accounts, int rowsPerAccount) throws IOException, SQLException {
+        File file = File.createTempFile("budget-benchmark", ".db");
+        ConnectionProfile previousProfile = SqliteConnection.getProfile();
+        ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+        profile.setPath(file.getPath());
+        SqliteConnection.configure(profile);
+        SqliteConnection.migrate();
+
+        int userId;
+        List<Integer> accountIds = new ArrayList<>();
+        try (Connection connection = SqliteConnection.connector()) {
+            if(connection == null) {
+                throw new SQLException("could not open " + file);
+            }
+            try (Statement statement = connection.createStatement()) {
+                for(String name : new String[]{"Food", "Transport", "Bills"}) {
+                    statement.execute("INSERT INTO expensesCategories (name) VALUES ('" + name + "')");
+                }
+                for(String name : new String[]{"Salary", "Gifts"}) {
+                    statement.execute("INSERT INTO incomesCategories (name) VALUES ('" + name + "')");
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO users " +
+                    "(name, username, password_hash, monthlyBudget) VALUES (?,?,?,?)")) {
+                statement.setString(1, USERNAME);
+                statement.setString(2, USERNAME);
+                statement.setString(3, PasswordHasher.hash(PASSWORD.toCharArray()));
+                statement.setLong(4, 300_000);
+                statement.executeUpdate();
+            }
+            userId = lastInsertId(connection);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO accounts " +
+                    "(user_id, name, balance, type) VALUES (?,?,?,1)")) {
+                for(int account = 0; account < accounts; account++) {
+                    statement.setInt(1, userId);
+                    statement.setString(2, "Account " + account);
+                    statement.setLong(3, 1_000_000);
+                    statement.executeUpdate();
+                    accountIds.add(lastInsertId(connection));
+                }
+            }
+        }
+
+        Random random = new Random(SEED);
+        int today = DateCodec.today();
+        List<PostingRow> expenses = new ArrayList<>();
+        List<PostingRow> incomes = new ArrayList<>();
+        for(int accountId : accountIds) {
+            for(int row = 0; row < rowsPerAccount; row++) {
+                int day = today - random.nextInt(365);
+                if(row % 4 == 3) {
+                    incomes.add(new PostingRow(accountId, 1 + random.nextInt(2), "income " + row,
+                            10_000 + random.nextInt(500_000), day));
+                } else {
+                    expenses.add(new PostingRow(accountId, 1 + random.nextInt(3), "expense " + row,
+                            100 + random.nextInt(50_000), day));
+                }
+            }
+        }
+        SqliteDb db = new SqliteDb();
+        try {
+            db.insertExpenses(expenses);
+            db.insertIncomes(incomes);
+        } finally {
+            db.closeConnection();
+        }
+        return new BenchmarkDatabase(previousProfile, file, userId, accountIds);
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+    public List<Integer> getAccountIds() {
+        return accountIds;
+    }
+
+    /**
+     * Points SqliteConnection back at the previous database and deletes the benchmark file
+     */
+    @Override
+    public void close() {
+        SqliteConnection.configure(previousProfile);
+        for(String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+
+    private static int lastInsertId(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT last_insert_rowid()")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tools.BudgetOverview;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Numbers behind the overview and statistics charts of the main scene, for a 31 day month
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChartMathBenchmark {
+    private long[] dailyTotals;
+
+    @Setup
+    public void createTotals() {
+        Random random = new Random(42);
+        dailyTotals = new long[31];
+        for(int day = 0; day < dailyTotals.length; day++) {
+            dailyTotals[day] = random.nextInt(20_000);
+        }
+    }
+
+    @Benchmark
+    public void budgetOverview(Blackhole blackhole) {
+        BudgetOverview overview = new BudgetOverview(300_000, dailyTotals, 15);
+        blackhole.consume(overview.getCumulativeSpending());
+        blackhole.consume(overview.getSpentPart());
+        blackhole.consume(overview.getMoneyPerDay());
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import database.SqliteDb;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import users.User;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a user with all accounts and their regular expenses and incomes, as done after login.
+ * The user is loaded by id: login additionally checks the password hash, which is slow on purpose
+ * and would hide the cost of reading postings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HydrationBenchmark {
+    private static final int ACCOUNTS = 4;
+
+    @Param({"10", "1000", "100000"})
+    public int rowsPerAccount;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws Exception {
+        database = BenchmarkDatabase.create(ACCOUNTS, rowsPerAccount);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() {
+        database.close();
+    }
+
+    @Benchmark
+    public User loadUser() {
+        SqliteDb db = new SqliteDb();
+        try {
+            db.setHydrationParallelism(parallelism);
+            return db.loadUser(database.getUserId());
+        } finally {
+            db.closeConnection();
+        }
+    }
+}
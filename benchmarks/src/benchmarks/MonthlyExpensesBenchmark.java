@@ -0,0 +1,75 @@
+package benchmarks;
+
+import database.MonthlyTotal;
+import database.SqliteDb;
+import expenses.ExpenseCategory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.DateCodec;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Current month's statistics of the main scene and the monthly totals of the last year,
+ * aggregated in database from a year of history
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonthlyExpensesBenchmark {
+    private static final int ACCOUNTS = 4;
+
+    @Param({"10", "1000", "100000"})
+    public int rowsPerAccount;
+
+    private BenchmarkDatabase database;
+    private SqliteDb db;
+    private int year;
+    private int month;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws Exception {
+        database = BenchmarkDatabase.create(ACCOUNTS, rowsPerAccount);
+        db = new SqliteDb();
+        int today = DateCodec.today();
+        year = DateCodec.year(today);
+        month = DateCodec.month(today);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() {
+        db.closeConnection();
+        database.close();
+    }
+
+    @Benchmark
+    public long[] dailyExpenseTotals() {
+        return db.getDailyExpenseTotals(database.getUserId(), year, month);
+    }
+
+    @Benchmark
+    public Map<ExpenseCategory,Long> monthExpenseTotalsByCategory() {
+        return db.getMonthExpenseTotalsByCategory(database.getUserId(), year, month);
+    }
+
+    @Benchmark
+    public List<MonthlyTotal> monthlyTotals() {
+        return db.getMonthlyTotals(database.getUserId(), (year - 1) * 100 + month, year * 100 + month);
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import database.PostingRow;
+import database.SqliteDb;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.DateCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing expenses: one autocommitted insert, an insert together with the account balance change
+ * in one transaction, and batched inserts. Results are per row. Every trial starts with a fresh database
+ * which grows while the trial runs, the same way a ledger grows in use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostingBenchmark {
+    private static final int BATCH_SIZE = 1000;
+
+    private BenchmarkDatabase database;
+    private SqliteDb db;
+    private int accountId;
+    private int today;
+    private List<PostingRow> batch;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws Exception {
+        database = BenchmarkDatabase.create(1, 1000);
+        db = new SqliteDb();
+        accountId = database.getAccountIds().get(0);
+        today = DateCodec.today();
+        batch = new ArrayList<>(BATCH_SIZE);
+        for(int row = 0; row < BATCH_SIZE; row++) {
+            batch.add(new PostingRow(accountId, 1 + row % 3, "batched " + row, 100 + row, today - row % 365));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() {
+        db.closeConnection();
+        database.close();
+    }
+
+    @Benchmark
+    public void insertExpense() {
+        db.insertExpense(accountId, 1, "single", 1234, today);
+    }
+
+    @Benchmark
+    public int postExpense() {
+        return db.postExpense(accountId, 1, "posted", 1234, today);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertExpenses() {
+        return db.insertExpenses(batch);
+    }
+}
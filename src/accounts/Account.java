@@ -1,23 +1,25 @@
 package accounts;
 
-import database.SqliteDb;
+import database.SqliteConnection;
 import expenses.Expense;
 import expenses.RegularExpense;
 import incomes.Income;
 import incomes.RegularIncome;
+import tools.Money;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 public class Account {
 
     private int id;
     private String accountName;
-    private double accountBalance;
+    private long accountBalance; //in minor units, see tools.Money
     private ArrayList<Expense> expensesList;
     private ArrayList<RegularExpense> regularExpensesList;
     private ArrayList<Income> incomesList;
     private ArrayList<RegularIncome> regularIncomesList;
 
-    public Account( int id, String accountName, double accountBalance) {
+    public Account( int id, String accountName, long accountBalance) {
         this.accountName = accountName;
         this.accountBalance = accountBalance;
         this.id = id;
@@ -25,16 +27,16 @@ public class Account {
         this.incomesList = new ArrayList<>();
     }
 
-    public void transferMoney(double money, Account targetAccount) {
+    public void transferMoney(long money, Account targetAccount) {
         targetAccount.increaseAccountBalance(money);
         this.reduceAccountBalance(money);
     }
 
-    public void increaseAccountBalance(double money) {
+    public void increaseAccountBalance(long money) {
         accountBalance += money;
     }
 
-    public void reduceAccountBalance(double money) {
+    public void reduceAccountBalance(long money) {
         accountBalance -= money;
     }
 
@@ -43,12 +45,14 @@ public class Account {
         this.reduceAccountBalance(expense.getPrice());
     }
 
-    public void removeExpense(Expense expense) {
+    /**
+     * Removes expense from the account and queues its removal together with the balance change
+     * @return future completed when removal is stored, exceptionally if the row was already gone
+     */
+    public CompletableFuture<Void> removeExpense(Expense expense) {
         expensesList.remove(expense);
         this.increaseAccountBalance(expense.getPrice());
-        SqliteDb db = new SqliteDb();
-        db.removeExpense(expense);
-        db.closeConnection();
+        return SqliteConnection.getWriteQueue().enqueue(db -> db.removeExpensePosting(id, expense));
     }
 
     public void addIncome(Income income) {
@@ -56,12 +60,14 @@ public class Account {
         this.increaseAccountBalance(income.getMoney());
     }
 
-    public void removeIncome(Income income) {
+    /**
+     * Removes income from the account and queues its removal together with the balance change
+     * @return future completed when removal is stored, exceptionally if the row was already gone
+     */
+    public CompletableFuture<Void> removeIncome(Income income) {
         incomesList.remove(income);
         this.reduceAccountBalance(income.getMoney());
-        SqliteDb db = new SqliteDb();
-        db.removeIncome(income);
-        db.closeConnection();
+        return SqliteConnection.getWriteQueue().enqueue(db -> db.removeIncomePosting(id, income));
     }
 
     public void addRegularExpense(RegularExpense expense) {
@@ -79,7 +85,7 @@ public class Account {
     public String getAccountName() {
         return accountName;
     }
-    public double getAccountBalance() {
+    public long getAccountBalance() {
         return accountBalance;
     }
     public ArrayList<Expense> getExpensesList() {
@@ -88,7 +94,7 @@ public class Account {
     public void setAccountName(String accountName) {
         this.accountName = accountName;
     }
-    public void setAccountBalance(double accountBalance) {
+    public void setAccountBalance(long accountBalance) {
         this.accountBalance = accountBalance;
     }
     public void setExpensesList(ArrayList<Expense> expensesList) {
@@ -116,6 +122,6 @@ public class Account {
 
     @Override
     public String toString() {
-        return accountName + " " + accountBalance;
+        return accountName + " " + Money.format(accountBalance);
     }
 }
@@ -1,11 +1,12 @@
 package accounts;
 
 import expenses.Expense;
+import tools.Money;
 
 public class CreditAccount extends Account {
     private double interest;
 
-    public CreditAccount(int id, String accountName, double accountBalance, double interest) {
+    public CreditAccount(int id, String accountName, long accountBalance, double interest) {
         super(id,accountName,accountBalance);
         this.interest = interest;
     }
@@ -14,7 +15,7 @@ public class CreditAccount extends Account {
         if(this.getAccountBalance()-expense.getPrice()>0) {
             return expense;
         }  else {
-            expense.setPrice(expense.getPrice()+expense.getPrice()*interest);
+            expense.setPrice(expense.getPrice()+Money.multiply(expense.getPrice(),interest));
             return expense;
         }
     }
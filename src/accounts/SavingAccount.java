@@ -1,17 +1,14 @@
 package accounts;
 
-import org.codehaus.groovy.runtime.powerassert.SourceText;
-import sun.util.calendar.Gregorian;
-
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import tools.DateCodec;
+import tools.Money;
 
 public class SavingAccount extends Account {
     private double interest;
-    private GregorianCalendar lastCapitalizationDate;
+    private int lastCapitalizationDate; //epoch day
     private int capitalizationPeriod; //in months
 
-    public SavingAccount(int id, String accountName, double accountBalance, double interest, GregorianCalendar lastCapitalizationDate, int capitalizationPeriod) {
+    public SavingAccount(int id, String accountName, long accountBalance, double interest, int lastCapitalizationDate, int capitalizationPeriod) {
         super(id,accountName,accountBalance);
         this.interest = interest;
         this.lastCapitalizationDate = lastCapitalizationDate;
@@ -19,15 +16,15 @@ public class SavingAccount extends Account {
     }
 
     public void capitalizationCheck(){
-        GregorianCalendar date = new GregorianCalendar();
-        if(date.get(Calendar.MONTH) - lastCapitalizationDate.get(Calendar.MONTH) == capitalizationPeriod) {
+        int date = DateCodec.today();
+        if(DateCodec.monthIndex(date) - DateCodec.monthIndex(lastCapitalizationDate) == capitalizationPeriod) {
             this.capitalize();
             System.out.println("startuje kapitalizacje");
             this.lastCapitalizationDate = date;
         }
     }
     public void capitalize() {
-        this.setAccountBalance(this.getAccountBalance()+this.getAccountBalance()*interest);
+        this.setAccountBalance(this.getAccountBalance()+Money.multiply(this.getAccountBalance(),interest));
     }
 
 //    @Override
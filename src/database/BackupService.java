@@ -0,0 +1,226 @@
+package database;
+
+import org.sqlite.SQLiteConnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * BackupService copies the application database into snapshot files with SQLite's online backup API
+ * while the application keeps running. The copy is read on its own connection inside one read transaction,
+ * so it is a consistent point-in-time snapshot, the backup doesn't restart when postings are written meanwhile,
+ * and with WAL journal writers are never blocked by it. Snapshots are written to a temporary file
+ * and renamed when complete, only the newest ones are kept.
+ *
+ * Command line: BackupService backup directory [keep] | restore snapshot.db
+ */
+public class BackupService {
+    private static final Logger LOGGER = Logger.getLogger( BackupService.class.getName() );
+    private static final String PREFIX = "budget-";
+    private static final String SUFFIX = ".db";
+
+    private final File directory;
+    private final int keep;
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong backups = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastDurationMillis;
+
+    /**
+     * @param directory directory of snapshots, created if needed
+     * @param keep how many newest snapshots are kept
+     */
+    public BackupService(File directory, int keep) {
+        if(keep < 1) {
+            throw new IllegalArgumentException("kept snapshots must be positive: " + keep);
+        }
+        this.directory = directory;
+        this.keep = keep;
+    }
+
+    /**
+     * Starts scheduled snapshots when budget.backup.dir system property is set. budget.backup.intervalMinutes
+     * (default 60) and budget.backup.keep (default 24) set how often snapshots are taken and how many are kept.
+     * @return running service or null if backups aren't configured
+     */
+    public static BackupService startFromSystemProperties() {
+        String directory = System.getProperty("budget.backup.dir");
+        if(directory == null) {
+            return null;
+        }
+        BackupService service = new BackupService(new File(directory), Integer.getInteger("budget.backup.keep", 24));
+        service.start(TimeUnit.MINUTES.toMillis(Long.getLong("budget.backup.intervalMinutes", 60)));
+        return service;
+    }
+
+    /**
+     * Takes a snapshot every intervalMillis on a daemon thread, the first one right away
+     */
+    public synchronized void start(long intervalMillis) {
+        if(scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sqlite-backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                backup();
+            } catch (IOException | SQLException exc) {
+                LOGGER.warning("Error occurred: " + exc);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops scheduled snapshots, a snapshot in progress is finished
+     */
+    public synchronized void stop() {
+        if(scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Copies application database into a new snapshot and deletes snapshots over the limit
+     * @return snapshot file
+     */
+    public synchronized File backup() throws IOException, SQLException {
+        long start = System.nanoTime();
+        if(!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("could not create " + directory);
+        }
+        String name = PREFIX + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        File partial = new File(directory, name + ".partial");
+        File snapshot = new File(directory, name + SUFFIX);
+        Connection connection = SqliteConnection.connector();
+        if(connection == null) {
+            failures.incrementAndGet();
+            throw new SQLException("could not open " + SqliteConnection.getProfile().getPath());
+        }
+        try {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+                resultSet.next();
+            }
+            int pages = pageCount(connection);
+            connection.unwrap(SQLiteConnection.class).db().backup("main", partial.getPath(),
+                    (remaining, total) -> LOGGER.fine("backup " + (total - remaining) + "/" + total + " pages"));
+            connection.rollback();
+            Files.move(partial.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            backups.incrementAndGet();
+            lastDurationMillis = (System.nanoTime() - start) / 1_000_000;
+            LOGGER.info("backup of " + pages + " pages written to " + snapshot + " in " + lastDurationMillis + " ms");
+        } catch (IOException | SQLException exc) {
+            failures.incrementAndGet();
+            partial.delete();
+            throw exc;
+        } finally {
+            connection.close();
+        }
+        rotate();
+        return snapshot;
+    }
+
+    /**
+     * @return snapshots in directory, oldest first
+     */
+    public List<File> getSnapshots() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if(files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files);
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    public long getBackups() {
+        return backups.get();
+    }
+    public long getFailures() {
+        return failures.get();
+    }
+    public long getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    /**
+     * Replaces application database with a snapshot. Pooled and writer connections are closed first,
+     * so this is meant for maintenance: anything written meanwhile by other processes is lost.
+     * The restored database is migrated to the current schema on next use. In memory mode
+     * the snapshot is restored into the in-memory database and checkpointed to the file.
+     * @param snapshot snapshot file created by backup()
+     */
+    public static void restore(File snapshot) throws SQLException {
+        if(!snapshot.isFile()) {
+            throw new SQLException("no snapshot " + snapshot);
+        }
+        ConnectionProfile profile = SqliteConnection.getProfile();
+        SqliteConnection.configure(profile);
+        Connection connection = SqliteConnection.connector();
+        if(connection == null) {
+            throw new SQLException("could not open " + profile.getPath());
+        }
+        try {
+            connection.unwrap(SQLiteConnection.class).db().restore("main", snapshot.getPath(),
+                    (remaining, total) -> LOGGER.fine("restore " + (total - remaining) + "/" + total + " pages"));
+        } finally {
+            connection.close();
+        }
+        SqliteConnection.checkpoint();
+        CategoryCache.getInstance().invalidate();
+        LOGGER.info(profile.getPath() + " restored from " + snapshot);
+    }
+
+    private void rotate() {
+        List<File> snapshots = getSnapshots();
+        for(int i = 0; i < snapshots.size() - keep; i++) {
+            if(!snapshots.get(i).delete()) {
+                LOGGER.warning("could not delete old snapshot " + snapshots.get(i));
+            }
+        }
+    }
+
+    private static int pageCount(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA page_count")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Command line entry: "backup directory [keep]" writes one snapshot, "restore snapshot.db" restores it
+     */
+    public static void main(String[] args) throws IOException, SQLException {
+        if(args.length >= 2 && args[0].equals("backup")) {
+            BackupService service = new BackupService(new File(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 7);
+            System.out.println(service.backup());
+        } else if(args.length == 2 && args[0].equals("restore")) {
+            restore(new File(args[1]));
+        } else {
+            System.err.println("usage: BackupService backup directory [keep] | restore snapshot.db");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package database;
+
+import expenses.ExpenseCategory;
+import incomes.IncomeCategory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CategoryCache keeps expense and income categories in memory for the whole application.
+ * Every category is represented by one shared ExpenseCategory/IncomeCategory object.
+ * Categories are read from database again after invalidate() was called.
+ */
+public class CategoryCache {
+    private static final CategoryCache instance = new CategoryCache();
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    private CategoryCache() {
+    }
+
+    public static CategoryCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Marks cached categories as outdated. Has to be called after categories tables are modified.
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return number of invalidations so far
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @param connection connection used when categories have to be loaded
+     * @return read-only map of expense categories by id
+     */
+    public Map<Integer, ExpenseCategory> getExpenseCategories(Connection connection) throws SQLException {
+        return current(connection).expenseCategories;
+    }
+
+    /**
+     * @param connection connection used when categories have to be loaded
+     * @return read-only map of income categories by id
+     */
+    public Map<Integer, IncomeCategory> getIncomeCategories(Connection connection) throws SQLException {
+        return current(connection).incomeCategories;
+    }
+
+    /**
+     * @param connection connection used when categories have to be loaded
+     * @return read-only list of expense categories in id order
+     */
+    public List<ExpenseCategory> getExpenseCategoriesList(Connection connection) throws SQLException {
+        return current(connection).expenseCategoriesList;
+    }
+
+    /**
+     * @param connection connection used when categories have to be loaded
+     * @return read-only list of income categories in id order
+     */
+    public List<IncomeCategory> getIncomeCategoriesList(Connection connection) throws SQLException {
+        return current(connection).incomeCategoriesList;
+    }
+
+    private Snapshot current(Connection connection) throws SQLException {
+        Snapshot current = snapshot;
+        if(current != null && current.version == version.get()) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            long expectedVersion = version.get();
+            if(current == null || current.version != expectedVersion) {
+                current = load(connection, expectedVersion);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    private static Snapshot load(Connection connection, long version) throws SQLException {
+        ArrayList<ExpenseCategory> expenseCategories = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM expensesCategories ORDER BY id");
+             ResultSet resultSet = ps.executeQuery()) {
+            while(resultSet.next()) {
+                expenseCategories.add(new ExpenseCategory(resultSet.getString("name"), resultSet.getInt("id")));
+            }
+        }
+        ArrayList<IncomeCategory> incomeCategories = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM incomesCategories ORDER BY id");
+             ResultSet resultSet = ps.executeQuery()) {
+            while(resultSet.next()) {
+                incomeCategories.add(new IncomeCategory(resultSet.getInt("id"), resultSet.getString("name")));
+            }
+        }
+        return new Snapshot(version, expenseCategories, incomeCategories);
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final List<ExpenseCategory> expenseCategoriesList;
+        private final List<IncomeCategory> incomeCategoriesList;
+        private final Map<Integer, ExpenseCategory> expenseCategories;
+        private final Map<Integer, IncomeCategory> incomeCategories;
+
+        Snapshot(long version, List<ExpenseCategory> expenseCategoriesList, List<IncomeCategory> incomeCategoriesList) {
+            this.version = version;
+            this.expenseCategoriesList = Collections.unmodifiableList(expenseCategoriesList);
+            this.incomeCategoriesList = Collections.unmodifiableList(incomeCategoriesList);
+            HashMap<Integer, ExpenseCategory> expenseMap = new HashMap<>();
+            for(ExpenseCategory category : expenseCategoriesList) {
+                expenseMap.put(category.getId(), category);
+            }
+            HashMap<Integer, IncomeCategory> incomeMap = new HashMap<>();
+            for(IncomeCategory category : incomeCategoriesList) {
+                incomeMap.put(category.getId(), category);
+            }
+            this.expenseCategories = Collections.unmodifiableMap(expenseMap);
+            this.incomeCategories = Collections.unmodifiableMap(incomeMap);
+        }
+    }
+}
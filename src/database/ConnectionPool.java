@@ -0,0 +1,265 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * ConnectionPool keeps a bounded number of open database connections and hands them out
+ * with lease/return semantics, so callers don't pay for opening a connection on every operation.
+ */
+public class ConnectionPool {
+    private static final Logger LOGGER = Logger.getLogger( ConnectionPool.class.getName() );
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final int maxSize;
+    private final long leaseTimeoutMillis;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final Set<Connection> leasedConnections = Collections.synchronizedSet(
+            Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>()));
+    private final Map<Connection, StatementCache> statementCaches =
+            Collections.synchronizedMap(new IdentityHashMap<Connection, StatementCache>());
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private volatile boolean shutdown;
+
+    /**
+     * @param maxSize maximum number of connections leased at the same time
+     * @param leaseTimeoutMillis how long lease() waits for a free connection before failing
+     */
+    public ConnectionPool(int maxSize, long leaseTimeoutMillis) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("pool size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Takes a connection from the pool, opening a new one if no idle connection is available.
+     * Blocks while all connections are leased.
+     * @return open connection, must be given back with release()
+     * @throws SQLException when no connection became free in time or opening a connection failed
+     */
+    public Connection lease() throws SQLException {
+        if(shutdown) {
+            throw new SQLException("connection pool is shut down");
+        }
+        long start = System.nanoTime();
+        try {
+            if(!permits.tryAcquire(leaseTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("no database connection available after " + leaseTimeoutMillis + " ms");
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for database connection", exc);
+        }
+        recordWait(System.nanoTime() - start);
+        return open();
+    }
+
+    /**
+     * Takes a connection only if one is free right now, e.g. for optional helper work
+     * @return open connection or null when all connections are leased
+     * @throws SQLException when opening a connection failed
+     */
+    public Connection tryLease() throws SQLException {
+        if(shutdown) {
+            throw new SQLException("connection pool is shut down");
+        }
+        if(!permits.tryAcquire()) {
+            return null;
+        }
+        return open();
+    }
+
+    /**
+     * Hands out idle or new connection, caller already holds a permit
+     */
+    private Connection open() throws SQLException {
+        Connection connection = pollIdle();
+        if(connection == null) {
+            connection = SqliteConnection.connector();
+            if(connection == null) {
+                permits.release();
+                throw new SQLException("could not open database connection");
+            }
+            created.incrementAndGet();
+        }
+        leasedConnections.add(connection);
+        leases.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * Gives a leased connection back to the pool. Any open transaction is rolled back.
+     * Releasing a connection that is not leased from this pool has no effect.
+     * @param connection connection obtained from lease()
+     */
+    public void release(Connection connection) {
+        if(connection == null || !leasedConnections.remove(connection)) {
+            return;
+        }
+        try {
+            if(shutdown || connection.isClosed()) {
+                closeQuietly(connection);
+            } else {
+                if(!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                idleConnections.offerFirst(connection);
+            }
+        } catch (SQLException exc) {
+            LOGGER.warning("Dropping broken connection: " + exc);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * @param connection connection leased from this pool
+     * @return statement cache bound to the connection, kept as long as the connection stays open
+     */
+    public StatementCache getStatementCache(Connection connection) {
+        return statementCaches.computeIfAbsent(connection, c -> new StatementCache(c, STATEMENT_CACHE_SIZE));
+    }
+
+    /**
+     * Closes all idle connections. Leased connections are closed when they are released.
+     */
+    public void shutdown() {
+        shutdown = true;
+        Connection connection;
+        while((connection = idleConnections.pollFirst()) != null) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * @return snapshot of pool usage counters
+     */
+    public PoolStats getStats() {
+        return new PoolStats(maxSize, leasedConnections.size(), idleConnections.size(), created.get(),
+                leases.get(), timeouts.get(), totalWaitNanos.get(), maxWaitNanos.get());
+    }
+
+    private Connection pollIdle() {
+        Connection connection;
+        while((connection = idleConnections.pollFirst()) != null) {
+            try {
+                if(!connection.isClosed()) {
+                    return connection;
+                }
+            } catch (SQLException exc) {
+                closeQuietly(connection);
+            }
+        }
+        return null;
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        long max = maxWaitNanos.get();
+        while(nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) {
+            max = maxWaitNanos.get();
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        StatementCache statementCache = statementCaches.remove(connection);
+        if(statementCache != null) {
+            statementCache.close();
+        }
+        try {
+            connection.close();
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+
+    /**
+     * Immutable snapshot of ConnectionPool counters
+     */
+    public static class PoolStats {
+        private final int maxSize;
+        private final int active;
+        private final int idle;
+        private final int created;
+        private final long leases;
+        private final long timeouts;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        PoolStats(int maxSize, int active, int idle, int created, long leases, long timeouts,
+                  long totalWaitNanos, long maxWaitNanos) {
+            this.maxSize = maxSize;
+            this.active = active;
+            this.idle = idle;
+            this.created = created;
+            this.leases = leases;
+            this.timeouts = timeouts;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+        public int getActive() {
+            return active;
+        }
+        public int getIdle() {
+            return idle;
+        }
+        public int getCreated() {
+            return created;
+        }
+        public long getLeases() {
+            return leases;
+        }
+        public long getTimeouts() {
+            return timeouts;
+        }
+        public long getTotalWaitNanos() {
+            return totalWaitNanos;
+        }
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+        public double getAverageWaitMillis() {
+            return leases == 0 ? 0 : totalWaitNanos / 1_000_000.0 / leases;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "active=" + active +
+                    ", idle=" + idle +
+                    ", maxSize=" + maxSize +
+                    ", created=" + created +
+                    ", leases=" + leases +
+                    ", timeouts=" + timeouts +
+                    ", avgWaitMs=" + getAverageWaitMillis() +
+                    ", maxWaitMs=" + maxWaitNanos / 1_000_000.0 +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package database;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * ConnectionProfile describes how application database connections are opened:
+ * database file, journal mode, synchronous level, busy timeout, page cache and mmap size,
+ * how many pooled read connections may be open and how many of them load one user's data at once.
+ * In memory mode the file is loaded into a shared-cache in-memory database and written back by MemoryDatabase
+ * according to checkpoint interval and durability.
+ * Defaults can be overridden with budget.db.* system properties.
+ */
+public class ConnectionProfile {
+    private String path = "database.db";
+    private String journalMode = "WAL";
+    private String synchronous = "NORMAL";
+    private int busyTimeoutMillis = 5_000;
+    private int cacheSizeKib = 16 * 1024;
+    private long mmapSizeBytes = 256L * 1024 * 1024;
+    private int poolSize = 4;
+    private int hydrationParallelism = 1;
+    private boolean inMemory;
+    private long checkpointIntervalMillis = 60_000;
+    private String durability = "INTERVAL";
+
+    /**
+     * Reads budget.db.path, budget.db.journalMode, budget.db.synchronous, budget.db.busyTimeout,
+     * budget.db.cacheSizeKib, budget.db.mmapSize, budget.db.poolSize, budget.db.hydrationParallelism,
+     * budget.db.inMemory, budget.db.checkpointInterval and budget.db.durability system properties
+     * @return profile with defaults for missing properties
+     */
+    public static ConnectionProfile fromSystemProperties() {
+        ConnectionProfile profile = new ConnectionProfile();
+        profile.setPath(System.getProperty("budget.db.path", profile.path));
+        profile.setJournalMode(System.getProperty("budget.db.journalMode", profile.journalMode));
+        profile.setSynchronous(System.getProperty("budget.db.synchronous", profile.synchronous));
+        profile.setBusyTimeoutMillis(Integer.getInteger("budget.db.busyTimeout", profile.busyTimeoutMillis));
+        profile.setCacheSizeKib(Integer.getInteger("budget.db.cacheSizeKib", profile.cacheSizeKib));
+        profile.setMmapSizeBytes(Long.getLong("budget.db.mmapSize", profile.mmapSizeBytes));
+        profile.setPoolSize(Integer.getInteger("budget.db.poolSize", profile.poolSize));
+        profile.setHydrationParallelism(Integer.getInteger("budget.db.hydrationParallelism",
+                profile.hydrationParallelism));
+        profile.setInMemory(Boolean.getBoolean("budget.db.inMemory"));
+        profile.setCheckpointIntervalMillis(Long.getLong("budget.db.checkpointInterval",
+                profile.checkpointIntervalMillis));
+        profile.setDurability(System.getProperty("budget.db.durability", profile.durability));
+        return profile;
+    }
+
+    /**
+     * @return JDBC url of the database file, or of the shared in-memory database in memory mode
+     */
+    public String getUrl() {
+        if(inMemory) {
+            return "jdbc:sqlite:file:" + getMemoryName() + "?mode=memory&cache=shared";
+        }
+        return "jdbc:sqlite:" + path;
+    }
+
+    /**
+     * @return name of the in-memory database, the same for every profile of one database file
+     */
+    public String getMemoryName() {
+        return "budget-" + Integer.toHexString(new File(path).getAbsolutePath().hashCode());
+    }
+
+    /**
+     * Executes profile's PRAGMAs on a freshly opened connection
+     * @param connection connection to configure
+     */
+    public void apply(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            if(inMemory) {
+                // shared cache locks tables instead of the file, SqliteConnection waits for them with SharedCacheConnection
+                return;
+            }
+            statement.execute("PRAGMA journal_mode = " + journalMode);
+            statement.execute("PRAGMA synchronous = " + synchronous);
+            statement.execute("PRAGMA cache_size = " + (-cacheSizeKib));
+            statement.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+    public void setPath(String path) {
+        this.path = path;
+    }
+    public String getJournalMode() {
+        return journalMode;
+    }
+    /**
+     * @param journalMode DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF
+     */
+    public void setJournalMode(String journalMode) {
+        this.journalMode = checkedKeyword(journalMode, "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    }
+    public String getSynchronous() {
+        return synchronous;
+    }
+    /**
+     * @param synchronous OFF, NORMAL, FULL or EXTRA
+     */
+    public void setSynchronous(String synchronous) {
+        this.synchronous = checkedKeyword(synchronous, "OFF", "NORMAL", "FULL", "EXTRA");
+    }
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+    public int getCacheSizeKib() {
+        return cacheSizeKib;
+    }
+    public void setCacheSizeKib(int cacheSizeKib) {
+        this.cacheSizeKib = cacheSizeKib;
+    }
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+    public void setMmapSizeBytes(long mmapSizeBytes) {
+        this.mmapSizeBytes = mmapSizeBytes;
+    }
+    public int getPoolSize() {
+        return poolSize;
+    }
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+    public int getHydrationParallelism() {
+        return hydrationParallelism;
+    }
+    /**
+     * @param hydrationParallelism connections used to load one user's postings, 1 loads them sequentially
+     */
+    public void setHydrationParallelism(int hydrationParallelism) {
+        if(hydrationParallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + hydrationParallelism);
+        }
+        this.hydrationParallelism = hydrationParallelism;
+    }
+
+    public boolean isInMemory() {
+        return inMemory;
+    }
+    /**
+     * @param inMemory true to work on an in-memory copy of the database file
+     */
+    public void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+    /**
+     * @param checkpointIntervalMillis how often the in-memory database is written to the file with INTERVAL durability
+     */
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        if(checkpointIntervalMillis < 1) {
+            throw new IllegalArgumentException("checkpoint interval must be positive: " + checkpointIntervalMillis);
+        }
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+    public String getDurability() {
+        return durability;
+    }
+    /**
+     * @param durability when the in-memory database is written to the file besides explicit checkpoints: NONE never,
+     *                   SHUTDOWN when it's closed or the JVM exits, INTERVAL also every checkpoint interval
+     */
+    public void setDurability(String durability) {
+        this.durability = checkedKeyword(durability, "NONE", "SHUTDOWN", "INTERVAL");
+    }
+
+    private static String checkedKeyword(String value, String... allowed) {
+        for(String keyword : allowed) {
+            if(keyword.equalsIgnoreCase(value)) {
+                return keyword;
+            }
+        }
+        throw new IllegalArgumentException("unsupported value: " + value);
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionProfile{" +
+                "path='" + path + '\'' +
+                ", journalMode=" + journalMode +
+                ", synchronous=" + synchronous +
+                ", busyTimeoutMillis=" + busyTimeoutMillis +
+                ", cacheSizeKib=" + cacheSizeKib +
+                ", mmapSizeBytes=" + mmapSizeBytes +
+                ", poolSize=" + poolSize +
+                ", hydrationParallelism=" + hydrationParallelism +
+                ", inMemory=" + inMemory +
+                ", checkpointIntervalMillis=" + checkpointIntervalMillis +
+                ", durability=" + durability +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package database;
+
+/**
+ * ImportCheckpoint records how far a statement import got. It's stored in statement_imports
+ * in the same transaction as the rows of every imported chunk, so after a failure the import
+ * can continue right after the last committed line.
+ */
+public class ImportCheckpoint {
+    private final String importKey;
+    private final int accountId;
+    private final long lines;
+    private final long expenses;
+    private final long incomes;
+    private final boolean finished;
+
+    /**
+     * @param importKey key identifying the imported statement, e.g. hash of the file
+     * @param accountId account the rows are assigned to
+     * @param lines statement lines committed so far
+     * @param expenses expenses committed so far
+     * @param incomes incomes committed so far
+     * @param finished true when the whole statement is imported
+     */
+    public ImportCheckpoint(String importKey, int accountId, long lines, long expenses, long incomes, boolean finished) {
+        this.importKey = importKey;
+        this.accountId = accountId;
+        this.lines = lines;
+        this.expenses = expenses;
+        this.incomes = incomes;
+        this.finished = finished;
+    }
+
+    public String getImportKey() {
+        return importKey;
+    }
+    public int getAccountId() {
+        return accountId;
+    }
+    public long getLines() {
+        return lines;
+    }
+    public long getExpenses() {
+        return expenses;
+    }
+    public long getIncomes() {
+        return incomes;
+    }
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportCheckpoint{" +
+                "importKey='" + importKey + '\'' +
+                ", accountId=" + accountId +
+                ", lines=" + lines +
+                ", expenses=" + expenses +
+                ", incomes=" + incomes +
+                ", finished=" + finished +
+                '}';
+    }
+}
@@ -0,0 +1,511 @@
+package database;
+
+import tools.DateCodec;
+import tools.PasswordHasher;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * LedgerGenerator writes a synthetic ledger into a fresh database file for load testing:
+ * users, accounts of all three types, expenses and incomes with seasonal and weekly patterns,
+ * and regular postings. The same seed and settings (end date included) always give the same rows.
+ * Postings are written with SqliteDb's batch inserts, the monthly summary is rebuilt once at the end
+ * instead of being maintained by triggers row by row.
+ *
+ * Command line: LedgerGenerator [--accounts=N] [--users=N] [--days=N] [--end=yyyy-MM-dd]
+ * [--expensesPerDay=X] [--incomesPerMonth=X] [--skew=X] [--seasonality=X] [--regular=N]
+ * [--creditShare=X] [--savingShare=X] [--seed=N] [--password=text] [--force] file.db
+ */
+public class LedgerGenerator {
+    private static final String[] EXPENSE_CATEGORIES = {"Food", "Transport", "Bills", "Entertainment", "Health",
+            "Clothes", "Home", "Education", "Travel", "Gifts", "Fees", "Other"};
+    private static final long[] EXPENSE_MEDIANS = {2_500, 1_500, 15_000, 4_000, 6_000, 8_000, 5_000, 10_000,
+            30_000, 7_000, 500, 2_000};
+    private static final String[] INCOME_CATEGORIES = {"Salary", "Bonus", "Interest", "Gifts", "Other"};
+    private static final long[] INCOME_MEDIANS = {500_000, 100_000, 2_000, 20_000, 10_000};
+    private static final String[] REGULAR_EXPENSES = {"Rent", "Phone", "Internet", "Gym", "Streaming", "Insurance"};
+    private static final long[] REGULAR_MEDIANS = {250_000, 5_000, 6_000, 12_000, 4_000, 20_000};
+    private static final int BILLS = 3;
+    private static final int EXPENSES = 1;
+    private static final int INCOMES = 2;
+    private static final int REGULAR = 3;
+
+    private long seed = 1;
+    private int accounts = 1_000;
+    private int users = 0;
+    private int days = 730;
+    private int endDay = DateCodec.today();
+    private double expensesPerDay = 2;
+    private double incomesPerMonth = 1;
+    private double categorySkew = 1;
+    private double seasonality = 0.3;
+    private int regularPerAccount = 2;
+    private double creditShare = 0.25;
+    private double savingShare = 0.15;
+    private String password = "budget";
+    private boolean overwrite;
+
+    private long[] balances;
+    private long expensesWritten;
+    private long incomesWritten;
+    private long regularWritten;
+
+    /**
+     * Generates the ledger. The file must not exist unless overwriting is allowed.
+     * SqliteConnection points at the file while generating and at the previous database afterwards.
+     * @param file database file to create
+     */
+    public void generate(File file) throws SQLException {
+        if(file.exists()) {
+            if(!overwrite) {
+                throw new IllegalArgumentException(file + " already exists");
+            }
+            for(String suffix : new String[]{"", "-wal", "-shm"}) {
+                new File(file.getPath() + suffix).delete();
+            }
+        }
+        ConnectionProfile previousProfile = SqliteConnection.getProfile();
+        ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+        profile.setPath(file.getPath());
+        profile.setSynchronous("OFF");
+        SqliteConnection.configure(profile);
+        try {
+            SqliteConnection.migrate();
+            List<Integer> accountIds = this.writeAccounts();
+            balances = new long[accountIds.size()];
+            SqliteDb db = new SqliteDb();
+            try {
+                db.setBatchCommitInterval(50_000);
+                expensesWritten = count(db.insertExpenses(this.expenses(accountIds)), db);
+                incomesWritten = count(db.insertIncomes(this.incomes(accountIds)), db);
+                regularWritten = count(db.insertRegularExpenses(this.regularExpenses(accountIds)), db)
+                        + count(db.insertRegularIncomes(this.regularIncomes(accountIds)), db);
+            } finally {
+                db.closeConnection();
+            }
+            this.finish(accountIds);
+        } finally {
+            SqliteConnection.configure(previousProfile);
+        }
+    }
+
+    /**
+     * Writes categories, users and accounts in one transaction, summary triggers are dropped until finish()
+     * @return ids of accounts
+     */
+    private List<Integer> writeAccounts() throws SQLException {
+        try (Connection connection = open()) {
+            connection.setAutoCommit(false);
+            MonthlySummary.dropTriggers(connection);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO expensesCategories (name) VALUES (?)")) {
+                for(String name : EXPENSE_CATEGORIES) {
+                    statement.setString(1, name);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO incomesCategories (name) VALUES (?)")) {
+                for(String name : INCOME_CATEGORIES) {
+                    statement.setString(1, name);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            Random random = random(0, 0);
+            byte[] salt = new byte[16];
+            random.nextBytes(salt);
+            String passwordHash = PasswordHasher.hash(password.toCharArray(), salt);
+            int userCount = getUsers();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO users (name, username, password_hash, monthlyBudget) VALUES (?,?,?,?)")) {
+                for(int user = 1; user <= userCount; user++) {
+                    statement.setString(1, "User " + user);
+                    statement.setString(2, "user" + user);
+                    statement.setString(3, passwordHash);
+                    statement.setLong(4, 100_000 * (10 + random.nextInt(50)));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO accounts (user_id, name, " +
+                    "balance, type, interest, lastCapitalizationDate, capitalizationPeriod) VALUES (?,?,?,?,?,?,?)")) {
+                for(int account = 0; account < accounts; account++) {
+                    int type = accountType(account);
+                    statement.setInt(1, (int) ((long) account * userCount / accounts) + 1);
+                    statement.setString(2, (type == 1 ? "Account " : type == 2 ? "Credit " : "Savings ") + (account + 1));
+                    statement.setLong(3, 0);
+                    statement.setInt(4, type);
+                    if(type == 1) {
+                        statement.setNull(5, Types.REAL);
+                        statement.setNull(6, Types.INTEGER);
+                        statement.setNull(7, Types.INTEGER);
+                    } else {
+                        statement.setDouble(5, type == 2 ? 0.08 + random.nextInt(12) / 100.0 : 0.01 + random.nextInt(4) / 100.0);
+                        statement.setInt(6, DateCodec.firstDayOfMonth(endDay));
+                        statement.setInt(7, type == 3 ? 1 + random.nextInt(12) : 1);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+            List<Integer> ids = new ArrayList<>(accounts);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT id FROM accounts ORDER BY id")) {
+                while(resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Stores balances that follow from generated postings and rebuilds the monthly summary with its triggers
+     */
+    private void finish(List<Integer> accountIds) throws SQLException {
+        try (Connection connection = open()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("UPDATE accounts SET balance = ? WHERE id = ?")) {
+                for(int account = 0; account < accountIds.size(); account++) {
+                    statement.setLong(1, balances[account]);
+                    statement.setInt(2, accountIds.get(account));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            MonthlySummary.install(connection);
+            connection.commit();
+        }
+    }
+
+    /**
+     * Expenses of every account day by day. Daily count is Poisson distributed around expensesPerDay,
+     * raised in December and on weekends, categories follow Zipf distribution with categorySkew
+     * and amounts are log-normal around the category's median.
+     */
+    private Stream<PostingRow> expenses(List<Integer> accountIds) {
+        double[] categories = zipf(EXPENSE_CATEGORIES.length, categorySkew);
+        return accountStream(accountIds, (account, accountId) -> {
+            Random random = random(account + 1, EXPENSES);
+            List<PostingRow> rows = new ArrayList<>();
+            double accountRate = expensesPerDay * (0.5 + random.nextDouble());
+            for(int day = startDay(); day <= endDay; day++) {
+                int count = poisson(random, accountRate * season(day) * weekday(day));
+                for(int i = 0; i < count; i++) {
+                    int category = pick(random, categories);
+                    long price = logNormal(random, EXPENSE_MEDIANS[category]);
+                    balances[account] -= price;
+                    rows.add(new PostingRow(accountId, category + 1, EXPENSE_CATEGORIES[category], price, day));
+                }
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Monthly salary on a fixed day for ordinary accounts, monthly deposit for savings and repayment for credit
+     * accounts, plus Poisson distributed other incomes around incomesPerMonth
+     */
+    private Stream<PostingRow> incomes(List<Integer> accountIds) {
+        double[] categories = zipf(INCOME_CATEGORIES.length - 1, categorySkew);
+        return accountStream(accountIds, (account, accountId) -> {
+            Random random = random(account + 1, INCOMES);
+            List<PostingRow> rows = new ArrayList<>();
+            int type = accountType(account);
+            int payday = 1 + random.nextInt(28);
+            long monthly = type == 1 ? logNormal(random, INCOME_MEDIANS[0]) : 20_000 + random.nextInt(100_000);
+            for(int day = startDay(); day <= endDay; day++) {
+                if(DateCodec.dayOfMonth(day) == payday) {
+                    int category = type == 1 ? 0 : INCOME_CATEGORIES.length - 1;
+                    balances[account] += monthly;
+                    rows.add(new PostingRow(accountId, category + 1, INCOME_CATEGORIES[category], monthly, day));
+                }
+                int count = poisson(random, incomesPerMonth / 30 * season(day));
+                for(int i = 0; i < count; i++) {
+                    int category = 1 + pick(random, categories);
+                    long money = logNormal(random, INCOME_MEDIANS[category]);
+                    balances[account] += money;
+                    rows.add(new PostingRow(accountId, category + 1, INCOME_CATEGORIES[category], money, day));
+                }
+            }
+            return rows;
+        });
+    }
+
+    private Stream<RegularPostingRow> regularExpenses(List<Integer> accountIds) {
+        return accountStream(accountIds, (account, accountId) -> {
+            Random random = random(account + 1, REGULAR);
+            List<RegularPostingRow> rows = new ArrayList<>();
+            for(int i = 0; i < regularPerAccount; i++) {
+                int kind = random.nextInt(REGULAR_EXPENSES.length);
+                int frequency = kind == 0 ? 30 : random.nextBoolean() ? 30 : 7;
+                rows.add(regularRow(random, accountId, BILLS, REGULAR_EXPENSES[kind],
+                        logNormal(random, REGULAR_MEDIANS[kind]), frequency));
+            }
+            return rows;
+        });
+    }
+
+    private Stream<RegularPostingRow> regularIncomes(List<Integer> accountIds) {
+        return accountStream(accountIds, (account, accountId) -> {
+            List<RegularPostingRow> rows = new ArrayList<>();
+            if(accountType(account) == 1 && regularPerAccount > 0) {
+                Random random = random(account + 1, REGULAR + 1);
+                rows.add(regularRow(random, accountId, 1, INCOME_CATEGORIES[0], logNormal(random, INCOME_MEDIANS[0]), 30));
+            }
+            return rows;
+        });
+    }
+
+    private RegularPostingRow regularRow(Random random, int accountId, int categoryId, String name, long amount,
+                                         int frequency) {
+        int first = startDay() + random.nextInt(frequency);
+        int last = first + (Math.max(endDay - first, 0) / frequency) * frequency;
+        return new RegularPostingRow(accountId, categoryId, name, amount, first, frequency, last);
+    }
+
+    private interface AccountRows<T> {
+        List<T> rows(int account, int accountId);
+    }
+
+    private static <T> Stream<T> accountStream(List<Integer> accountIds, AccountRows<T> rows) {
+        return Stream.iterate(0, account -> account + 1).limit(accountIds.size())
+                .flatMap(account -> rows.rows(account, accountIds.get(account)).stream());
+    }
+
+    /**
+     * Every account and kind of rows has its own random sequence, so changing one knob
+     * (e.g. incomes) doesn't change the other rows
+     */
+    private Random random(int account, int stream) {
+        return new Random(seed * 1_000_003L + account * 31L + stream);
+    }
+
+    /**
+     * @return 1 (ordinary), 2 (credit) or 3 (savings), spread evenly over account numbers
+     */
+    private int accountType(int account) {
+        double position = ((account * 0.6180339887) % 1);
+        return position < savingShare ? 3 : position < savingShare + creditShare ? 2 : 1;
+    }
+
+    private int startDay() {
+        return endDay - days + 1;
+    }
+
+    private double season(int day) {
+        return 1 + seasonality * Math.cos(2 * Math.PI * (DateCodec.month(day) - 12) / 12.0);
+    }
+
+    private static double weekday(int day) {
+        int dayOfWeek = Math.floorMod(day + 3, 7);
+        return dayOfWeek >= 5 ? 1.4 : 0.85;
+    }
+
+    /**
+     * @return cumulative Zipf probabilities of ranks 1..size
+     */
+    private static double[] zipf(int size, double skew) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for(int rank = 1; rank <= size; rank++) {
+            sum += 1 / Math.pow(rank, skew);
+            cumulative[rank - 1] = sum;
+        }
+        for(int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(Random random, double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+
+    private static int poisson(Random random, double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while(product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+
+    private static long logNormal(Random random, long median) {
+        return Math.max(1, Math.round(median * Math.exp(0.6 * random.nextGaussian())));
+    }
+
+    private static long count(int[] ids, SqliteDb db) throws SQLException {
+        if(ids == null) {
+            SQLException error = db.takeLastError();
+            throw error != null ? error : new SQLException("batch insert failed");
+        }
+        return ids.length;
+    }
+
+    private static Connection open() throws SQLException {
+        Connection connection = SqliteConnection.connector();
+        if(connection == null) {
+            throw new SQLException("could not open " + SqliteConnection.getProfile().getPath());
+        }
+        return connection;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    public void setAccounts(int accounts) {
+        this.accounts = positive(accounts, "accounts");
+    }
+    /**
+     * @return number of users accounts are spread over, by default one per five accounts
+     */
+    public int getUsers() {
+        return users > 0 ? users : Math.max(1, accounts / 5);
+    }
+    public void setUsers(int users) {
+        this.users = positive(users, "users");
+    }
+    /**
+     * @param days length of generated history ending with end day
+     */
+    public void setDays(int days) {
+        this.days = positive(days, "days");
+    }
+    public void setEndDay(int endDay) {
+        this.endDay = endDay;
+    }
+    /**
+     * @param expensesPerDay average expenses of an account per day
+     */
+    public void setExpensesPerDay(double expensesPerDay) {
+        this.expensesPerDay = expensesPerDay;
+    }
+    /**
+     * @param incomesPerMonth average incomes of an account per month besides the monthly salary or deposit
+     */
+    public void setIncomesPerMonth(double incomesPerMonth) {
+        this.incomesPerMonth = incomesPerMonth;
+    }
+    /**
+     * @param categorySkew Zipf exponent of category popularity, 0 uses all categories equally
+     */
+    public void setCategorySkew(double categorySkew) {
+        this.categorySkew = categorySkew;
+    }
+    /**
+     * @param seasonality how much more is spent in December (and less in June), 0.3 means +30%
+     */
+    public void setSeasonality(double seasonality) {
+        this.seasonality = seasonality;
+    }
+    public void setRegularPerAccount(int regularPerAccount) {
+        this.regularPerAccount = regularPerAccount;
+    }
+    public void setCreditShare(double creditShare) {
+        this.creditShare = creditShare;
+    }
+    public void setSavingShare(double savingShare) {
+        this.savingShare = savingShare;
+    }
+    /**
+     * @param password password of all generated users, their usernames are user1, user2...
+     */
+    public void setPassword(String password) {
+        this.password = password;
+    }
+    public void setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+    public long getExpensesWritten() {
+        return expensesWritten;
+    }
+    public long getIncomesWritten() {
+        return incomesWritten;
+    }
+    public long getRegularWritten() {
+        return regularWritten;
+    }
+
+    private static int parseDate(String text) {
+        int day = DateCodec.parse(text);
+        if(day == DateCodec.INVALID) {
+            throw new IllegalArgumentException("invalid date: " + text);
+        }
+        return day;
+    }
+
+    private static int positive(int value, String name) {
+        if(value < 1) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Command line entry, see class description for options
+     */
+    public static void main(String[] args) throws SQLException {
+        LedgerGenerator generator = new LedgerGenerator();
+        File file = null;
+        try {
+            for(String arg : args) {
+                if(!arg.startsWith("--")) {
+                    file = new File(arg);
+                    continue;
+                }
+                String[] option = arg.substring(2).split("=", 2);
+                String value = option.length > 1 ? option[1] : "";
+                switch (option[0]) {
+                    case "accounts": generator.setAccounts(Integer.parseInt(value)); break;
+                    case "users": generator.setUsers(Integer.parseInt(value)); break;
+                    case "days": generator.setDays(Integer.parseInt(value)); break;
+                    case "end": generator.setEndDay(parseDate(value)); break;
+                    case "expensesPerDay": generator.setExpensesPerDay(Double.parseDouble(value)); break;
+                    case "incomesPerMonth": generator.setIncomesPerMonth(Double.parseDouble(value)); break;
+                    case "skew": generator.setCategorySkew(Double.parseDouble(value)); break;
+                    case "seasonality": generator.setSeasonality(Double.parseDouble(value)); break;
+                    case "regular": generator.setRegularPerAccount(Integer.parseInt(value)); break;
+                    case "creditShare": generator.setCreditShare(Double.parseDouble(value)); break;
+                    case "savingShare": generator.setSavingShare(Double.parseDouble(value)); break;
+                    case "seed": generator.setSeed(Long.parseLong(value)); break;
+                    case "password": generator.setPassword(value); break;
+                    case "force": generator.setOverwrite(true); break;
+                    default: throw new IllegalArgumentException("unknown option " + arg);
+                }
+            }
+            if(file == null) {
+                throw new IllegalArgumentException("database file is missing");
+            }
+        } catch (IllegalArgumentException exc) {
+            System.err.println(exc.getMessage());
+            System.err.println("usage: LedgerGenerator [--accounts=N] [--users=N] [--days=N] [--end=yyyy-MM-dd] " +
+                    "[--expensesPerDay=X] [--incomesPerMonth=X] [--skew=X] [--seasonality=X] [--regular=N] " +
+                    "[--creditShare=X] [--savingShare=X] [--seed=N] [--password=text] [--force] file.db");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        generator.generate(file);
+        System.out.println("generated " + generator.accounts + " accounts of " + generator.getUsers() + " users, "
+                + generator.getExpensesWritten() + " expenses, " + generator.getIncomesWritten() + " incomes, "
+                + generator.getRegularWritten() + " regular postings in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
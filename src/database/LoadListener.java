@@ -0,0 +1,16 @@
+package database;
+
+/**
+ * LoadListener is notified while SqliteDb loads user's data
+ */
+public interface LoadListener {
+    LoadListener NONE = (accounts, rows) -> { };
+
+    /**
+     * Called after accounts are read and then every few thousand expense/income rows.
+     * With parallel hydration it is also called from helper threads.
+     * @param accounts number of loaded accounts
+     * @param rows number of loaded expenses, incomes and regular postings
+     */
+    void progress(int accounts, long rows);
+}
@@ -0,0 +1,172 @@
+package database;
+
+import org.sqlite.SQLiteConnection;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * MemoryDatabase keeps the application database in a shared-cache in-memory SQLite database for profiles
+ * in memory mode. The database file is loaded with SQLite's backup API when it's opened, and written back by
+ * explicit checkpoints and by those of profile's durability: NONE has none, SHUTDOWN writes on close and
+ * JVM exit, INTERVAL also every checkpoint interval on a daemon thread. A checkpoint copies the database
+ * straight into the file in one transaction of the file, so the file always holds a complete checkpoint,
+ * and is skipped when nothing was committed since the last one. The file is left in rollback journal mode,
+ * it's switched back to the profile's journal mode when opened without memory mode.
+ * The in-memory database lives while this object holds its anchor connection.
+ */
+public class MemoryDatabase {
+    private static final Logger LOGGER = Logger.getLogger( MemoryDatabase.class.getName() );
+
+    private final ConnectionProfile profile;
+    private final Connection anchor;
+    private final Thread shutdownHook;
+    private ScheduledExecutorService scheduler;
+    private long checkpointedVersion;
+    private boolean closed;
+
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastDurationMillis;
+
+    /**
+     * Creates in-memory database of the profile, loads the database file if it exists
+     * and starts checkpoints required by profile's durability
+     * @param profile profile in memory mode
+     */
+    MemoryDatabase(ConnectionProfile profile) throws SQLException {
+        this.profile = profile;
+        this.anchor = DriverManager.getConnection(profile.getUrl());
+        File file = new File(profile.getPath());
+        try {
+            if(file.isFile()) {
+                long start = System.nanoTime();
+                anchor.unwrap(SQLiteConnection.class).db().restore("main", file.getPath(),
+                        (remaining, total) -> LOGGER.fine("load " + (total - remaining) + "/" + total + " pages"));
+                LOGGER.info(file + " loaded into memory in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+            checkpointedVersion = dataVersion();
+        } catch (SQLException exc) {
+            anchor.close();
+            throw exc;
+        }
+        if(profile.getDurability().equals("NONE")) {
+            shutdownHook = null;
+            return;
+        }
+        shutdownHook = new Thread(this::checkpointQuietly, "sqlite-checkpoint-exit");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        if(profile.getDurability().equals("INTERVAL")) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sqlite-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = profile.getCheckpointIntervalMillis();
+            scheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the in-memory database into the database file, unless nothing changed since the last checkpoint
+     * @return true if the file was written
+     */
+    public synchronized boolean checkpoint() throws SQLException {
+        if(closed) {
+            return false;
+        }
+        long version = dataVersion();
+        if(version == checkpointedVersion) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            anchor.unwrap(SQLiteConnection.class).db().backup("main", profile.getPath(),
+                    (remaining, total) -> LOGGER.fine("checkpoint " + (total - remaining) + "/" + total + " pages"));
+        } catch (SQLException exc) {
+            failures.incrementAndGet();
+            throw exc;
+        }
+        checkpointedVersion = version;
+        checkpoints.incrementAndGet();
+        lastDurationMillis = (System.nanoTime() - start) / 1_000_000;
+        LOGGER.fine("checkpoint written to " + profile.getPath() + " in " + lastDurationMillis + " ms");
+        return true;
+    }
+
+    /**
+     * Stops checkpoints, writes the last one unless durability is NONE and drops the in-memory database.
+     * Connections opened meanwhile keep the in-memory database alive until they're closed.
+     */
+    public void close() {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = scheduler;
+            scheduler = null;
+        }
+        if(stopped != null) {
+            stopped.shutdown();
+            try {
+                stopped.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if(shutdownHook != null) {
+            checkpointQuietly();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // JVM is exiting, the hook runs anyway
+            }
+        }
+        synchronized (this) {
+            closed = true;
+            try {
+                anchor.close();
+            } catch (SQLException exc) {
+                LOGGER.warning("Error occurred: " + exc);
+            }
+        }
+    }
+
+    public ConnectionProfile getProfile() {
+        return profile;
+    }
+    public long getCheckpoints() {
+        return checkpoints.get();
+    }
+    public long getFailures() {
+        return failures.get();
+    }
+    public long getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+
+    /**
+     * @return number changing whenever another connection commits to the in-memory database
+     */
+    private long dataVersion() throws SQLException {
+        try (Statement statement = anchor.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA data_version")) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Migration is one numbered schema change applied by SchemaMigrations
+ */
+public abstract class Migration {
+    private final int version;
+    private final String description;
+
+    protected Migration(int version, String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    /**
+     * Applies the change. Runs inside a transaction opened by SchemaMigrations.
+     * @param connection connection to migrated database
+     */
+    public abstract void apply(Connection connection) throws SQLException;
+
+    /**
+     * @return migration executing given SQL statements in order
+     */
+    public static Migration sql(int version, String description, String... statements) {
+        return new Migration(version, description) {
+            @Override
+            public void apply(Connection connection) throws SQLException {
+                try (Statement statement = connection.createStatement()) {
+                    for(String sql : statements) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+        };
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return version + " " + description;
+    }
+}
@@ -0,0 +1,158 @@
+package database;
+
+import tools.DateCodec;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MonthlySummary maintains monthly_summary table: total and count of postings per
+ * kind, account, month and category. Triggers on expenses, incomes, regularExpenses and regularIncomes
+ * keep it up to date in the same transaction as every insert, update and delete,
+ * so dashboards read a few summary rows instead of all postings of a month.
+ * Months are stored as yyyyMM numbers, postings without category are summed under category 0.
+ */
+public class MonthlySummary {
+    public static final int EXPENSE = 0;
+    public static final int INCOME = 1;
+    public static final int REGULAR_EXPENSE = 2;
+    public static final int REGULAR_INCOME = 3;
+
+    private static final String[] TABLES = {"expenses", "incomes", "regularExpenses", "regularIncomes"};
+    private static final String[] AMOUNTS = {"price", "money", "price", "money"};
+
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS monthly_summary (" +
+            "kind INTEGER NOT NULL, account_id INTEGER NOT NULL, year_month INTEGER NOT NULL, " +
+            "category_id INTEGER NOT NULL, total INTEGER NOT NULL, count INTEGER NOT NULL, " +
+            "PRIMARY KEY (kind, account_id, year_month, category_id)) WITHOUT ROWID";
+
+    private MonthlySummary() {
+    }
+
+    /**
+     * @param epochDay days since 1970-01-01
+     * @return month as yyyyMM number, as stored in year_month column
+     */
+    public static int yearMonth(int epochDay) {
+        return DateCodec.year(epochDay) * 100 + DateCodec.month(epochDay);
+    }
+
+    /**
+     * Creates summary table and its triggers, then fills it from existing postings
+     * @param connection connection in a transaction
+     */
+    static void install(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_TABLE);
+            for(String sql : triggers()) {
+                statement.execute(sql);
+            }
+        }
+        rebuild(connection);
+    }
+
+    /**
+     * Drops summary triggers before bulk loading postings, install() has to be called afterwards
+     * @param connection connection in a transaction
+     */
+    static void dropTriggers(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for(String sql : triggers()) {
+                if(sql.startsWith("DROP")) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the whole summary from postings tables, e.g. after rows were changed with triggers disabled
+     * @param connection connection in a transaction
+     * @return number of summary rows
+     */
+    public static int rebuild(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM monthly_summary");
+            int rows = 0;
+            for(int kind = 0; kind < TABLES.length; kind++) {
+                rows += statement.executeUpdate("INSERT INTO monthly_summary " +
+                        "(kind, account_id, year_month, category_id, total, count) " +
+                        "SELECT " + kind + ", account_id, " + yearMonthSql("date") + " AS ym, " +
+                        "IFNULL(category_id, 0) AS category, SUM(IFNULL(" + AMOUNTS[kind] + ", 0)), COUNT(*) " +
+                        "FROM " + TABLES[kind] + " GROUP BY account_id, ym, category");
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * @return DROP/CREATE TRIGGER statements of all postings tables
+     */
+    static List<String> triggers() {
+        List<String> triggers = new ArrayList<>();
+        for(int kind = 0; kind < TABLES.length; kind++) {
+            String table = TABLES[kind];
+            String add = add(kind, "NEW");
+            String subtract = subtract(kind, "OLD");
+            triggers.add("DROP TRIGGER IF EXISTS summary_" + table + "_insert");
+            triggers.add("CREATE TRIGGER summary_" + table + "_insert AFTER INSERT ON " + table +
+                    " BEGIN " + add + " END");
+            triggers.add("DROP TRIGGER IF EXISTS summary_" + table + "_delete");
+            triggers.add("CREATE TRIGGER summary_" + table + "_delete AFTER DELETE ON " + table +
+                    " BEGIN " + subtract + " END");
+            triggers.add("DROP TRIGGER IF EXISTS summary_" + table + "_update");
+            triggers.add("CREATE TRIGGER summary_" + table + "_update AFTER UPDATE OF account_id, category_id, " +
+                    AMOUNTS[kind] + ", date ON " + table + " BEGIN " + subtract + " " + add + " END");
+        }
+        return triggers;
+    }
+
+    private static String add(int kind, String row) {
+        return "INSERT OR IGNORE INTO monthly_summary (kind, account_id, year_month, category_id, total, count) " +
+                "VALUES (" + kind + ", " + row + ".account_id, " + yearMonthSql(row + ".date") + ", " +
+                "IFNULL(" + row + ".category_id, 0), 0, 0); " +
+                "UPDATE monthly_summary SET total = total + IFNULL(" + row + "." + AMOUNTS[kind] + ", 0), " +
+                "count = count + 1 WHERE " + key(kind, row) + ";";
+    }
+
+    private static String subtract(int kind, String row) {
+        return "UPDATE monthly_summary SET total = total - IFNULL(" + row + "." + AMOUNTS[kind] + ", 0), " +
+                "count = count - 1 WHERE " + key(kind, row) + "; " +
+                "DELETE FROM monthly_summary WHERE " + key(kind, row) + " AND count <= 0;";
+    }
+
+    private static String key(int kind, String row) {
+        return "kind = " + kind + " AND account_id = " + row + ".account_id AND year_month = " +
+                yearMonthSql(row + ".date") + " AND category_id = IFNULL(" + row + ".category_id, 0)";
+    }
+
+    /**
+     * @return SQL expression converting epoch day to yyyyMM number, 0 for NULL
+     */
+    private static String yearMonthSql(String epochDay) {
+        return "IFNULL(CAST(strftime('%Y%m', " + epochDay + " * 86400, 'unixepoch') AS INTEGER), 0)";
+    }
+
+    /**
+     * Command line entry: rebuilds the summary of application database
+     */
+    public static void main(String[] args) throws SQLException {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        if(connection == null) {
+            System.exit(1);
+        }
+        try {
+            connection.setAutoCommit(false);
+            long start = System.nanoTime();
+            int rows = rebuild(connection);
+            connection.commit();
+            System.out.println("rebuilt " + rows + " summary rows in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } finally {
+            connection.close();
+        }
+    }
+}
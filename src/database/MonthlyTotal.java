@@ -0,0 +1,50 @@
+package database;
+
+/**
+ * MonthlyTotal holds sums of user's incomes and expenses in one calendar month, in minor units
+ */
+public class MonthlyTotal {
+    private final int year;
+    private final int month;
+    private final long incomes;
+    private final long expenses;
+
+    /**
+     * @param year calendar year
+     * @param month month 1-12
+     * @param incomes sum of incomes in minor units
+     * @param expenses sum of expenses in minor units
+     */
+    public MonthlyTotal(int year, int month, long incomes, long expenses) {
+        this.year = year;
+        this.month = month;
+        this.incomes = incomes;
+        this.expenses = expenses;
+    }
+
+    public int getYear() {
+        return year;
+    }
+    public int getMonth() {
+        return month;
+    }
+    public long getIncomes() {
+        return incomes;
+    }
+    public long getExpenses() {
+        return expenses;
+    }
+    public long getBalance() {
+        return incomes - expenses;
+    }
+
+    @Override
+    public String toString() {
+        return "MonthlyTotal{" +
+                "year=" + year +
+                ", month=" + month +
+                ", incomes=" + incomes +
+                ", expenses=" + expenses +
+                '}';
+    }
+}
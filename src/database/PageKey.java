@@ -0,0 +1,49 @@
+package database;
+
+/**
+ * PageKey is the (date, id) position of a row in newest first order of expenses or incomes.
+ * A page is read from the rows right after its key, see SqliteDb.getExpensesPage.
+ */
+public final class PageKey {
+    /**
+     * Key before the newest row, used to read the first page
+     */
+    public static final PageKey FIRST = new PageKey(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final int epochDay;
+    private final int id;
+
+    public PageKey(int epochDay, int id) {
+        this.epochDay = epochDay;
+        this.id = id;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) {
+            return true;
+        }
+        if(!(o instanceof PageKey)) {
+            return false;
+        }
+        PageKey other = (PageKey) o;
+        return epochDay == other.epochDay && id == other.id;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * epochDay + id;
+    }
+
+    @Override
+    public String toString() {
+        return "PageKey{" + epochDay + ", " + id + '}';
+    }
+}
@@ -0,0 +1,351 @@
+package database;
+
+import expenses.Expense;
+import incomes.Income;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * PagedPostings gives index based access to user's expenses or incomes, newest first,
+ * without reading the whole history. Rows are read in pages with keyset pagination on (date, id):
+ * every page starts after the last key of the page before it. Pages that were read recently
+ * are kept in a small LRU, neighbours of a page that was just read are prefetched in background.
+ * A page reached without reading the one before it (e.g. by dragging a scrollbar) starts at a key
+ * from the page end index, which is read on the first such jump in one pass over the user's keys
+ * and kept until the rows are invalidated.
+ * Each read leases its own SqliteDb, so pages can be read from any thread; UI threads use
+ * getIfCached and load, which never read database on the calling thread.
+ */
+public class PagedPostings<T> {
+    interface PageReader<T> {
+        List<T> read(SqliteDb db, int userId, PageKey after, int limit);
+    }
+    interface PageEndsReader {
+        List<PageKey> read(SqliteDb db, int userId, int pageSize);
+    }
+    interface Counter {
+        int count(SqliteDb db, int userId);
+    }
+
+    private final int userId;
+    private final int pageSize;
+    private final PageReader<T> pageReader;
+    private final PageEndsReader pageEndsReader;
+    private final Counter counter;
+    private final Function<T, PageKey> keyOf;
+
+    private final Map<Integer, List<T>> pages;
+    private final Map<Integer, PageKey> pageEnds = new HashMap<>();
+    private final Map<Integer, List<PageCallbacks>> loading = new HashMap<>();
+    private final Object pageEndsLock = new Object();
+    private List<PageKey> pageEndIndex;
+    private long generation;
+    private volatile Executor prefetchExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong pageReads = new AtomicLong();
+    private final AtomicLong indexReads = new AtomicLong();
+
+    PagedPostings(int userId, int pageSize, int cachedPages, PageReader<T> pageReader, PageEndsReader pageEndsReader,
+                  Counter counter, Function<T, PageKey> keyOf) {
+        if(pageSize < 1 || cachedPages < 1) {
+            throw new IllegalArgumentException("page size and cached pages must be positive");
+        }
+        this.userId = userId;
+        this.pageSize = pageSize;
+        this.pageReader = pageReader;
+        this.pageEndsReader = pageEndsReader;
+        this.counter = counter;
+        this.keyOf = keyOf;
+        this.pages = new LinkedHashMap<Integer, List<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > cachedPages;
+            }
+        };
+    }
+
+    /**
+     * @param userId owner of the expenses
+     * @param pageSize rows read at once
+     * @param cachedPages how many pages are kept in memory
+     * @return user's expenses, newest first
+     */
+    public static PagedPostings<Expense> expenses(int userId, int pageSize, int cachedPages) {
+        return new PagedPostings<>(userId, pageSize, cachedPages, SqliteDb::getExpensesPage,
+                SqliteDb::getExpensePageEnds, SqliteDb::countExpenses,
+                expense -> new PageKey(expense.getEpochDay(), expense.getId()));
+    }
+
+    /**
+     * @param userId owner of the incomes
+     * @param pageSize rows read at once
+     * @param cachedPages how many pages are kept in memory
+     * @return user's incomes, newest first
+     */
+    public static PagedPostings<Income> incomes(int userId, int pageSize, int cachedPages) {
+        return new PagedPostings<>(userId, pageSize, cachedPages, SqliteDb::getIncomesPage,
+                SqliteDb::getIncomePageEnds, SqliteDb::countIncomes,
+                income -> new PageKey(income.getEpochDay(), income.getId()));
+    }
+
+    /**
+     * @param executor reads pages requested with load and prefetches neighbour pages,
+     *                 null turns prefetching off and makes load read on the calling thread
+     */
+    public void setPrefetchExecutor(Executor executor) {
+        this.prefetchExecutor = executor;
+    }
+
+    /**
+     * @param db connection used for counting
+     * @return number of rows, -1 if counting failed
+     */
+    public int count(SqliteDb db) {
+        return counter.count(db, userId);
+    }
+
+    /**
+     * Returns row at index, reading its page on the calling thread if it isn't cached
+     * @param index position in newest first order
+     * @return row or null if there is no row at index (e.g. it was removed after counting)
+     */
+    public T get(int index) {
+        int page = index / pageSize;
+        List<T> rows = cachedPage(page);
+        if(rows == null) {
+            rows = readPage(page);
+            prefetch(page + 1);
+            prefetch(page - 1);
+        } else {
+            hits.incrementAndGet();
+        }
+        return rowAt(rows, index);
+    }
+
+    /**
+     * Returns row at index only if its page is cached, never reads database
+     * @param index position in newest first order
+     * @return row or null if its page isn't cached or there is no row at index
+     */
+    public T getIfCached(int index) {
+        List<T> rows = cachedPage(index / pageSize);
+        if(rows != null) {
+            hits.incrementAndGet();
+        }
+        return rowAt(rows, index);
+    }
+
+    /**
+     * Reads page of the row at index on the prefetch executor, unless it's cached, and prefetches its neighbours
+     * @param index position in newest first order
+     * @param onLoaded called on the executor thread once the page is read
+     * @param onFailed called on the executor thread when reading failed, the page can be loaded again; may be null
+     */
+    public void load(int index, Runnable onLoaded, Runnable onFailed) {
+        int page = index / pageSize;
+        if(cachedPage(page) != null) {
+            onLoaded.run();
+            return;
+        }
+        readInBackground(page, new PageCallbacks(onLoaded, onFailed));
+        prefetch(page + 1);
+        prefetch(page - 1);
+    }
+
+    /**
+     * @return true if the row at index can be returned without reading database
+     */
+    public synchronized boolean isCached(int index) {
+        return pages.containsKey(index / pageSize);
+    }
+
+    /**
+     * Forgets cached pages and keys, has to be called after user's rows were modified
+     */
+    public synchronized void invalidate() {
+        generation++;
+        pages.clear();
+        pageEnds.clear();
+        pageEndIndex = null;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+    public long getHits() {
+        return hits.get();
+    }
+    public long getPageReads() {
+        return pageReads.get();
+    }
+    /**
+     * @return how many times the page end index was read, once per invalidation at most
+     */
+    public long getIndexReads() {
+        return indexReads.get();
+    }
+
+    private synchronized List<T> cachedPage(int page) {
+        return pages.get(page);
+    }
+
+    private T rowAt(List<T> rows, int index) {
+        int position = index % pageSize;
+        return rows != null && position < rows.size() ? rows.get(position) : null;
+    }
+
+    private void prefetch(int page) {
+        if(prefetchExecutor == null || page < 0) {
+            return;
+        }
+        readInBackground(page, null);
+    }
+
+    /**
+     * Reads page on the prefetch executor, a page already being read isn't read twice
+     * @param callbacks notified after the page is read or reading failed, may be null
+     */
+    private void readInBackground(int page, PageCallbacks callbacks) {
+        Executor executor = prefetchExecutor;
+        synchronized (this) {
+            if(pages.containsKey(page) && callbacks == null) {
+                return;
+            }
+            List<PageCallbacks> waiting = loading.get(page);
+            if(waiting != null) {
+                if(callbacks != null) {
+                    waiting.add(callbacks);
+                }
+                return;
+            }
+            waiting = new ArrayList<>();
+            if(callbacks != null) {
+                waiting.add(callbacks);
+            }
+            loading.put(page, waiting);
+        }
+        Runnable read = () -> {
+            List<T> rows = null;
+            try {
+                rows = readPage(page);
+            } finally {
+                List<PageCallbacks> waiting;
+                synchronized (this) {
+                    waiting = loading.remove(page);
+                }
+                if(waiting != null) {
+                    for(PageCallbacks callback : waiting) {
+                        callback.notify(rows != null);
+                    }
+                }
+            }
+        };
+        if(executor == null) {
+            read.run();
+        } else {
+            executor.execute(read);
+        }
+    }
+
+    /**
+     * Reads page with its own connection. Page is cached only if nothing was invalidated meanwhile.
+     * @return rows of the page or null if reading failed
+     */
+    private List<T> readPage(int page) {
+        long readGeneration;
+        PageKey after;
+        synchronized (this) {
+            readGeneration = generation;
+            after = page == 0 ? PageKey.FIRST : pageEnds.get(page - 1);
+        }
+        if(after == null) {
+            after = pageEnd(readGeneration, page - 1);
+            if(after == null) {
+                return null;
+            }
+        }
+        SqliteDb db = new SqliteDb();
+        try {
+            List<T> rows = pageReader.read(db, userId, after, pageSize);
+            pageReads.incrementAndGet();
+            if(rows == null) {
+                return null;
+            }
+            synchronized (this) {
+                if(readGeneration == generation) {
+                    pages.put(page, rows);
+                    if(!rows.isEmpty()) {
+                        pageEnds.put(page, keyOf.apply(rows.get(rows.size() - 1)));
+                    }
+                }
+            }
+            return rows;
+        } finally {
+            db.closeConnection();
+        }
+    }
+
+    /**
+     * Finds end key of a page in the page end index, reading the index first if this generation doesn't have it.
+     * Only one thread reads the index, the others wait for it.
+     * @return key or null if there is no such page or reading failed
+     */
+    private PageKey pageEnd(long readGeneration, int page) {
+        synchronized (pageEndsLock) {
+            List<PageKey> index;
+            synchronized (this) {
+                if(readGeneration != generation) {
+                    return null;
+                }
+                index = pageEndIndex;
+            }
+            if(index == null) {
+                SqliteDb db = new SqliteDb();
+                try {
+                    index = pageEndsReader.read(db, userId, pageSize);
+                    indexReads.incrementAndGet();
+                } finally {
+                    db.closeConnection();
+                }
+                if(index == null) {
+                    return null;
+                }
+                synchronized (this) {
+                    if(readGeneration == generation) {
+                        pageEndIndex = index;
+                    }
+                }
+            }
+            return page >= 0 && page < index.size() ? index.get(page) : null;
+        }
+    }
+
+    /**
+     * Callbacks of one load call waiting for its page
+     */
+    private static final class PageCallbacks {
+        private final Runnable onLoaded;
+        private final Runnable onFailed;
+
+        private PageCallbacks(Runnable onLoaded, Runnable onFailed) {
+            this.onLoaded = onLoaded;
+            this.onFailed = onFailed;
+        }
+
+        private void notify(boolean loaded) {
+            if(loaded) {
+                onLoaded.run();
+            } else if(onFailed != null) {
+                onFailed.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package database;
+
+/**
+ * PostingRow holds values of a single expenses/incomes row for batch inserts
+ */
+public class PostingRow {
+    private final int accountId;
+    private final int categoryId;
+    private final String name;
+    private final long amount;
+    private final int epochDay;
+
+    /**
+     * @param accountId account the posting belongs to
+     * @param categoryId expense or income category id
+     * @param name posting name
+     * @param amount price of expense or money of income in minor units
+     * @param epochDay date as days since 1970-01-01, see tools.DateCodec
+     */
+    public PostingRow(int accountId, int categoryId, String name, long amount, int epochDay) {
+        this.accountId = accountId;
+        this.categoryId = categoryId;
+        this.name = name;
+        this.amount = amount;
+        this.epochDay = epochDay;
+    }
+
+    public int getAccountId() {
+        return accountId;
+    }
+    public int getCategoryId() {
+        return categoryId;
+    }
+    public String getName() {
+        return name;
+    }
+    public long getAmount() {
+        return amount;
+    }
+    public int getEpochDay() {
+        return epochDay;
+    }
+}
@@ -0,0 +1,15 @@
+package database;
+
+/**
+ * PostingVisitor receives columns of expenses/incomes rows as primitives,
+ * used by aggregations that shouldn't create an object per row
+ */
+public interface PostingVisitor {
+    /**
+     * @param accountId account of the posting
+     * @param epochDay date as days since 1970-01-01, see tools.DateCodec
+     * @param amount price of expense or money of income in minor units
+     * @param categoryId expense or income category id
+     */
+    void visit(int accountId, int epochDay, long amount, int categoryId);
+}
@@ -0,0 +1,341 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * QueryStats measures every statement executed through StatementCache (and SqliteDb's streamed statements):
+ * latency histogram, returned or modified rows and errors per SQL text. Queries are timed from execute
+ * until their ResultSet is closed, because SQLite does most of the work while rows are stepped through.
+ * Statements slower than the threshold are written to the "database.slow-queries" log.
+ * Instrumentation is off unless budget.db.instrumentation is true or setEnabled(true) is called;
+ * when it's off statements aren't wrapped and the only cost is one volatile read per prepare.
+ */
+public class QueryStats {
+    private static final Logger SLOW_QUERIES = Logger.getLogger("database.slow-queries");
+    private static final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean("budget.db.instrumentation");
+    private static volatile long slowQueryNanos = Long.getLong("budget.db.slowQueryMillis", 100) * 1_000_000;
+
+    private QueryStats() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+    /**
+     * Turns instrumentation on or off, statements prepared while it's off are never measured
+     */
+    public static void setEnabled(boolean enabled) {
+        QueryStats.enabled = enabled;
+    }
+    /**
+     * @param millis statements taking at least this long are logged, negative turns slow query log off
+     */
+    public static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryNanos = millis < 0 ? Long.MAX_VALUE : millis * 1_000_000;
+    }
+
+    /**
+     * Forgets all measurements
+     */
+    public static void reset() {
+        operations.clear();
+    }
+
+    /**
+     * @return measurements of every SQL text executed since start or reset, most total time first
+     */
+    public static List<OperationStats> snapshot() {
+        List<OperationStats> snapshot = new ArrayList<>();
+        operations.forEach((sql, operation) -> snapshot.add(operation.snapshot(sql)));
+        snapshot.sort(Comparator.comparingLong(OperationStats::getTotalNanos).reversed());
+        return snapshot;
+    }
+
+    /**
+     * @return snapshot as text table, one operation per line
+     */
+    public static String dump() {
+        StringBuilder dump = new StringBuilder(String.format("%8s %8s %10s %10s %10s %10s  %s%n",
+                "count", "errors", "rows", "p50 us", "p99 us", "max us", "sql"));
+        for(OperationStats stats : snapshot()) {
+            dump.append(String.format("%8d %8d %10d %10d %10d %10d  %s%n", stats.getCount(), stats.getErrors(),
+                    stats.getRows(), stats.getP50Nanos() / 1000, stats.getP99Nanos() / 1000,
+                    stats.getMaxNanos() / 1000, stats.getSql()));
+        }
+        return dump.toString();
+    }
+
+    /**
+     * @param statement statement prepared from sql
+     * @return measuring wrapper of the statement, or statement itself when instrumentation is off
+     */
+    static PreparedStatement instrument(PreparedStatement statement, String sql) {
+        if(!enabled) {
+            return statement;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(QueryStats.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new StatementHandler(statement, operation(sql), sql));
+    }
+
+    /**
+     * Counts error of a statement that failed before it could be executed, e.g. while it was compiled
+     */
+    static void recordError(String sql) {
+        if(enabled) {
+            operation(sql).errors.incrementAndGet();
+        }
+    }
+
+    private static Operation operation(String sql) {
+        return operations.computeIfAbsent(sql, key -> new Operation());
+    }
+
+    private static void record(Operation operation, String sql, long nanos, long rows) {
+        operation.record(nanos, rows);
+        if(nanos >= slowQueryNanos) {
+            SLOW_QUERIES.warning("slow query: " + nanos / 1_000_000 + " ms, " + rows + " rows: " + sql);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exc) {
+            throw exc.getCause();
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final Operation operation;
+        private final String sql;
+
+        private StatementHandler(PreparedStatement statement, Operation operation, String sql) {
+            this.statement = statement;
+            this.operation = operation;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(!name.startsWith("execute") || (args != null && args.length > 0)) {
+                return QueryStats.invoke(statement, method, args);
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = QueryStats.invoke(statement, method, args);
+            } catch (Throwable exc) {
+                operation.errors.incrementAndGet();
+                throw exc;
+            }
+            if(result instanceof ResultSet) {
+                return Proxy.newProxyInstance(QueryStats.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler((ResultSet) result, operation, sql, start));
+            }
+            record(operation, sql, System.nanoTime() - start, updatedRows(result));
+            return result;
+        }
+
+        private long updatedRows(Object result) throws SQLException {
+            if(result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            if(result instanceof int[]) {
+                long rows = 0;
+                for(int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+                return rows;
+            }
+            return Math.max(statement.getUpdateCount(), 0);
+        }
+    }
+
+    private static class ResultSetHandler implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Operation operation;
+        private final String sql;
+        private final long start;
+        private long rows;
+        private boolean closed;
+
+        private ResultSetHandler(ResultSet resultSet, Operation operation, String sql, long start) {
+            this.resultSet = resultSet;
+            this.operation = operation;
+            this.sql = sql;
+            this.start = start;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            try {
+                Object result = QueryStats.invoke(resultSet, method, args);
+                if(name.equals("next") && Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+                return result;
+            } catch (SQLException exc) {
+                operation.errors.incrementAndGet();
+                throw exc;
+            } finally {
+                if(name.equals("close") && !closed) {
+                    closed = true;
+                    record(operation, sql, System.nanoTime() - start, rows);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counters and latency histogram of one SQL text. Histogram buckets are exact below 16 ns,
+     * above that every power of two is split into 8 buckets, so percentiles are within 12.5%.
+     */
+    private static class Operation {
+        private static final int BUCKETS = 16 + 59 * 8;
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void record(long nanos, long rowCount) {
+            histogram.incrementAndGet(bucket(nanos));
+            count.incrementAndGet();
+            rows.addAndGet(rowCount);
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private OperationStats snapshot(String sql) {
+            long[] buckets = new long[BUCKETS];
+            long total = 0;
+            for(int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.get(i);
+                total += buckets[i];
+            }
+            return new OperationStats(sql, count.get(), errors.get(), rows.get(), totalNanos.get(),
+                    percentile(buckets, total, 0.50), percentile(buckets, total, 0.99), maxNanos.get());
+        }
+
+        private static int bucket(long nanos) {
+            if(nanos < 16) {
+                return (int) Math.max(nanos, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            return 16 + (exponent - 4) * 8 + (int) ((nanos >>> (exponent - 3)) & 7);
+        }
+
+        /**
+         * @return upper bound of the bucket holding the value at given fraction
+         */
+        private static long percentile(long[] buckets, long total, double fraction) {
+            long rank = (long) Math.ceil(total * fraction);
+            long seen = 0;
+            for(int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if(seen >= rank && seen > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        private static long upperBound(int bucket) {
+            if(bucket < 16) {
+                return bucket;
+            }
+            int exponent = (bucket - 16) / 8 + 4;
+            long width = 1L << (exponent - 3);
+            return (8 + (bucket - 16) % 8) * width + width - 1;
+        }
+    }
+
+    /**
+     * Measurements of one SQL text at the time of snapshot
+     */
+    public static class OperationStats {
+        private final String sql;
+        private final long count;
+        private final long errors;
+        private final long rows;
+        private final long totalNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+
+        OperationStats(String sql, long count, long errors, long rows, long totalNanos,
+                       long p50Nanos, long p99Nanos, long maxNanos) {
+            this.sql = sql;
+            this.count = count;
+            this.errors = errors;
+            this.rows = rows;
+            this.totalNanos = totalNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+        /**
+         * @return number of completed executions
+         */
+        public long getCount() {
+            return count;
+        }
+        public long getErrors() {
+            return errors;
+        }
+        /**
+         * @return rows read by queries or modified by updates
+         */
+        public long getRows() {
+            return rows;
+        }
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "OperationStats{" +
+                    "sql='" + sql + '\'' +
+                    ", count=" + count +
+                    ", errors=" + errors +
+                    ", rows=" + rows +
+                    ", p50Nanos=" + p50Nanos +
+                    ", p99Nanos=" + p99Nanos +
+                    ", maxNanos=" + maxNanos +
+                    '}';
+        }
+    }
+}
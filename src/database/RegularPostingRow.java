@@ -0,0 +1,27 @@
+package database;
+
+/**
+ * RegularPostingRow holds values of a single regularExpenses/regularIncomes row for batch inserts
+ */
+public class RegularPostingRow extends PostingRow {
+    private final int frequency;
+    private final int lastEpochDay;
+
+    /**
+     * @param frequency number of days between postings
+     * @param lastEpochDay date of last posting as epoch day
+     */
+    public RegularPostingRow(int accountId, int categoryId, String name, long amount, int epochDay,
+                             int frequency, int lastEpochDay) {
+        super(accountId, categoryId, name, amount, epochDay);
+        this.frequency = frequency;
+        this.lastEpochDay = lastEpochDay;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+    public int getLastEpochDay() {
+        return lastEpochDay;
+    }
+}
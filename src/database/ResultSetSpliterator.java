@@ -0,0 +1,74 @@
+package database;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * ResultSetSpliterator maps rows of a live ResultSet one at a time, so a stream over it
+ * never holds more than the driver's fetch window. Closing the stream closes the result set
+ * and its statement.
+ */
+class ResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+    interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<T> mapper;
+
+    private ResultSetSpliterator(PreparedStatement statement, ResultSet resultSet, RowMapper<T> mapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Executes statement and streams its rows. Statement is owned by the stream and closed with it.
+     * @param statement prepared statement with bound parameters
+     * @param mapper creates element from current row
+     * @return sequential stream that has to be closed
+     */
+    static <T> Stream<T> stream(PreparedStatement statement, RowMapper<T> mapper) throws SQLException {
+        ResultSet resultSet;
+        try {
+            resultSet = statement.executeQuery();
+        } catch (SQLException exc) {
+            statement.close();
+            throw exc;
+        }
+        ResultSetSpliterator<T> spliterator = new ResultSetSpliterator<>(statement, resultSet, mapper);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        try {
+            if(!resultSet.next()) {
+                return false;
+            }
+            action.accept(mapper.map(resultSet));
+            return true;
+        } catch (SQLException exc) {
+            throw new IllegalStateException("could not read row", exc);
+        }
+    }
+
+    private void close() {
+        try {
+            resultSet.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
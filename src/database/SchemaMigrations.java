@@ -0,0 +1,328 @@
+package database;
+
+import tools.PasswordHasher;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * SchemaMigrations brings database schema to the current version.
+ * Applied versions are recorded in schema_migrations table, every migration
+ * runs in its own transaction together with its record.
+ */
+public class SchemaMigrations {
+    private static final Logger LOGGER = Logger.getLogger( SchemaMigrations.class.getName() );
+
+    private static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_accounts_user ON accounts (user_id)",
+            "CREATE INDEX IF NOT EXISTS idx_expenses_account_date ON expenses (account_id, date)",
+            "CREATE INDEX IF NOT EXISTS idx_expenses_category ON expenses (category_id)",
+            "CREATE INDEX IF NOT EXISTS idx_incomes_account_date ON incomes (account_id, date)",
+            "CREATE INDEX IF NOT EXISTS idx_incomes_category ON incomes (category_id)",
+            "CREATE INDEX IF NOT EXISTS idx_regularExpenses_account ON regularExpenses (account_id)",
+            "CREATE INDEX IF NOT EXISTS idx_regularIncomes_account ON regularIncomes (account_id)"
+    };
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+            Migration.sql(1, "baseline schema",
+                    "CREATE TABLE IF NOT EXISTS `users` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, " +
+                            "`name` TEXT, `password` TEXT, `monthlyBudget` INTEGER)",
+                    "CREATE TABLE IF NOT EXISTS `accounts` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, `user_id` INTEGER, `name` TEXT, " +
+                            "`balance` NUMERIC, `type` INTEGER, `interest` NUMERIC, " +
+                            "`lastCapitalizationDate` TEXT, `capitalizationPeriod` INTEGER)",
+                    "CREATE TABLE IF NOT EXISTS `expensesCategories` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `name` TEXT NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS `incomesCategories` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `name` INTEGER NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS `expenses` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, `account_id` INTEGER NOT NULL, " +
+                            "`category_id` INTEGER, `name` TEXT, `price` NUMERIC, `date` TEXT)",
+                    "CREATE TABLE IF NOT EXISTS `incomes` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER NOT NULL, " +
+                            "`category_id` INTEGER NOT NULL, `name` TEXT, `money` NUMERIC, `date` TEXT)",
+                    "CREATE TABLE IF NOT EXISTS `regularExpenses` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER, " +
+                            "`category_id` INTEGER, `name` REAL, `price` NUMERIC, `date` TEXT, " +
+                            "`frequency` INTEGER, `lastExpense` TEXT)",
+                    "CREATE TABLE IF NOT EXISTS `regularIncomes` (" +
+                            "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER NOT NULL, " +
+                            "`category_id` INTEGER NOT NULL, `name` TEXT, `money` NUMERIC, `date` TEXT, " +
+                            "`frequency` INTEGER, `lastIncome` TEXT)"),
+            new Migration(2, "drop sqlitebrowser leftover tables") {
+                @Override
+                public void apply(Connection connection) throws SQLException {
+                    List<String> leftovers = new ArrayList<>();
+                    String query = "SELECT name FROM sqlite_master WHERE type = 'table' " +
+                            "AND name LIKE 'sqlitebrowser_rename_column_new_table%'";
+                    try (Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery(query)) {
+                        while(resultSet.next()) {
+                            leftovers.add(resultSet.getString(1));
+                        }
+                    }
+                    try (Statement statement = connection.createStatement()) {
+                        for(String table : leftovers) {
+                            statement.execute("DROP TABLE IF EXISTS `" + table + "`");
+                        }
+                    }
+                }
+            },
+            Migration.sql(3, "account, date and category indexes", INDEXES),
+            new Migration(4, "store dates as epoch days") {
+                @Override
+                public void apply(Connection connection) throws SQLException {
+                    try (Statement statement = connection.createStatement()) {
+                        rebuild(statement, "expenses",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, `account_id` INTEGER NOT NULL, " +
+                                        "`category_id` INTEGER, `name` TEXT, `price` NUMERIC, `date` INTEGER",
+                                "id, account_id, category_id, name, price, date",
+                                "id, account_id, category_id, name, price, " + epochDay("date"));
+                        rebuild(statement, "incomes",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER NOT NULL, " +
+                                        "`category_id` INTEGER NOT NULL, `name` TEXT, `money` NUMERIC, `date` INTEGER",
+                                "id, account_id, category_id, name, money, date",
+                                "id, account_id, category_id, name, money, " + epochDay("date"));
+                        rebuild(statement, "regularExpenses",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER, " +
+                                        "`category_id` INTEGER, `name` TEXT, `price` NUMERIC, `date` INTEGER, " +
+                                        "`frequency` INTEGER, `lastExpense` INTEGER",
+                                "id, account_id, category_id, name, price, date, frequency, lastExpense",
+                                "id, account_id, category_id, name, price, " + epochDay("date") +
+                                        ", frequency, " + epochDay("lastExpense"));
+                        rebuild(statement, "regularIncomes",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER NOT NULL, " +
+                                        "`category_id` INTEGER NOT NULL, `name` TEXT, `money` NUMERIC, `date` INTEGER, " +
+                                        "`frequency` INTEGER, `lastIncome` INTEGER",
+                                "id, account_id, category_id, name, money, date, frequency, lastIncome",
+                                "id, account_id, category_id, name, money, " + epochDay("date") +
+                                        ", frequency, " + epochDay("lastIncome"));
+                        rebuild(statement, "accounts",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, `user_id` INTEGER, `name` TEXT, " +
+                                        "`balance` NUMERIC, `type` INTEGER, `interest` NUMERIC, " +
+                                        "`lastCapitalizationDate` INTEGER, `capitalizationPeriod` INTEGER",
+                                "id, user_id, name, balance, type, interest, lastCapitalizationDate, capitalizationPeriod",
+                                "id, user_id, name, balance, type, interest, " + epochDay("lastCapitalizationDate") +
+                                        ", capitalizationPeriod");
+                        for(String sql : INDEXES) {
+                            statement.execute(sql);
+                        }
+                    }
+                }
+            },
+            new Migration(5, "store money as integer minor units") {
+                @Override
+                public void apply(Connection connection) throws SQLException {
+                    try (Statement statement = connection.createStatement()) {
+                        rebuild(statement, "expenses",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, `account_id` INTEGER NOT NULL, " +
+                                        "`category_id` INTEGER, `name` TEXT, `price` INTEGER, `date` INTEGER",
+                                "id, account_id, category_id, name, price, date",
+                                "id, account_id, category_id, name, " + minorUnits("price") + ", date");
+                        rebuild(statement, "incomes",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER NOT NULL, " +
+                                        "`category_id` INTEGER NOT NULL, `name` TEXT, `money` INTEGER, `date` INTEGER",
+                                "id, account_id, category_id, name, money, date",
+                                "id, account_id, category_id, name, " + minorUnits("money") + ", date");
+                        rebuild(statement, "regularExpenses",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER, " +
+                                        "`category_id` INTEGER, `name` TEXT, `price` INTEGER, `date` INTEGER, " +
+                                        "`frequency` INTEGER, `lastExpense` INTEGER",
+                                "id, account_id, category_id, name, price, date, frequency, lastExpense",
+                                "id, account_id, category_id, name, " + minorUnits("price") +
+                                        ", date, frequency, lastExpense");
+                        rebuild(statement, "regularIncomes",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, `account_id` INTEGER NOT NULL, " +
+                                        "`category_id` INTEGER NOT NULL, `name` TEXT, `money` INTEGER, `date` INTEGER, " +
+                                        "`frequency` INTEGER, `lastIncome` INTEGER",
+                                "id, account_id, category_id, name, money, date, frequency, lastIncome",
+                                "id, account_id, category_id, name, " + minorUnits("money") +
+                                        ", date, frequency, lastIncome");
+                        rebuild(statement, "accounts",
+                                "`id` INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT, `user_id` INTEGER, `name` TEXT, " +
+                                        "`balance` INTEGER, `type` INTEGER, `interest` NUMERIC, " +
+                                        "`lastCapitalizationDate` INTEGER, `capitalizationPeriod` INTEGER",
+                                "id, user_id, name, balance, type, interest, lastCapitalizationDate, capitalizationPeriod",
+                                "id, user_id, name, " + minorUnits("balance") +
+                                        ", type, interest, lastCapitalizationDate, capitalizationPeriod");
+                        statement.execute("UPDATE users SET monthlyBudget = " + minorUnits("monthlyBudget"));
+                        for(String sql : INDEXES) {
+                            statement.execute(sql);
+                        }
+                    }
+                }
+            },
+            new Migration(6, "monthly summary maintained by triggers") {
+                @Override
+                public void apply(Connection connection) throws SQLException {
+                    MonthlySummary.install(connection);
+                }
+            },
+            new Migration(7, "usernames and hashed passwords") {
+                @Override
+                public void apply(Connection connection) throws SQLException {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("ALTER TABLE users ADD COLUMN username TEXT");
+                        statement.execute("ALTER TABLE users ADD COLUMN password_hash TEXT");
+                        statement.execute("UPDATE users SET username = name");
+                        // the oldest user keeps a shared name, the others get their id appended
+                        int renamed = statement.executeUpdate("UPDATE users SET username = name || '#' || id " +
+                                "WHERE id > (SELECT MIN(id) FROM users AS other WHERE other.name = users.name)");
+                        if(renamed > 0) {
+                            LOGGER.warning(renamed + " users with duplicate names got usernames ending with #id");
+                        }
+                        statement.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_users_username ON users (username)");
+                    }
+                    List<Integer> ids = new ArrayList<>();
+                    List<String> passwords = new ArrayList<>();
+                    try (Statement statement = connection.createStatement();
+                         ResultSet resultSet = statement.executeQuery(
+                                 "SELECT id, password FROM users WHERE password IS NOT NULL")) {
+                        while(resultSet.next()) {
+                            ids.add(resultSet.getInt(1));
+                            passwords.add(resultSet.getString(2));
+                        }
+                    }
+                    try (PreparedStatement preparedStatement = connection.prepareStatement(
+                            "UPDATE users SET password_hash = ?, password = NULL WHERE id = ?")) {
+                        for(int i = 0; i < ids.size(); i++) {
+                            preparedStatement.setString(1, PasswordHasher.hash(passwords.get(i).toCharArray()));
+                            preparedStatement.setInt(2, ids.get(i));
+                            preparedStatement.executeUpdate();
+                        }
+                    }
+                }
+            },
+            Migration.sql(8, "statement import checkpoints",
+                    "CREATE TABLE IF NOT EXISTS statement_imports (" +
+                            "import_key TEXT NOT NULL PRIMARY KEY, account_id INTEGER NOT NULL, " +
+                            "lines INTEGER NOT NULL, expenses INTEGER NOT NULL, incomes INTEGER NOT NULL, " +
+                            "finished INTEGER NOT NULL DEFAULT 0)")
+    ));
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * @return all migrations in version order
+     */
+    public static List<Migration> getMigrations() {
+        return MIGRATIONS;
+    }
+
+    /**
+     * @return highest migration version known to the application
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
+    }
+
+    /**
+     * Applies all migrations newer than database's current version
+     * @param connection connection to migrated database
+     * @return number of applied migrations
+     */
+    public static int migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                    "version INTEGER NOT NULL PRIMARY KEY, description TEXT, " +
+                    "applied_at TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+        int applied = 0;
+        for(Migration migration : MIGRATIONS) {
+            if(migration.getVersion() <= getCurrentVersion(connection)) {
+                continue;
+            }
+            applyMigration(connection, migration);
+            applied++;
+        }
+        return applied;
+    }
+
+    /**
+     * @param connection connection to database
+     * @return version of the last applied migration, 0 for a new database
+     */
+    public static int getCurrentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM schema_migrations")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Replaces table with a new one created from columnsDdl, copying rows with select expressions.
+     * SQLite can't change column types in place, indexes have to be created again afterwards.
+     * The AUTOINCREMENT counter is carried over, otherwise ids of deleted rows above MAX(id) would be reused.
+     */
+    private static void rebuild(Statement statement, String table, String columnsDdl,
+                                String columns, String select) throws SQLException {
+        String newTable = table + "_new";
+        long sequence = -1;
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT seq FROM sqlite_sequence WHERE name = '" + table + "'")) {
+            if(resultSet.next()) {
+                sequence = resultSet.getLong(1);
+            }
+        }
+        statement.execute("DROP TABLE IF EXISTS `" + newTable + "`");
+        statement.execute("CREATE TABLE `" + newTable + "` (" + columnsDdl + ")");
+        statement.execute("INSERT INTO `" + newTable + "` (" + columns + ") SELECT " + select + " FROM `" + table + "`");
+        statement.execute("DROP TABLE `" + table + "`");
+        statement.execute("ALTER TABLE `" + newTable + "` RENAME TO `" + table + "`");
+        if(sequence >= 0) {
+            statement.execute("UPDATE sqlite_sequence SET seq = MAX(seq, " + sequence + ") WHERE name = '" + table + "'");
+            if(statement.getUpdateCount() == 0) {
+                statement.execute("INSERT INTO sqlite_sequence (name, seq) VALUES ('" + table + "', " + sequence + ")");
+            }
+        }
+    }
+
+    /**
+     * @return SQL expression converting yyyy-MM-dd or yyyy.MM.dd text column to epoch day, NULL stays NULL
+     */
+    private static String epochDay(String column) {
+        return "CAST(julianday(replace(" + column + ", '.', '-')) - 2440587.5 AS INTEGER)";
+    }
+
+    /**
+     * @return SQL expression converting amount in currency units to integer minor units, NULL stays NULL
+     */
+    private static String minorUnits(String column) {
+        return "CAST(ROUND(" + column + " * 100) AS INTEGER)";
+    }
+
+    private static void applyMigration(Connection connection, Migration migration) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            if(migration.getVersion() <= getCurrentVersion(connection)) {
+                connection.rollback();
+                return;
+            }
+            migration.apply(connection);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(
+                    "INSERT INTO schema_migrations (version, description) VALUES (?,?)")) {
+                preparedStatement.setInt(1, migration.getVersion());
+                preparedStatement.setString(2, migration.getDescription());
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+            LOGGER.info("applied migration " + migration);
+        } catch (SQLException exc) {
+            connection.rollback();
+            throw new SQLException("migration " + migration + " failed", exc);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+}
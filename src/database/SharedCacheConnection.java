@@ -0,0 +1,143 @@
+package database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SharedCacheConnection waits for table locks of the shared-cache in-memory database.
+ * Connections sharing the cache lock tables instead of the file, a statement reading a table
+ * another connection has written in its open transaction fails at once with SQLITE_LOCKED,
+ * and busy_timeout doesn't apply to it. Statements prepared on a wrapped connection are executed
+ * again until the lock is released or the busy timeout passes, so readers keep serialized isolation
+ * and never see rows of a transaction that may still be rolled back.
+ * SQLite finalizes a statement that failed with SQLITE_LOCKED, so it's prepared again and its
+ * parameters are bound again before the retry. Batches aren't retried, they may be half executed.
+ */
+final class SharedCacheConnection {
+    private static final int SQLITE_LOCKED = 6;
+    private static final long MAX_PAUSE_MILLIS = 20;
+
+    private SharedCacheConnection() {
+    }
+
+    /**
+     * @param connection connection to the shared-cache in-memory database
+     * @param timeoutMillis how long a statement waits for a locked table
+     * @return connection retrying statements that found a table locked
+     */
+    static Connection wrap(Connection connection, long timeoutMillis) {
+        return (Connection) Proxy.newProxyInstance(SharedCacheConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if(method.getName().equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if(method.getName().equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    Object result = invoke(connection, method, args);
+                    if(method.getName().equals("prepareStatement")) {
+                        return Proxy.newProxyInstance(SharedCacheConnection.class.getClassLoader(),
+                                new Class<?>[]{PreparedStatement.class},
+                                new StatementHandler(connection, method, args, (PreparedStatement) result,
+                                        timeoutMillis));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * @return true if exc is SQLITE_LOCKED, including its shared cache variant
+     */
+    private static boolean isLocked(SQLException exc) {
+        return (exc.getErrorCode() & 0xff) == SQLITE_LOCKED;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exc) {
+            throw exc.getCause();
+        }
+    }
+
+    private static class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final Method prepare;
+        private final Object[] prepareArgs;
+        private final long timeoutMillis;
+        private final Map<String, Object[]> settings = new LinkedHashMap<>();
+        private final Map<Integer, Object[]> parameters = new TreeMap<>();
+        private PreparedStatement statement;
+
+        private StatementHandler(Connection connection, Method prepare, Object[] prepareArgs,
+                                 PreparedStatement statement, long timeoutMillis) {
+            this.connection = connection;
+            this.prepare = prepare;
+            this.prepareArgs = prepareArgs;
+            this.statement = statement;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if(name.equals("execute") || name.equals("executeQuery") || name.equals("executeUpdate")) {
+                return execute(method, args);
+            }
+            Object result = SharedCacheConnection.invoke(statement, method, args);
+            if(name.equals("clearParameters")) {
+                parameters.clear();
+            } else if(name.startsWith("set") && args != null && args.length > 1 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], new Object[]{method, args});
+            } else if(name.startsWith("set") && args != null && args.length == 1) {
+                settings.put(name, new Object[]{method, args});
+            }
+            return result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long pause = 1;
+            while(true) {
+                try {
+                    return SharedCacheConnection.invoke(statement, method, args);
+                } catch (SQLException exc) {
+                    if(!isLocked(exc) || System.currentTimeMillis() >= deadline) {
+                        throw exc;
+                    }
+                    try {
+                        Thread.sleep(pause);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        throw exc;
+                    }
+                    pause = Math.min(pause * 2, MAX_PAUSE_MILLIS);
+                    prepareAgain();
+                }
+            }
+        }
+
+        private void prepareAgain() throws Throwable {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // statement was finalized by the failed step
+            }
+            statement = (PreparedStatement) SharedCacheConnection.invoke(connection, prepare, prepareArgs);
+            for(Object[] call : settings.values()) {
+                SharedCacheConnection.invoke(statement, (Method) call[0], (Object[]) call[1]);
+            }
+            for(Object[] call : parameters.values()) {
+                SharedCacheConnection.invoke(statement, (Method) call[0], (Object[]) call[1]);
+            }
+        }
+    }
+}
@@ -1,22 +1,190 @@
 package database;
 
 import java.sql.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * SqliteConnection is responsible to connect to db
  */
 public class SqliteConnection {
+    private static final long LEASE_TIMEOUT_MILLIS = 10_000;
+
+    private static ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+    private static ConnectionPool pool;
+    private static SqliteWriter writer;
+    private static WriteBehindQueue writeQueue;
+    private static ExecutorService hydrationExecutor;
+    private static MemoryDatabase memoryDatabase;
+    private static boolean migrated;
+
     /**
-     * Connecting to application database
+     * Connecting to application database. In memory mode the database file is loaded
+     * into the in-memory database on first use and connections are opened to it,
+     * their statements wait up to the busy timeout for tables locked by other connections.
      * @return Connection model(if connection succeeded) or null.
      */
     public static Connection connector() {
+        ConnectionProfile currentProfile = getProfile();
         try {
             Class.forName("org.sqlite.JDBC");
-            Connection conn = DriverManager.getConnection("jdbc:sqlite:database.db");
+            if(currentProfile.isInMemory()) {
+                getMemoryDatabase();
+            }
+            Connection conn = DriverManager.getConnection(currentProfile.getUrl());
+            currentProfile.apply(conn);
+            if(currentProfile.isInMemory()) {
+                return SharedCacheConnection.wrap(conn, currentProfile.getBusyTimeoutMillis());
+            }
             return conn;
         }catch (Exception e){
             System.out.println(e);
             return null;
         }
     }
+
+    /**
+     * Replaces connection profile. Existing pool and writer are shut down,
+     * new ones are created with the new profile on next use.
+     * @param connectionProfile profile used for all new connections
+     */
+    public static synchronized void configure(ConnectionProfile connectionProfile) {
+        shutdown();
+        profile = connectionProfile;
+        migrated = false;
+    }
+
+    public static synchronized ConnectionProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Shared pool of application database connections, created on first use
+     * @return connection pool
+     */
+    public static synchronized ConnectionPool getPool() {
+        if(pool == null) {
+            migrate();
+            pool = new ConnectionPool(profile.getPoolSize(), LEASE_TIMEOUT_MILLIS);
+        }
+        return pool;
+    }
+
+    /**
+     * Single writer serializing all database modifications, created on first use
+     * @return writer
+     */
+    public static synchronized SqliteWriter getWriter() {
+        if(writer == null) {
+            migrate();
+            Connection connection = connector();
+            if(connection == null) {
+                throw new IllegalStateException("could not open writer connection to " + profile.getPath());
+            }
+            writer = new SqliteWriter(connection);
+        }
+        return writer;
+    }
+
+    /**
+     * Queue of asynchronous modifications written by the shared writer, created on first use
+     * @return write-behind queue
+     */
+    public static synchronized WriteBehindQueue getWriteQueue() {
+        if(writeQueue == null) {
+            writeQueue = new WriteBehindQueue(getWriter());
+        }
+        return writeQueue;
+    }
+
+    /**
+     * Daemon threads that help SqliteDb load user's postings in parallel, created on first use
+     * @return executor of hydration helpers
+     */
+    public static synchronized ExecutorService getHydrationExecutor() {
+        if(hydrationExecutor == null) {
+            AtomicInteger threads = new AtomicInteger();
+            hydrationExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "sqlite-hydration-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return hydrationExecutor;
+    }
+
+    /**
+     * In-memory database of a profile in memory mode, loaded from the database file on first use
+     * @return in-memory database or null when the profile works on the file
+     */
+    public static synchronized MemoryDatabase getMemoryDatabase() throws SQLException {
+        if(memoryDatabase == null && profile.isInMemory()) {
+            memoryDatabase = new MemoryDatabase(profile);
+        }
+        return memoryDatabase;
+    }
+
+    /**
+     * Writes the in-memory database into the database file right away
+     * @return true if the file was written, false when nothing changed or the profile isn't in memory mode
+     */
+    public static boolean checkpoint() throws SQLException {
+        MemoryDatabase database = getMemoryDatabase();
+        return database != null && database.checkpoint();
+    }
+
+    /**
+     * Applies pending schema migrations once per profile, before the first pooled or writer connection is handed out
+     */
+    public static synchronized void migrate() {
+        if(migrated) {
+            return;
+        }
+        Connection connection = connector();
+        if(connection == null) {
+            throw new IllegalStateException("could not open connection to " + profile.getPath());
+        }
+        try {
+            SchemaMigrations.migrate(connection);
+            migrated = true;
+        } catch (SQLException exc) {
+            throw new IllegalStateException("could not migrate " + profile.getPath(), exc);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    /**
+     * @return current usage counters of the shared pool
+     */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /**
+     * Closes pooled connections and the writer connection. Writes already queued are finished first.
+     * In memory mode the last checkpoint is written and the in-memory database is dropped.
+     */
+    public static synchronized void shutdown() {
+        writeQueue = null;
+        if(hydrationExecutor != null) {
+            hydrationExecutor.shutdown();
+            hydrationExecutor = null;
+        }
+        if(writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+        if(pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if(memoryDatabase != null) {
+            memoryDatabase.close();
+            memoryDatabase = null;
+        }
+    }
 }
@@ -9,38 +9,152 @@ import expenses.RegularExpense;
 import incomes.Income;
 import incomes.IncomeCategory;
 import incomes.RegularIncome;
+import tools.DateCodec;
+import tools.PasswordHasher;
+import users.Credential;
 import users.User;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.GregorianCalendar;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class SqliteDb {
     private static final Logger LOGGER = Logger.getLogger( SqliteDb.class.getName() );
+    private static final int PROGRESS_INTERVAL = 4096;
     private Connection connection;
+    private StatementCache statements;
+    private int batchCommitInterval = 10_000;
+    private SQLException lastError;
+    private boolean categoriesChanged;
+    private LoadListener loadListener = LoadListener.NONE;
+    private int loadedAccounts;
+    private AtomicLong loadedRows = new AtomicLong();
+    private int hydrationParallelism = SqliteConnection.getProfile().getHydrationParallelism();
 
     /**
-     * SqliteDB constructor - connecting to database via SqliteConnection class
+     * SqliteDB constructor - leasing connection from SqliteConnection's pool
+     * @throws IllegalStateException when no pooled connection became free in time or opening one failed
      */
     public SqliteDb() {
-        this.connection = SqliteConnection.connector();
-        if(connection==null) {
-            System.exit(1);
+        try {
+            this.connection = SqliteConnection.getPool().lease();
+            this.statements = SqliteConnection.getPool().getStatementCache(connection);
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            throw new IllegalStateException("could not lease database connection", exc);
         }
     }
 
+    /**
+     * SqliteDb working on a connection that isn't leased from the pool, e.g. SqliteWriter's connection
+     */
+    SqliteDb(Connection connection, StatementCache statements) {
+        this.connection = connection;
+        this.statements = statements;
+    }
+
+    /**
+     * Returns connection to the pool. SqliteDb object shouldn't be used afterwards.
+     */
     public void closeConnection(){
+        SqliteConnection.getPool().release(connection);
+    }
+
+    void closeStatements() {
+        statements.close();
+    }
+
+    /**
+     * Returns and clears error of the last failed modification. Modifying methods log and swallow
+     * their SQLExceptions, callers that need to react to failures (e.g. WriteBehindQueue) check it.
+     * @return error or null if no modification failed since last call
+     */
+    public SQLException takeLastError() {
+        SQLException error = lastError;
+        lastError = null;
+        return error;
+    }
+
+    /**
+     * Starts transaction on this SqliteDb's connection
+     */
+    void beginTransaction() throws SQLException {
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Commits transaction started with beginTransaction. CategoryCache is invalidated only now
+     * when the transaction changed categories, so no reader caches the old ones under the new version.
+     */
+    void commitTransaction() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+        if(categoriesChanged) {
+            categoriesChanged = false;
+            CategoryCache.getInstance().invalidate();
+        }
+    }
+
+    /**
+     * Rolls back transaction started with beginTransaction
+     */
+    void rollbackTransaction() {
+        categoriesChanged = false;
         try {
-            connection.close();
+            connection.rollback();
+            connection.setAutoCommit(true);
         } catch (SQLException exc) {
-            System.out.println(exc);
+            LOGGER.warning("Error occurred: " + exc);
         }
     }
 
+    /**
+     * Starts savepoint inside transaction started with beginTransaction
+     */
+    void savepoint(String name) throws SQLException {
+        prepare("SAVEPOINT " + name).execute();
+    }
+
+    /**
+     * Keeps changes made since savepoint as part of the enclosing transaction
+     */
+    void releaseSavepoint(String name) throws SQLException {
+        prepare("RELEASE " + name).execute();
+    }
+
+    /**
+     * Undoes changes made since savepoint, the enclosing transaction stays open
+     */
+    void rollbackToSavepoint(String name) throws SQLException {
+        prepare("ROLLBACK TO " + name).execute();
+        prepare("RELEASE " + name).execute();
+    }
+
+    /**
+     * Returns compiled statement for sql from connection's StatementCache.
+     * Returned statement must not be closed, only its ResultSet.
+     */
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return statements.prepare(sql);
+    }
+
     /**
      * Checking if application is connected to database
      * @return true - connected or false - not connected
@@ -49,548 +163,1469 @@ public class SqliteDb {
         try{
             return !connection.isClosed();
         } catch(SQLException e) {
-            e.printStackTrace();
+            LOGGER.warning("Error occurred: " + e);
             return false;
         }
     }
 
     /**
-     * Verifies password
-     * @param password password to verify
-     * @return true - password correct false - password incorrect
+     * Checks username and password and loads the user with one lookup of the users row
+     * by the username index. Password is compared with stored PBKDF2 hash in constant time.
+     * Loading stops with CancellationException when the calling thread is interrupted.
+     * @param username user's login
+     * @param password user's password
+     * @param listener notified about loaded accounts and rows
+     * @param onVerified receives credential of the user after password was verified, may be null
+     * @return loaded user or null if username or password is wrong
      */
-    public boolean validatePassword(String password) {
-        String query = "SELECT * FROM users WHERE password = ?";
+    public User authenticate(String username, char[] password, LoadListener listener, Consumer<Credential> onVerified) {
+        String query = "SELECT * FROM users WHERE username = ?";
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1,password);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            if(resultSet.next()) {
-                LOGGER.info("validated password");
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setString(1,username);
+            boolean[] found = {false};
+            User user = this.loadUser(preparedStatement, row -> {
+                found[0] = true;
+                Credential credential = new Credential(username, row.getInt("id"), row.getString("password_hash"));
+                if(!credential.matches(password)) {
+                    return false;
+                }
+                if(onVerified != null) {
+                    onVerified.accept(credential);
+                }
                 return true;
-            } else {
-                LOGGER.info("incorrect password");
-                return false;
+            }, listener);
+            if(!found[0]) {
+                PasswordHasher.verifyNothing(password);
             }
+            return user;
         } catch (SQLException e) {
-            LOGGER.info(e.toString());
-            return false;
+            LOGGER.warning("Error occurred: " + e);
+            return null;
         }
     }
 
     //DATABASE GETTERS
     /**
-     * Getting user data based on password and filling User object attributes
-     * @param password
-     * @return User object with all attributes that are stored in database
-     */
-    public User initUserData(String password) {
-        String query = "SELECT * FROM users WHERE password = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1,password);
-            ResultSet resultSet = preparedStatement.executeQuery();
-
-            if(resultSet.next()) {
-                User.initializeUser(resultSet.getString("name"),
-                        resultSet.getInt("id"),
-                        resultSet.getDouble("monthlyBudget"));
-                ArrayList<Account> accounts = this.getAccounts(User.getInstance().getId());
-                User.getInstance().setAccounts(accounts);
-                LOGGER.info("user initialization finished");
-                for(Account acc: User.getInstance().getAccounts()) {
-                    for( RegularIncome i : acc.getRegularIncomesList()) {
-                        System.out.println(i);
+     * Loads user with all accounts and their regular expenses and incomes by id, e.g. for SessionRegistry
+     * @param userId user's id
+     * @return User object or null if there is no such user
+     */
+    public User loadUser(int userId) {
+        String query = "SELECT * FROM users WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,userId);
+            return this.loadUser(preparedStatement, row -> true, LoadListener.NONE);
+        } catch (SQLException e) {
+            LOGGER.warning("Error occurred: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the first user returned by userQuery that is accepted by filter
+     */
+    private User loadUser(PreparedStatement userQuery, UserFilter filter, LoadListener listener) {
+        this.loadListener = listener;
+        this.loadedAccounts = 0;
+        this.loadedRows = new AtomicLong();
+        try {
+            User user = null;
+            try (ResultSet resultSet = userQuery.executeQuery()) {
+                while(user == null && resultSet.next()) {
+                    if(filter.accept(resultSet)) {
+                        user = new User(resultSet.getString("name"),
+                                resultSet.getInt("id"),
+                                resultSet.getLong("monthlyBudget"));
                     }
                 }
-                return User.getInstance();
             }
-            else {
+            if(user == null) {
                 LOGGER.warning("user initialization failed");
                 return null;
             }
+            ArrayList<Account> accounts = this.getAccounts(user.getId());
+            user.setAccounts(accounts);
+            LOGGER.info("user initialization finished");
+            return user;
         } catch (SQLException e) {
             LOGGER.warning("Error occurred: " + e);
             return null;
+        } finally {
+            this.loadListener = LoadListener.NONE;
         }
     }
+
+    private interface UserFilter {
+        boolean accept(ResultSet row) throws SQLException;
+    }
+
+    private void reportProgress() {
+        if(Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("loading user data cancelled");
+        }
+        loadListener.progress(loadedAccounts, loadedRows.get());
+    }
+
+    private void rowLoaded() {
+        if(loadedRows.incrementAndGet() % PROGRESS_INTERVAL == 0) {
+            reportProgress();
+        }
+    }
+
+    /**
+     * Sets how many connections load postings of one user. With more than one, accounts are split
+     * into id ranges loaded side by side with connections leased from the pool (WAL lets readers run concurrently).
+     * @param hydrationParallelism number of connections, 1 loads everything with this SqliteDb's connection
+     */
+    public void setHydrationParallelism(int hydrationParallelism) {
+        if(hydrationParallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + hydrationParallelism);
+        }
+        this.hydrationParallelism = hydrationParallelism;
+    }
     /**
-     * Getting user's Account. Account's are connected to user by ids
+     * Getting user's Account. Account's are connected to user by ids.
+     * Regular expenses and incomes of all accounts are fetched with one query per table
+     * and assigned to their accounts in memory. Expenses and incomes are not loaded,
+     * they're read page by page, see getExpensesPage and getIncomesPage.
      * @param user_id user's id
      * @return ArrayList of all user's account
      */
     private ArrayList<Account> getAccounts(int user_id) {
-        String query = "SELECT * FROM accounts where user_id = ?";
-        String userId = Integer.toString(user_id);
+        String query = "SELECT * FROM accounts WHERE user_id = ? ORDER BY id";
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setString(1,userId);
-            ResultSet resultSet = preparedStatement.executeQuery();
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,user_id);
             ArrayList<Account> accounts = new ArrayList<>();
-            while (resultSet.next()) {
-                int accountId = resultSet.getInt("id");
-                String accountName = resultSet.getString("name");
-                double accountBalance = resultSet.getDouble("balance");
-                int type = resultSet.getInt("type");
-                if(type==1) {
-                    Account account = new Account(accountId, accountName, accountBalance);
-                    account.setExpensesList(this.getAccountExpenses(account.getId()));
-                    account.setRegularExpensesList(this.getAccountRegularExpenses(account.getId()));
-                    account.setIncomesList(this.getAccountIncomes(account.getId()));
-                    account.setRegularIncomesList(this.getAccountRegularIncomes(accountId));
-                    accounts.add(account);
-                } else if(type==2) {
-                    Account account = new CreditAccount
-                            (accountId,accountName,accountBalance, resultSet.getDouble("interest"));
-                    account.setExpensesList(this.getAccountExpenses(account.getId()));
-                    account.setRegularExpensesList(this.getAccountRegularExpenses(account.getId()));
-                    account.setIncomesList(this.getAccountIncomes(account.getId()));
-                    account.setRegularIncomesList(this.getAccountRegularIncomes(accountId));
-                    accounts.add(account);
-                } else if(type==3) {
-                    String string = resultSet.getString("lastCapitalizationDate");
-                    String[] date = string.split("-");
-                    int dayOfMonth = Integer.parseInt(date[2]);
-                    int month = Integer.parseInt(date[1]);
-                    int year = Integer.parseInt(date[0]);
-                    GregorianCalendar lastCapitalizationDate  = new GregorianCalendar(year,month,dayOfMonth);
-
-                    Account account = new SavingAccount
-                            (accountId,accountName,accountBalance,resultSet.getDouble("interest"),lastCapitalizationDate,resultSet.getInt("capitalizationPeriod"));
-                    account.setExpensesList(this.getAccountExpenses(account.getId()));
-                    account.setRegularExpensesList(this.getAccountRegularExpenses(account.getId()));
-                    account.setIncomesList(this.getAccountIncomes(account.getId()));
-                    account.setRegularIncomesList(this.getAccountRegularIncomes(accountId));
+            HashMap<Integer,Account> accountsById = new HashMap<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    Account account = this.readAccount(resultSet);
+                    if(account == null) {
+                        continue;
+                    }
+                    account.setExpensesList(new ArrayList<>());
+                    account.setRegularExpensesList(new ArrayList<>());
+                    account.setIncomesList(new ArrayList<>());
+                    account.setRegularIncomesList(new ArrayList<>());
                     accounts.add(account);
+                    accountsById.put(account.getId(), account);
                 }
+            }
+            loadedAccounts = accounts.size();
+            reportProgress();
+            if(accounts.isEmpty()) {
+                return accounts;
+            }
+            Map<Integer,ExpenseCategory> expenseCategories = CategoryCache.getInstance().getExpenseCategories(connection);
+            Map<Integer,IncomeCategory> incomeCategories = CategoryCache.getInstance().getIncomeCategories(connection);
+            List<PostingsLoader> loaders = Arrays.asList(
+                    (db, from, to) -> db.loadRegularExpenses(user_id, from, to, accountsById, expenseCategories),
+                    (db, from, to) -> db.loadRegularIncomes(user_id, from, to, accountsById, incomeCategories));
+            if(hydrationParallelism > 1 && accounts.size() > 1) {
+                this.loadPostingsInParallel(accounts, loaders);
+            } else {
+                for(PostingsLoader loader : loaders) {
+                    loader.load(this, Integer.MIN_VALUE, Integer.MAX_VALUE);
                 }
-            for(Account acc : accounts) {
-                System.out.println(acc);
             }
+            reportProgress();
             return accounts;
         } catch (SQLException e) {
             LOGGER.warning("Error occurred: " + e);
             return null;
         }
     }
+
     /**
-     *
-     * @param id
-     * @return
+     * Loads postings of one table for accounts with ids from fromAccountId to toAccountId
      */
-    @SuppressWarnings("Duplicates")
-    private ArrayList<Expense> getAccountExpenses(int id) {
-        String expensesQuery = "SELECT * FROM expenses WHERE account_id = ?";
-        String categoriesQuery = "SELECT * FROM expensesCategories";
-        String accountId = Integer.toString(id);
-        try {
-            PreparedStatement ps = connection.prepareStatement(categoriesQuery);
-            ResultSet categoriesSet = ps.executeQuery();
-            HashMap<Integer,ExpenseCategory> categories = new HashMap<>();
-            while(categoriesSet.next()) {
-                int categoryId = categoriesSet.getInt("id");
-                String categoryName = categoriesSet.getString("name");
-                categories.put(categoryId,new ExpenseCategory(categoryName,categoryId));
+    private interface PostingsLoader {
+        void load(SqliteDb db, int fromAccountId, int toAccountId) throws SQLException;
+    }
+
+    /**
+     * Splits accounts (sorted by id) into contiguous id ranges, every range of every postings table
+     * is one task. This thread works through tasks with its own connection, up to hydrationParallelism - 1
+     * helpers do the same with connections that are free in the pool right now. Every list of every account
+     * is filled by exactly one task in id order, so the result is the same as with sequential loading.
+     */
+    private void loadPostingsInParallel(ArrayList<Account> accounts, List<PostingsLoader> loaders) throws SQLException {
+        int ranges = Math.min(hydrationParallelism, accounts.size());
+        ConcurrentLinkedQueue<PostingsTask> tasks = new ConcurrentLinkedQueue<>();
+        for(PostingsLoader loader : loaders) {
+            for(int range = 0; range < ranges; range++) {
+                tasks.add(new PostingsTask(loader,
+                        accounts.get(range * accounts.size() / ranges).getId(),
+                        accounts.get((range + 1) * accounts.size() / ranges - 1).getId()));
+            }
+        }
+        ConnectionPool pool = SqliteConnection.getPool();
+        List<Future<?>> helpers = new ArrayList<>();
+        for(int helper = 1; helper < Math.min(hydrationParallelism, tasks.size()); helper++) {
+            helpers.add(SqliteConnection.getHydrationExecutor().submit(() -> {
+                Connection helperConnection = pool.tryLease();
+                if(helperConnection == null) {
+                    return null;
+                }
+                try {
+                    SqliteDb helperDb = new SqliteDb(helperConnection, pool.getStatementCache(helperConnection));
+                    helperDb.loadListener = loadListener;
+                    helperDb.loadedAccounts = loadedAccounts;
+                    helperDb.loadedRows = loadedRows;
+                    helperDb.runTasks(tasks);
+                } finally {
+                    pool.release(helperConnection);
+                }
+                return null;
+            }));
+        }
+        try {
+            this.runTasks(tasks);
+            for(Future<?> helper : helpers) {
+                helper.get();
             }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("loading user data cancelled");
+        } catch (ExecutionException exc) {
+            if(exc.getCause() instanceof SQLException) {
+                throw (SQLException) exc.getCause();
+            }
+            if(exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw new IllegalStateException(exc.getCause());
+        } finally {
+            tasks.clear();
+            for(Future<?> helper : helpers) {
+                helper.cancel(true);
+            }
+        }
+    }
 
-            PreparedStatement preparedStatement = connection.prepareStatement(expensesQuery);
-            preparedStatement.setString(1,accountId);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            ArrayList<Expense> expenses = new ArrayList<>();
+    /**
+     * Runs postings tasks with this SqliteDb's connection until none is left
+     */
+    private void runTasks(ConcurrentLinkedQueue<PostingsTask> tasks) throws SQLException {
+        PostingsTask task;
+        while((task = tasks.poll()) != null) {
+            task.loader.load(this, task.fromAccountId, task.toAccountId);
+        }
+    }
 
-            while(resultSet.next()) {
-                int expenseId = resultSet.getInt("id");
-                String expenseName = resultSet.getString("name");
-                double expensePrice = resultSet.getDouble("price");
-                int expenseCategoryId = resultSet.getInt("category_id");
-                String expenseDate = resultSet.getString("date");
-                String[] date = expenseDate.split("-");
-                int dayOfMonth = Integer.parseInt(date[2]);
-                int month = Integer.parseInt(date[1]);
-                int year = Integer.parseInt(date[0]);
-                GregorianCalendar expDate = new GregorianCalendar(year,month,dayOfMonth);
-                ExpenseCategory category = categories.get(expenseCategoryId);
-                Expense expense = new Expense(expenseId,expenseName,expensePrice,category,expDate);
-                expenses.add(expense);
-            }
-            ps.close();
-            preparedStatement.close();
-            resultSet.close();
-            categoriesSet.close();
-            return expenses;
-        } catch (SQLException e) {
-            LOGGER.warning("Error occurred: " + e);
-            return null;
+    private static class PostingsTask {
+        private final PostingsLoader loader;
+        private final int fromAccountId;
+        private final int toAccountId;
+
+        private PostingsTask(PostingsLoader loader, int fromAccountId, int toAccountId) {
+            this.loader = loader;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
         }
     }
-    @SuppressWarnings("Duplicates")
-    private ArrayList<RegularExpense> getAccountRegularExpenses(int id) {
-        String regularExpensesQuery = "SELECT * FROM regularExpenses WHERE account_id = ?";
-        String categoriesQuery = "SELECT * FROM expensesCategories";
-        String accountId = Integer.toString(id);
-        try {
-            PreparedStatement ps = connection.prepareStatement(categoriesQuery);
-            ResultSet categoriesSet = ps.executeQuery();
-            HashMap<Integer,ExpenseCategory> categories = new HashMap<>();
-            while(categoriesSet.next()) {
-                int categoryId = categoriesSet.getInt("id");
-                String categoryName = categoriesSet.getString("name");
-                categories.put(categoryId,new ExpenseCategory(categoryName,categoryId));
-            }
 
-            PreparedStatement preparedStatement = connection.prepareStatement(regularExpensesQuery);
-            preparedStatement.setString(1,accountId);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            ArrayList<RegularExpense> regularExpenses = new ArrayList<>();
+    /**
+     * Creates Account, CreditAccount or SavingAccount from current accounts row
+     * @param resultSet result set positioned on accounts row
+     * @return account or null if account type is unknown
+     */
+    private Account readAccount(ResultSet resultSet) throws SQLException {
+        int accountId = resultSet.getInt("id");
+        String accountName = resultSet.getString("name");
+        long accountBalance = resultSet.getLong("balance");
+        int type = resultSet.getInt("type");
+        if(type==1) {
+            return new Account(accountId, accountName, accountBalance);
+        } else if(type==2) {
+            return new CreditAccount(accountId,accountName,accountBalance, resultSet.getDouble("interest"));
+        } else if(type==3) {
+            return new SavingAccount(accountId,accountName,accountBalance,resultSet.getDouble("interest"),
+                    resultSet.getInt("lastCapitalizationDate"),resultSet.getInt("capitalizationPeriod"));
+        }
+        return null;
+    }
 
+    /**
+     * Loads regular expenses of user's accounts with ids in given range with single query
+     */
+    @SuppressWarnings("Duplicates")
+    private void loadRegularExpenses(int userId, int fromAccountId, int toAccountId, HashMap<Integer,Account> accounts,
+                                     Map<Integer,ExpenseCategory> categories) throws SQLException {
+        String regularExpensesQuery = "SELECT * FROM regularExpenses WHERE account_id IN " +
+                "(SELECT id FROM accounts WHERE user_id = ?) AND account_id BETWEEN ? AND ? ORDER BY id";
+        PreparedStatement preparedStatement = prepare(regularExpensesQuery);
+        preparedStatement.setInt(1,userId);
+        preparedStatement.setInt(2,fromAccountId);
+        preparedStatement.setInt(3,toAccountId);
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
             while(resultSet.next()) {
+                int expenseAccountId = resultSet.getInt("account_id");
+                Account account = accounts.get(expenseAccountId);
+                if(account == null) {
+                    continue;
+                }
                 int expenseId = resultSet.getInt("id");
                 String expenseName = resultSet.getString("name");
-                double expensePrice = resultSet.getDouble("price");
+                long expensePrice = resultSet.getLong("price");
                 int expenseCategoryId = resultSet.getInt("category_id");
-                String expenseDate = resultSet.getString("date");
-                String[] date = expenseDate.split("-");
-                int dayOfMonth = Integer.parseInt(date[2]);
-                int month = Integer.parseInt(date[1]);
-                int year = Integer.parseInt(date[0]);
-                GregorianCalendar expDate = new GregorianCalendar(year,month,dayOfMonth);
+                int expDate = resultSet.getInt("date");
                 ExpenseCategory category = categories.get(expenseCategoryId);
                 int expenseFrequency = resultSet.getInt("frequency");
-                int expenseAccountId = resultSet.getInt("account_id");
-                String lastExpenseDate = resultSet.getString(("lastExpense"));
-                String[] date2 = lastExpenseDate.split("-");
-                int dayOfMonth2 = Integer.parseInt(date2[2]);
-                int month2 = Integer.parseInt(date2[1]);
-                int year2 = Integer.parseInt(date2[0]);
-                GregorianCalendar lastExpense = new GregorianCalendar(year2,month2,dayOfMonth2);
-                RegularExpense expense = new RegularExpense(expenseId,expenseName,expensePrice,category,expDate,expenseFrequency,expenseAccountId,lastExpense);
-                regularExpenses.add(expense);
+                int lastExpense = resultSet.getInt("lastExpense");
+                account.getRegularExpensesList().add(new RegularExpense(expenseId,expenseName,expensePrice,
+                        category,expDate,expenseFrequency,expenseAccountId,lastExpense));
+                rowLoaded();
             }
-            ps.close();
-            preparedStatement.close();
-            resultSet.close();
-            categoriesSet.close();
-            return regularExpenses;
-        } catch (SQLException e) {
-            LOGGER.warning("Error occurred: " + e);
-            return null;
         }
     }
-    @SuppressWarnings("Duplicates")
-    private ArrayList<Income> getAccountIncomes(int id) {
-        String accountId = Integer.toString(id);
-        String categoriesQuery = "SELECT * FROM incomesCategories";
-        String incomeQuery = "SELECT * FROM incomes WHERE account_id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(categoriesQuery);
-            ResultSet categoriesSet = preparedStatement.executeQuery();
-            HashMap<Integer, IncomeCategory> categories = new HashMap<>();
-            while(categoriesSet.next()) {
-                int categoryId = categoriesSet.getInt("id");
-                String categoryName = categoriesSet.getString("name");
-                categories.put(categoryId,new IncomeCategory(categoryId,categoryName));
-            }
-            PreparedStatement preparedStatement1 = connection.prepareStatement(incomeQuery);
-            preparedStatement1.setString(1,accountId);
-            ResultSet incomesSet = preparedStatement1.executeQuery();
-            ArrayList<Income> incomes = new ArrayList<>();
-
-            while(incomesSet.next()) {
-                int incomeId = incomesSet.getInt("id");
-                int incomeCategoryId = incomesSet.getInt("category_id");
-                String incomeName = incomesSet.getString("name");
-                double incomeMoney = incomesSet.getDouble("money");
-                String incomeDate = incomesSet.getString("date");
-                String[] date = incomeDate.split("-|\\.");
-                int year = Integer.parseInt(date[0]);
-                int month = Integer.parseInt(date[1]);
-                int dayOfMonth = Integer.parseInt(date[2]);
-                GregorianCalendar incDate = new GregorianCalendar(year,month,dayOfMonth);
-                IncomeCategory category = categories.get(incomeCategoryId);
-                Income income = new Income(incomeId,incomeName,incomeMoney,category,incDate);
-                incomes.add(income);
-            }
 
-            preparedStatement1.close();
-            categoriesSet.close();
-            incomesSet.close();
-            preparedStatement.close();
-            return incomes;
-        } catch(SQLException exc) {
-            LOGGER.warning("Error occurred: " + exc);
-            return null;
-        }
-    }
+    /**
+     * Loads regular incomes of user's accounts with ids in given range with single query
+     */
     @SuppressWarnings("Duplicates")
-    private ArrayList<RegularIncome> getAccountRegularIncomes(int id) {
-        String accountId = Integer.toString(id);
-        String categoriesQuery = "SELECT * FROM incomesCategories";
-        String incomeQuery = "SELECT * FROM regularIncomes WHERE account_id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(categoriesQuery);
-            ResultSet categoriesSet = preparedStatement.executeQuery();
-            HashMap<Integer, IncomeCategory> categories = new HashMap<>();
-            while(categoriesSet.next()) {
-                int categoryId = categoriesSet.getInt("id");
-                String categoryName = categoriesSet.getString("name");
-                categories.put(categoryId,new IncomeCategory(categoryId,categoryName));
-            }
-            PreparedStatement preparedStatement1 = connection.prepareStatement(incomeQuery);
-            preparedStatement1.setString(1,accountId);
-            ResultSet incomesSet = preparedStatement1.executeQuery();
-            ArrayList<RegularIncome> regularIncomes = new ArrayList<>();
-
+    private void loadRegularIncomes(int userId, int fromAccountId, int toAccountId, HashMap<Integer,Account> accounts,
+                                    Map<Integer,IncomeCategory> categories) throws SQLException {
+        String incomeQuery = "SELECT * FROM regularIncomes WHERE account_id IN " +
+                "(SELECT id FROM accounts WHERE user_id = ?) AND account_id BETWEEN ? AND ? ORDER BY id";
+        PreparedStatement preparedStatement = prepare(incomeQuery);
+        preparedStatement.setInt(1,userId);
+        preparedStatement.setInt(2,fromAccountId);
+        preparedStatement.setInt(3,toAccountId);
+        try (ResultSet incomesSet = preparedStatement.executeQuery()) {
             while(incomesSet.next()) {
+                int incomeAccountId = incomesSet.getInt("account_id");
+                Account account = accounts.get(incomeAccountId);
+                if(account == null) {
+                    continue;
+                }
                 int incomeId = incomesSet.getInt("id");
                 int incomeCategoryId = incomesSet.getInt("category_id");
                 String incomeName = incomesSet.getString("name");
-                double incomeMoney = incomesSet.getDouble("money");
-                String incomeDate = incomesSet.getString("date");
-                String[] date = incomeDate.split("-|\\.");
-                int year = Integer.parseInt(date[0]);
-                int month = Integer.parseInt(date[1]);
-                int dayOfMonth = Integer.parseInt(date[2]);
-                GregorianCalendar incDate = new GregorianCalendar(year,month,dayOfMonth);
+                long incomeMoney = incomesSet.getLong("money");
+                int incDate = incomesSet.getInt("date");
                 IncomeCategory category = categories.get(incomeCategoryId);
                 int incomeFrequency = incomesSet.getInt("frequency");
-                int incomeAccountId = incomesSet.getInt("account_id");
-                String lastExpenseDate = incomesSet.getString(("lastIncome"));
-                String[] date2 = lastExpenseDate.split("-");
-                int dayOfMonth2 = Integer.parseInt(date2[2]);
-                int month2 = Integer.parseInt(date2[1]);
-                int year2 = Integer.parseInt(date2[0]);
-                GregorianCalendar lastIncome = new GregorianCalendar(year2,month2,dayOfMonth2);
-                RegularIncome income = new RegularIncome(incomeId,incomeName,incomeMoney,category,incDate,incomeFrequency,incomeAccountId,lastIncome);
-                regularIncomes.add(income);
-                System.out.println(regularIncomes);
+                int lastIncome = incomesSet.getInt("lastIncome");
+                account.getRegularIncomesList().add(new RegularIncome(incomeId,incomeName,incomeMoney,
+                        category,incDate,incomeFrequency,incomeAccountId,lastIncome));
+                rowLoaded();
             }
-            preparedStatement1.close();
-            categoriesSet.close();
-            incomesSet.close();
-            preparedStatement.close();
-
-            return regularIncomes;
-        } catch(SQLException exc) {
-            LOGGER.warning("Error occurred: " + exc);
-            return null;
         }
     }
     //DATABASE INSERTS
-    public void insertAccount(int userId, String accountName, double accountBalance) {
+    public void insertAccount(int userId, String accountName, long accountBalance) {
         String sql = "INSERT INTO accounts (user_id,name,balance) VALUES (?,?,?)";
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = prepare(sql);
             preparedStatement.setInt(1,userId);
             preparedStatement.setString(2,accountName);
-            preparedStatement.setDouble(3,accountBalance);
+            preparedStatement.setLong(3,accountBalance);
             preparedStatement.executeUpdate();
             LOGGER.info("new account added to database");
         } catch (SQLException exc) {
+            lastError = exc;
             LOGGER.warning("Error occurred: " + exc);
         }
     }
     @SuppressWarnings("Duplicates")
-    public void insertExpense(int accountId, int categoryId ,String expenseName, double expensePrice, String date) {
+    public void insertExpense(int accountId, int categoryId ,String expenseName, long expensePrice, int date) {
         String sql = "INSERT INTO expenses (account_id,category_id,name,price,date) VALUES (?,?,?,?,?)";
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = prepare(sql);
             preparedStatement.setInt(1,accountId);
             preparedStatement.setInt(2,categoryId);
             preparedStatement.setString(3,expenseName);
-            preparedStatement.setDouble(4,expensePrice);
-            preparedStatement.setString(5,date);
+            preparedStatement.setLong(4,expensePrice);
+            preparedStatement.setInt(5,date);
             preparedStatement.executeUpdate();
-            preparedStatement.close();
             LOGGER.info("new expense added to database");
         } catch (SQLException exc) {
+            lastError = exc;
             LOGGER.warning("Error occurred: " + exc);
         }
     }
     @SuppressWarnings("Duplicates")
-    public void insertIncome(int account_id, int category_id, String name, double money, String date ) {
+    public void insertIncome(int account_id, int category_id, String name, long money, int date) {
         String str = "INSERT INTO incomes (account_id, category_id, name, money, date) VALUES (?,?,?,?,?)";
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(str);
+            PreparedStatement preparedStatement = prepare(str);
             preparedStatement.setInt(1,account_id);
             preparedStatement.setInt(2,category_id);
             preparedStatement.setString(3,name);
-            preparedStatement.setDouble(4,money);
-            preparedStatement.setString(5,date);
+            preparedStatement.setLong(4,money);
+            preparedStatement.setInt(5,date);
             preparedStatement.executeUpdate();
-            preparedStatement.close();
             LOGGER.info("new income added to database");
         }catch (SQLException exc) {
+            lastError = exc;
             LOGGER.warning("Error occurred: " + exc);
         }
     }
     @SuppressWarnings("Duplicates")
-    public void insertRegularIncome(int account_id, int category_id, String name, double money, String date, int frequency, String lastIncome) {
+    public void insertRegularIncome(int account_id, int category_id, String name, long money, int date, int frequency, int lastIncome) {
         String query = "INSERT INTO regularIncomes (account_id, category_id, name, money, date, frequency, lastIncome) VALUES(?,?,?,?,?,?,?)";
         try{
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
+            PreparedStatement preparedStatement = prepare(query);
             preparedStatement.setInt(1,account_id);
             preparedStatement.setInt(2,category_id);
             preparedStatement.setString(3,name);
-            preparedStatement.setDouble(4,money);
-            preparedStatement.setString(5,date);
+            preparedStatement.setLong(4,money);
+            preparedStatement.setInt(5,date);
             preparedStatement.setInt(6,frequency);
-            preparedStatement.setString(7,lastIncome);
+            preparedStatement.setInt(7,lastIncome);
             preparedStatement.executeUpdate();
-            preparedStatement.close();
-            System.out.println("addes regular income");
+            LOGGER.info("new regular income added to database");
         } catch (SQLException exc) {
+            lastError = exc;
             LOGGER.warning("Error occurred: " + exc);
         }
     }
     @SuppressWarnings("Duplicates")
-    public void insertRegularExpense(int accountId, int categoryId ,String expenseName, double expensePrice, String date, int frequency, String lastExpense) {
+    public void insertRegularExpense(int accountId, int categoryId ,String expenseName, long expensePrice, int date, int frequency, int lastExpense) {
         String sql = "INSERT INTO regularExpenses (account_id,category_id,name,price,date, frequency, lastExpense) VALUES (?,?,?,?,?,?,?)";
         try {
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            PreparedStatement preparedStatement = prepare(sql);
             preparedStatement.setInt(1,accountId);
             preparedStatement.setInt(2,categoryId);
             preparedStatement.setString(3,expenseName);
-            preparedStatement.setDouble(4,expensePrice);
-            preparedStatement.setString(5,date);
+            preparedStatement.setLong(4,expensePrice);
+            preparedStatement.setInt(5,date);
             preparedStatement.setInt(6,frequency);
-            preparedStatement.setString(7,lastExpense);
+            preparedStatement.setInt(7,lastExpense);
             preparedStatement.executeUpdate();
-            preparedStatement.close();
             LOGGER.info("new regular expense added to database");
         } catch (SQLException exc) {
+            lastError = exc;
             LOGGER.warning("Error occurred: " + exc);
         }
     }
-
-    //DATABASE UPDATE
+    //DATABASE BATCH INSERTS
 
     /**
-     * updates accounts table's row in database
-     * @param account account that should be updated
+     * Sets how many rows batch inserts write per transaction
+     * @param batchCommitInterval number of rows between commits
      */
-    @SuppressWarnings("Duplicates")
-    public void updateAccount(Account account) {
-        String string = "UPDATE accounts SET name = ?, balance = ? WHERE id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(string);
-            preparedStatement.setString(1,account.getAccountName());
-            preparedStatement.setDouble(2,account.getAccountBalance());
-            preparedStatement.setInt(3,account.getId());
-            preparedStatement.executeUpdate();
-            preparedStatement.close();
-        } catch (SQLException exc) {
-            LOGGER.warning("Error occurred: " + exc);
+    public void setBatchCommitInterval(int batchCommitInterval) {
+        if(batchCommitInterval < 1) {
+            throw new IllegalArgumentException("commit interval must be positive: " + batchCommitInterval);
         }
+        this.batchCommitInterval = batchCommitInterval;
     }
 
-    @SuppressWarnings("Duplicates")
-    public void updateAccount(Account account, double money) {
-        String string = "UPDATE accounts SET name = ?, balance = ? WHERE id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(string);
-            preparedStatement.setString(1,account.getAccountName());
-            preparedStatement.setDouble(2,money);
-            preparedStatement.setInt(3,account.getId());
-            preparedStatement.executeUpdate();
-            preparedStatement.close();
-        } catch (SQLException exc) {
-            System.out.println(exc);
-        }
+    /**
+     * Inserts many expenses using JDBC batches, committing every batchCommitInterval rows
+     * @param rows expenses to insert
+     * @return generated ids in rows order or null if insert failed
+     */
+    public int[] insertExpenses(Iterable<? extends PostingRow> rows) {
+        return insertExpenses(rows.iterator());
+    }
+    public int[] insertExpenses(Stream<? extends PostingRow> rows) {
+        return insertExpenses(rows.iterator());
+    }
+    private int[] insertExpenses(Iterator<? extends PostingRow> rows) {
+        String sql = "INSERT INTO expenses (account_id,category_id,name,price,date) VALUES (?,?,?,?,?)";
+        return insertBatch(sql, rows, this::bindPosting);
     }
 
     /**
-     * Updates expenses table's row in database
-     * @param expense expense that should be updated
+     * Inserts many incomes using JDBC batches, committing every batchCommitInterval rows
+     * @param rows incomes to insert
+     * @return generated ids in rows order or null if insert failed
      */
-    public void updateExpense(Expense expense) {
-        String sql = "UPDATE expense SET name = ?, price = ? WHERE id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
-            preparedStatement.setString(1,expense.getName());
-            preparedStatement.setDouble(2,expense.getPrice());
-            preparedStatement.setInt(3,expense.getId());
-            preparedStatement.executeUpdate();
-            preparedStatement.close();
-        } catch (SQLException e) {
-            System.out.println(e);
-        }
+    public int[] insertIncomes(Iterable<? extends PostingRow> rows) {
+        return insertIncomes(rows.iterator());
+    }
+    public int[] insertIncomes(Stream<? extends PostingRow> rows) {
+        return insertIncomes(rows.iterator());
+    }
+    private int[] insertIncomes(Iterator<? extends PostingRow> rows) {
+        String sql = "INSERT INTO incomes (account_id, category_id, name, money, date) VALUES (?,?,?,?,?)";
+        return insertBatch(sql, rows, this::bindPosting);
+    }
+
+    /**
+     * Inserts many regular expenses using JDBC batches, committing every batchCommitInterval rows
+     * @param rows regular expenses to insert
+     * @return generated ids in rows order or null if insert failed
+     */
+    public int[] insertRegularExpenses(Iterable<? extends RegularPostingRow> rows) {
+        return insertRegularExpenses(rows.iterator());
+    }
+    public int[] insertRegularExpenses(Stream<? extends RegularPostingRow> rows) {
+        return insertRegularExpenses(rows.iterator());
     }
+    private int[] insertRegularExpenses(Iterator<? extends RegularPostingRow> rows) {
+        String sql = "INSERT INTO regularExpenses (account_id,category_id,name,price,date, frequency, lastExpense) VALUES (?,?,?,?,?,?,?)";
+        return insertBatch(sql, rows, this::bindRegularPosting);
+    }
+
     /**
-     * Updates users table's row in database
-     * @param user User that should be updated
+     * Inserts many regular incomes using JDBC batches, committing every batchCommitInterval rows
+     * @param rows regular incomes to insert
+     * @return generated ids in rows order or null if insert failed
      */
-    public void updateUser(User user) {
-        String s = "UPDATE users SET name = ?, monthlyBudget = ? WHERE id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(s);
-            preparedStatement.setString(1,user.getName());
-            preparedStatement.setDouble(2,user.getMonthlyBudget());
-            preparedStatement.setInt(3,user.getId());
-            preparedStatement.executeUpdate();
-            preparedStatement.close();
-        } catch (SQLException exc) {
-            LOGGER.warning("Error occurred: " + exc);
-        }
+    public int[] insertRegularIncomes(Iterable<? extends RegularPostingRow> rows) {
+        return insertRegularIncomes(rows.iterator());
+    }
+    public int[] insertRegularIncomes(Stream<? extends RegularPostingRow> rows) {
+        return insertRegularIncomes(rows.iterator());
+    }
+    private int[] insertRegularIncomes(Iterator<? extends RegularPostingRow> rows) {
+        String sql = "INSERT INTO regularIncomes (account_id, category_id, name, money, date, frequency, lastIncome) VALUES(?,?,?,?,?,?,?)";
+        return insertBatch(sql, rows, this::bindRegularPosting);
     }
-    public ArrayList<ExpenseCategory> getExpenseCategories() {
-        String query = "SELECT * FROM expensesCategories";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            ArrayList<ExpenseCategory> categories = new ArrayList<>();
-            while(resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                ExpenseCategory category = new ExpenseCategory(name,id);
-                categories.add(category);
-            }
-            return categories;
 
-        } catch (SQLException exc) {
-            LOGGER.warning("Error occurred: " + exc);
-            return null;
-        }
+    private void bindPosting(PreparedStatement preparedStatement, PostingRow row) throws SQLException {
+        preparedStatement.setInt(1,row.getAccountId());
+        preparedStatement.setInt(2,row.getCategoryId());
+        preparedStatement.setString(3,row.getName());
+        preparedStatement.setLong(4,row.getAmount());
+        preparedStatement.setInt(5,row.getEpochDay());
     }
-    public ArrayList<IncomeCategory> getIncomeCategories() {
-        String query = "SELECT * FROM incomesCategories";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            ResultSet resultSet = preparedStatement.executeQuery();
-            ArrayList<IncomeCategory> categories = new ArrayList<>();
-            while(resultSet.next()){
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                IncomeCategory category = new IncomeCategory(id,name);
-                categories.add(category);
+
+    private void bindRegularPosting(PreparedStatement preparedStatement, RegularPostingRow row) throws SQLException {
+        this.bindPosting(preparedStatement, row);
+        preparedStatement.setInt(6,row.getFrequency());
+        preparedStatement.setInt(7,row.getLastEpochDay());
+    }
+
+    /**
+     * Writes rows with addBatch/executeBatch. Every batchCommitInterval rows are executed and committed
+     * together, so a failure rolls back only the rows of the current interval.
+     * Inside a transaction started with beginTransaction, e.g. a WriteBehindQueue flush, rows are written
+     * under a savepoint instead: nothing is committed, a failure rolls back all the rows and leaves
+     * the caller's transaction open.
+     * Rows inserted in one transaction get consecutive ids, which are computed from last_insert_rowid().
+     */
+    private <T> int[] insertBatch(String sql, Iterator<? extends T> rows, RowBinder<T> binder) {
+        IntStream.Builder ids = IntStream.builder();
+        int inserted = 0;
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            if(autoCommit) {
+                connection.setAutoCommit(false);
+            } else {
+                prepare("SAVEPOINT insert_batch").execute();
+            }
+            try {
+                PreparedStatement preparedStatement = prepare(sql);
+                int pending = 0;
+                while(rows.hasNext()) {
+                    binder.bind(preparedStatement, rows.next());
+                    preparedStatement.addBatch();
+                    pending++;
+                    if(pending == batchCommitInterval) {
+                        this.executeBatch(preparedStatement, pending, ids, autoCommit);
+                        inserted += pending;
+                        pending = 0;
+                    }
+                }
+                if(pending > 0) {
+                    this.executeBatch(preparedStatement, pending, ids, autoCommit);
+                    inserted += pending;
+                }
+                if(!autoCommit) {
+                    prepare("RELEASE insert_batch").execute();
+                }
+            } catch (SQLException exc) {
+                if(autoCommit) {
+                    connection.rollback();
+                } else {
+                    inserted = 0;
+                    prepare("ROLLBACK TO insert_batch").execute();
+                    prepare("RELEASE insert_batch").execute();
+                }
+                throw exc;
+            } finally {
+                if(autoCommit) {
+                    connection.setAutoCommit(true);
+                }
             }
-            return categories;
+            LOGGER.info(inserted + " rows added to database");
+            return ids.build().toArray();
         } catch (SQLException exc) {
-            LOGGER.warning("Error occurred: " + exc);
+            lastError = exc;
+            LOGGER.warning("Error occurred after " + inserted + " committed rows: " + exc);
             return null;
         }
     }
-    @SuppressWarnings("Duplicates")
-    public void removeIncome(Income income) {
-        String query = "DELETE FROM incomes WHERE id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1,income.getId());
-            preparedStatement.execute();
-            preparedStatement.close();
-        } catch (SQLException exc) {
-            System.out.println(exc);
+
+    private void executeBatch(PreparedStatement preparedStatement, int rows, IntStream.Builder ids,
+                              boolean commit) throws SQLException {
+        preparedStatement.executeBatch();
+        long lastId;
+        try (ResultSet resultSet = prepare("SELECT last_insert_rowid()").executeQuery()) {
+            resultSet.next();
+            lastId = resultSet.getLong(1);
+        }
+        if(commit) {
+            connection.commit();
+        }
+        for(long id = lastId - rows + 1; id <= lastId; id++) {
+            ids.add((int) id);
         }
     }
-    @SuppressWarnings("Duplicates")
-    public void removeExpense(Expense expense) {
-        String query = "DELETE FROM expenses WHERE id = ?";
-        try {
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            preparedStatement.setInt(1,expense.getId());
-            preparedStatement.execute();
-            preparedStatement.close();
-        } catch (SQLException exc) {
-            System.out.println(exc);
+
+    private interface RowBinder<T> {
+        void bind(PreparedStatement preparedStatement, T row) throws SQLException;
+    }
+
+
+    //POSTINGS
+
+    /**
+     * Inserts expense and lowers its account's balance in one transaction
+     * @return id of the new expense or -1 if posting failed, see takeLastError()
+     */
+    public int postExpense(int accountId, int categoryId, String name, long price, int date) {
+        return post("INSERT INTO expenses (account_id,category_id,name,price,date) VALUES (?,?,?,?,?)",
+                accountId, categoryId, name, price, date, -price);
+    }
+
+    /**
+     * Inserts income and raises its account's balance in one transaction
+     * @return id of the new income or -1 if posting failed, see takeLastError()
+     */
+    public int postIncome(int accountId, int categoryId, String name, long money, int date) {
+        return post("INSERT INTO incomes (account_id,category_id,name,money,date) VALUES (?,?,?,?,?)",
+                accountId, categoryId, name, money, date, money);
+    }
+
+    /**
+     * Inserts regular expense and lowers its account's balance by the first payment in one transaction
+     * @return id of the new regular expense or -1 if posting failed, see takeLastError()
+     */
+    public int postRegularExpense(int accountId, int categoryId, String name, long price, int date,
+                                  int frequency, int lastExpense) {
+        return post("INSERT INTO regularExpenses (account_id,category_id,name,price,date,frequency,lastExpense) " +
+                "VALUES (?,?,?,?,?,?,?)", accountId, categoryId, name, price, date, -price, frequency, lastExpense);
+    }
+
+    /**
+     * Inserts regular income and raises its account's balance by the first payment in one transaction
+     * @return id of the new regular income or -1 if posting failed, see takeLastError()
+     */
+    public int postRegularIncome(int accountId, int categoryId, String name, long money, int date,
+                                 int frequency, int lastIncome) {
+        return post("INSERT INTO regularIncomes (account_id,category_id,name,money,date,frequency,lastIncome) " +
+                "VALUES (?,?,?,?,?,?,?)", accountId, categoryId, name, money, date, money, frequency, lastIncome);
+    }
+
+    /**
+     * Inserts expenses with JDBC batches and lowers their accounts' balances by their prices in one transaction
+     * @return number of posted expenses or -1 if posting failed, see takeLastError()
+     */
+    public int postExpenses(Iterable<? extends PostingRow> rows) {
+        return postBatch("INSERT INTO expenses (account_id,category_id,name,price,date) VALUES (?,?,?,?,?)", rows, -1);
+    }
+
+    /**
+     * Inserts incomes with JDBC batches and raises their accounts' balances by their money in one transaction
+     * @return number of posted incomes or -1 if posting failed, see takeLastError()
+     */
+    public int postIncomes(Iterable<? extends PostingRow> rows) {
+        return postBatch("INSERT INTO incomes (account_id,category_id,name,money,date) VALUES (?,?,?,?,?)", rows, 1);
+    }
+
+    /**
+     * Deletes expense and gives its stored price back to the account in one transaction
+     * @return true if expense existed and was removed, false otherwise, see takeLastError()
+     */
+    public boolean removeExpensePosting(int accountId, Expense expense) {
+        return unpost("expenses", "price", accountId, expense.getId(), 1);
+    }
+
+    /**
+     * Deletes income and takes its stored money from the account in one transaction
+     * @return true if income existed and was removed, false otherwise, see takeLastError()
+     */
+    public boolean removeIncomePosting(int accountId, Income income) {
+        return unpost("incomes", "money", accountId, income.getId(), -1);
+    }
+
+    private int post(String insert, int accountId, int categoryId, String name, long amount, int date,
+                     long balanceDelta, int... schedule) {
+        try {
+            return inImmediateTransaction(() -> {
+                PreparedStatement preparedStatement = prepare(insert);
+                preparedStatement.setInt(1,accountId);
+                preparedStatement.setInt(2,categoryId);
+                preparedStatement.setString(3,name);
+                preparedStatement.setLong(4,amount);
+                preparedStatement.setInt(5,date);
+                for(int i = 0; i < schedule.length; i++) {
+                    preparedStatement.setInt(6 + i,schedule[i]);
+                }
+                preparedStatement.executeUpdate();
+                int id;
+                try (ResultSet resultSet = prepare("SELECT last_insert_rowid()").executeQuery()) {
+                    resultSet.next();
+                    id = resultSet.getInt(1);
+                }
+                changeBalance(accountId, balanceDelta);
+                return id;
+            });
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+            return -1;
+        }
+    }
+
+    /**
+     * @param sign 1 when posted amounts are added to the accounts, -1 when they're taken from them
+     */
+    private int postBatch(String insert, Iterable<? extends PostingRow> rows, int sign) {
+        try {
+            return inImmediateTransaction(() -> {
+                PreparedStatement preparedStatement = prepare(insert);
+                Map<Integer, Long> balanceDeltas = new LinkedHashMap<>();
+                int posted = 0;
+                try {
+                    for(PostingRow row : rows) {
+                        bindPosting(preparedStatement, row);
+                        preparedStatement.addBatch();
+                        balanceDeltas.merge(row.getAccountId(), sign * row.getAmount(), Long::sum);
+                        if(++posted % batchCommitInterval == 0) {
+                            preparedStatement.executeBatch();
+                        }
+                    }
+                    if(posted % batchCommitInterval != 0) {
+                        preparedStatement.executeBatch();
+                    }
+                } catch (SQLException exc) {
+                    preparedStatement.clearBatch();
+                    throw exc;
+                }
+                for(Map.Entry<Integer, Long> delta : balanceDeltas.entrySet()) {
+                    changeBalance(delta.getKey(), delta.getValue());
+                }
+                return posted;
+            });
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+            return -1;
+        }
+    }
+
+    /**
+     * @param sign 1 when removed amount goes back to the account, -1 when it's taken from it
+     */
+    /**
+     * A missing row is an error as well, otherwise a queued removal would succeed
+     * while its balance change was never stored
+     */
+    private boolean unpost(String table, String amountColumn, int accountId, int id, int sign) {
+        try {
+            boolean removed = inImmediateTransaction(() -> {
+                PreparedStatement select = prepare("SELECT " + amountColumn + " FROM " + table +
+                        " WHERE id = ? AND account_id = ?");
+                select.setInt(1,id);
+                select.setInt(2,accountId);
+                long amount;
+                try (ResultSet resultSet = select.executeQuery()) {
+                    if(!resultSet.next()) {
+                        return false;
+                    }
+                    amount = resultSet.getLong(1);
+                }
+                PreparedStatement delete = prepare("DELETE FROM " + table + " WHERE id = ?");
+                delete.setInt(1,id);
+                delete.executeUpdate();
+                changeBalance(accountId, sign * amount);
+                return true;
+            });
+            if(!removed) {
+                lastError = new SQLException(table + " row " + id + " of account " + accountId + " doesn't exist");
+                LOGGER.warning("Error occurred: " + lastError);
+            }
+            return removed;
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+            return false;
+        }
+    }
+
+    private void changeBalance(int accountId, long delta) throws SQLException {
+        PreparedStatement preparedStatement = prepare("UPDATE accounts SET balance = balance + ? WHERE id = ?");
+        preparedStatement.setLong(1,delta);
+        preparedStatement.setInt(2,accountId);
+        if(preparedStatement.executeUpdate() != 1) {
+            throw new SQLException("account " + accountId + " doesn't exist");
+        }
+    }
+
+    /**
+     * Runs work between BEGIN IMMEDIATE and COMMIT, so the write lock is taken up front and the
+     * posting is synced once. Inside a transaction started with beginTransaction, e.g. a WriteBehindQueue
+     * flush, work joins that transaction and is committed with it.
+     */
+    private <T> T inImmediateTransaction(TransactionWork<T> work) throws SQLException {
+        if(!connection.getAutoCommit()) {
+            return work.run();
+        }
+        prepare("BEGIN IMMEDIATE").execute();
+        try {
+            T result = work.run();
+            prepare("COMMIT").execute();
+            return result;
+        } catch (SQLException | RuntimeException exc) {
+            try {
+                prepare("ROLLBACK").execute();
+            } catch (SQLException rollbackExc) {
+                exc.addSuppressed(rollbackExc);
+            }
+            throw exc;
+        }
+    }
+
+    private interface TransactionWork<T> {
+        T run() throws SQLException;
+    }
+
+    //STATEMENT IMPORTS
+
+    /**
+     * Reads checkpoint of a statement import
+     * @param importKey key identifying the statement
+     * @return checkpoint or null if the statement was never imported, or if reading failed, see takeLastError()
+     */
+    public ImportCheckpoint getImportCheckpoint(String importKey) {
+        String query = "SELECT * FROM statement_imports WHERE import_key = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setString(1,importKey);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                if(!resultSet.next()) {
+                    return null;
+                }
+                return new ImportCheckpoint(importKey, resultSet.getInt("account_id"), resultSet.getLong("lines"),
+                        resultSet.getLong("expenses"), resultSet.getLong("incomes"), resultSet.getInt("finished") != 0);
+            }
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * Stores checkpoint of a statement import, meant to be called in the transaction writing the rows it counts
+     * @param checkpoint progress of the import
+     */
+    public void saveImportCheckpoint(ImportCheckpoint checkpoint) {
+        String sql = "INSERT OR REPLACE INTO statement_imports " +
+                "(import_key, account_id, lines, expenses, incomes, finished) VALUES (?,?,?,?,?,?)";
+        try {
+            PreparedStatement preparedStatement = prepare(sql);
+            preparedStatement.setString(1,checkpoint.getImportKey());
+            preparedStatement.setInt(2,checkpoint.getAccountId());
+            preparedStatement.setLong(3,checkpoint.getLines());
+            preparedStatement.setLong(4,checkpoint.getExpenses());
+            preparedStatement.setLong(5,checkpoint.getIncomes());
+            preparedStatement.setInt(6,checkpoint.isFinished() ? 1 : 0);
+            preparedStatement.executeUpdate();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+
+
+    //DATABASE UPDATE
+
+    /**
+     * updates accounts table's row in database
+     * @param account account that should be updated
+     */
+    @SuppressWarnings("Duplicates")
+    public void updateAccount(Account account) {
+        String string = "UPDATE accounts SET name = ?, balance = ? WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(string);
+            preparedStatement.setString(1,account.getAccountName());
+            preparedStatement.setLong(2,account.getAccountBalance());
+            preparedStatement.setInt(3,account.getId());
+            preparedStatement.executeUpdate();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+
+    @SuppressWarnings("Duplicates")
+    public void updateAccount(Account account, long money) {
+        String string = "UPDATE accounts SET name = ?, balance = ? WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(string);
+            preparedStatement.setString(1,account.getAccountName());
+            preparedStatement.setLong(2,money);
+            preparedStatement.setInt(3,account.getId());
+            preparedStatement.executeUpdate();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+
+    /**
+     * Updates expenses table's row in database
+     * @param expense expense that should be updated
+     */
+    public void updateExpense(Expense expense) {
+        String sql = "UPDATE expense SET name = ?, price = ? WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(sql);
+            preparedStatement.setString(1,expense.getName());
+            preparedStatement.setLong(2,expense.getPrice());
+            preparedStatement.setInt(3,expense.getId());
+            preparedStatement.executeUpdate();
+        } catch (SQLException e) {
+            lastError = e;
+            LOGGER.warning("Error occurred: " + e);
+        }
+    }
+    /**
+     * Updates users table's row in database
+     * @param user User that should be updated
+     */
+    public void updateUser(User user) {
+        String s = "UPDATE users SET name = ?, monthlyBudget = ? WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(s);
+            preparedStatement.setString(1,user.getName());
+            preparedStatement.setLong(2,user.getMonthlyBudget());
+            preparedStatement.setInt(3,user.getId());
+            preparedStatement.executeUpdate();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+    /**
+     * Reads one page of user's expenses, newest first. The page starts right after the given key,
+     * so reading a page costs the same no matter how deep in the history it is. Every account of the user
+     * is read separately along its (account_id, date) index and the results are merged, so other users'
+     * rows are never visited.
+     * @param userId user's id
+     * @param after key of the last row of previous page or PageKey.FIRST
+     * @param limit page size
+     * @return expenses of the page or null if reading failed
+     */
+    public ArrayList<Expense> getExpensesPage(int userId, PageKey after, int limit) {
+        try {
+            Map<Integer,ExpenseCategory> categories = CategoryCache.getInstance().getExpenseCategories(connection);
+            return readPage("expenses", userId, after, limit, resultSet -> readExpense(resultSet, categories));
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * Reads one page of user's incomes, newest first, see getExpensesPage
+     * @param userId user's id
+     * @param after key of the last row of previous page or PageKey.FIRST
+     * @param limit page size
+     * @return incomes of the page or null if reading failed
+     */
+    public ArrayList<Income> getIncomesPage(int userId, PageKey after, int limit) {
+        try {
+            Map<Integer,IncomeCategory> categories = CategoryCache.getInstance().getIncomeCategories(connection);
+            return readPage("incomes", userId, after, limit, resultSet -> readIncome(resultSet, categories));
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * @return number of user's expenses or -1 if counting failed
+     */
+    public int countExpenses(int userId) {
+        return countRows("expenses", userId);
+    }
+
+    /**
+     * @return number of user's incomes or -1 if counting failed
+     */
+    public int countIncomes(int userId) {
+        return countRows("incomes", userId);
+    }
+
+    /**
+     * Finds keys of the last rows of all full pages of user's expenses, newest first, so any page can be read
+     * without reading the pages before it. Keys are read from the (account_id, date) index only, one pass
+     * over the user's rows, meant to run in background.
+     * @param userId user's id
+     * @param pageSize rows per page
+     * @return key of the last row of page 0, 1, ... or null if reading failed
+     */
+    public List<PageKey> getExpensePageEnds(int userId, int pageSize) {
+        return pageEnds("expenses", userId, pageSize);
+    }
+
+    /**
+     * Finds keys of the last rows of all full pages of user's incomes, see getExpensePageEnds
+     */
+    public List<PageKey> getIncomePageEnds(int userId, int pageSize) {
+        return pageEnds("incomes", userId, pageSize);
+    }
+
+    /**
+     * Creates Expense with its account id from current expenses row
+     */
+    private static Expense readExpense(ResultSet resultSet, Map<Integer,ExpenseCategory> categories) throws SQLException {
+        Expense expense = new Expense(resultSet.getInt("id"), resultSet.getString("name"), resultSet.getLong("price"),
+                categories.get(resultSet.getInt("category_id")), resultSet.getInt("date"));
+        expense.setAccountId(resultSet.getInt("account_id"));
+        return expense;
+    }
+
+    /**
+     * Creates Income with its account id from current incomes row
+     */
+    private static Income readIncome(ResultSet resultSet, Map<Integer,IncomeCategory> categories) throws SQLException {
+        Income income = new Income(resultSet.getInt("id"), resultSet.getString("name"), resultSet.getLong("money"),
+                categories.get(resultSet.getInt("category_id")), resultSet.getInt("date"));
+        income.setAccountId(resultSet.getInt("account_id"));
+        return income;
+    }
+
+    /**
+     * Reads up to limit rows after the key from every account of the user and keeps the newest limit of them
+     */
+    private <T> ArrayList<T> readPage(String table, int userId, PageKey after, int limit,
+                                      ResultSetSpliterator.RowMapper<T> mapper) throws SQLException {
+        List<KeyedRow<T>> rows = new ArrayList<>();
+        for(int accountId : accountIds(userId)) {
+            PreparedStatement preparedStatement = prepare("SELECT * FROM " + table +
+                    " WHERE account_id = ? AND date <= ? AND (date < ? OR id < ?) ORDER BY date DESC, id DESC LIMIT ?");
+            preparedStatement.setInt(1,accountId);
+            preparedStatement.setInt(2,after.getEpochDay());
+            preparedStatement.setInt(3,after.getEpochDay());
+            preparedStatement.setInt(4,after.getId());
+            preparedStatement.setInt(5,limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while(resultSet.next()) {
+                    rows.add(new KeyedRow<>(resultSet.getInt("date"), resultSet.getInt("id"), mapper.map(resultSet)));
+                }
+            }
+        }
+        rows.sort(null);
+        ArrayList<T> page = new ArrayList<>(Math.min(limit, rows.size()));
+        for(int i = 0; i < limit && i < rows.size(); i++) {
+            page.add(rows.get(i).row);
+        }
+        return page;
+    }
+
+    /**
+     * Merges keys of user's accounts in newest first order. Every account has its own open statement,
+     * so they aren't taken from the statement cache.
+     */
+    private List<PageKey> pageEnds(String table, int userId, int pageSize) {
+        String sql = "SELECT date, id FROM " + table + " WHERE account_id = ? ORDER BY date DESC, id DESC";
+        List<PreparedStatement> statements = new ArrayList<>();
+        try {
+            PriorityQueue<KeyedRow<ResultSet>> cursors = new PriorityQueue<>();
+            for(int accountId : accountIds(userId)) {
+                PreparedStatement preparedStatement = QueryStats.instrument(connection.prepareStatement(sql), sql);
+                statements.add(preparedStatement);
+                preparedStatement.setInt(1,accountId);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                if(resultSet.next()) {
+                    cursors.add(new KeyedRow<>(resultSet.getInt(1), resultSet.getInt(2), resultSet));
+                }
+            }
+            List<PageKey> ends = new ArrayList<>();
+            long position = 0;
+            KeyedRow<ResultSet> cursor;
+            while((cursor = cursors.poll()) != null) {
+                if(++position % pageSize == 0) {
+                    ends.add(new PageKey(cursor.epochDay, cursor.id));
+                }
+                ResultSet resultSet = cursor.row;
+                if(resultSet.next()) {
+                    cursors.add(new KeyedRow<>(resultSet.getInt(1), resultSet.getInt(2), resultSet));
+                } else {
+                    resultSet.close();
+                }
+            }
+            return ends;
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        } finally {
+            for(PreparedStatement preparedStatement : statements) {
+                try {
+                    preparedStatement.close();
+                } catch (SQLException exc) {
+                    LOGGER.warning("Error occurred: " + exc);
+                }
+            }
+        }
+    }
+
+    private List<Integer> accountIds(int userId) throws SQLException {
+        PreparedStatement preparedStatement = prepare("SELECT id FROM accounts WHERE user_id = ?");
+        preparedStatement.setInt(1,userId);
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+            while(resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private int countRows(String table, int userId) {
+        try {
+            PreparedStatement preparedStatement = prepare("SELECT COUNT(*) FROM " + table +
+                    " WHERE account_id IN (SELECT id FROM accounts WHERE user_id = ?)");
+            preparedStatement.setInt(1,userId);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return -1;
+        }
+    }
+
+    /**
+     * Row with its (date, id) key, ordered newest first
+     */
+    private static class KeyedRow<T> implements Comparable<KeyedRow<T>> {
+        private final int epochDay;
+        private final int id;
+        private final T row;
+
+        private KeyedRow(int epochDay, int id, T row) {
+            this.epochDay = epochDay;
+            this.id = id;
+            this.row = row;
+        }
+
+        @Override
+        public int compareTo(KeyedRow<T> other) {
+            if(epochDay != other.epochDay) {
+                return Integer.compare(other.epochDay, epochDay);
+            }
+            return Integer.compare(other.id, id);
+        }
+    }
+
+    /**
+     * Streams user's expenses in id order straight from the result set. The stream holds
+     * this SqliteDb's connection and has to be closed, preferably with try-with-resources,
+     * before closeConnection() is called.
+     * @param userId user's id
+     * @param fetchSize rows the driver reads at once
+     * @return stream of expenses, empty if query failed
+     */
+    public Stream<Expense> streamExpenses(int userId, int fetchSize) {
+        try {
+            Map<Integer,ExpenseCategory> categories = CategoryCache.getInstance().getExpenseCategories(connection);
+            return ResultSetSpliterator.stream(prepareStream("expenses", userId, fetchSize),
+                    resultSet -> readExpense(resultSet, categories));
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Streams user's incomes in id order, see streamExpenses
+     * @param userId user's id
+     * @param fetchSize rows the driver reads at once
+     * @return stream of incomes, empty if query failed
+     */
+    public Stream<Income> streamIncomes(int userId, int fetchSize) {
+        try {
+            Map<Integer,IncomeCategory> categories = CategoryCache.getInstance().getIncomeCategories(connection);
+            return ResultSetSpliterator.stream(prepareStream("incomes", userId, fetchSize),
+                    resultSet -> readIncome(resultSet, categories));
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Passes every expense of the user to visitor without creating objects per row
+     * @param userId user's id
+     * @param visitor receives account id, epoch day, price and category id of every row
+     * @return number of visited rows or -1 if query failed
+     */
+    public long forEachExpense(int userId, PostingVisitor visitor) {
+        return visitPostings("SELECT account_id, date, price, category_id FROM expenses " +
+                "WHERE account_id IN (SELECT id FROM accounts WHERE user_id = ?)", userId, visitor);
+    }
+
+    /**
+     * Passes every income of the user to visitor without creating objects per row
+     * @param userId user's id
+     * @param visitor receives account id, epoch day, money and category id of every row
+     * @return number of visited rows or -1 if query failed
+     */
+    public long forEachIncome(int userId, PostingVisitor visitor) {
+        return visitPostings("SELECT account_id, date, money, category_id FROM incomes " +
+                "WHERE account_id IN (SELECT id FROM accounts WHERE user_id = ?)", userId, visitor);
+    }
+
+    /**
+     * Streamed statements aren't taken from the statement cache: they stay open
+     * while the caller consumes the stream and are closed together with it.
+     */
+    private PreparedStatement prepareStream(String table, int userId, int fetchSize) throws SQLException {
+        String query = "SELECT * FROM " + table +
+                " WHERE account_id IN (SELECT id FROM accounts WHERE user_id = ?) ORDER BY id";
+        PreparedStatement preparedStatement = QueryStats.instrument(connection.prepareStatement(query), query);
+        preparedStatement.setInt(1,userId);
+        preparedStatement.setFetchSize(fetchSize);
+        return preparedStatement;
+    }
+
+    private long visitPostings(String query, int userId, PostingVisitor visitor) {
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,userId);
+            long rows = 0;
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while(resultSet.next()) {
+                    visitor.visit(resultSet.getInt(1), resultSet.getInt(2), resultSet.getLong(3), resultSet.getInt(4));
+                    rows++;
+                }
+            }
+            return rows;
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return -1;
+        }
+    }
+
+    /**
+     * Sums user's expenses of every day of a month with one GROUP BY query on (account_id, date) index
+     * @param userId user's id
+     * @param year calendar year
+     * @param month month 1-12
+     * @return totals in minor units indexed by day of month - 1, or null if query failed
+     */
+    public long[] getDailyExpenseTotals(int userId, int year, int month) {
+        int firstDay = DateCodec.toEpochDay(year, month, 1);
+        long[] totals = new long[DateCodec.lengthOfMonth(year, month)];
+        String query = "SELECT date, SUM(price) FROM expenses " +
+                "WHERE account_id IN (SELECT id FROM accounts WHERE user_id = ?) AND date BETWEEN ? AND ? " +
+                "GROUP BY date";
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,userId);
+            preparedStatement.setInt(2,firstDay);
+            preparedStatement.setInt(3,firstDay + totals.length - 1);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while(resultSet.next()) {
+                    totals[resultSet.getInt(1) - firstDay] = resultSet.getLong(2);
+                }
+            }
+            return totals;
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * Sums user's expenses per category in a date range
+     * @param userId user's id
+     * @param fromEpochDay first day of the range
+     * @param toEpochDay last day of the range, inclusive
+     * @return totals in minor units by category, biggest first, or null if query failed
+     */
+    public LinkedHashMap<ExpenseCategory,Long> getExpenseTotalsByCategory(int userId, int fromEpochDay, int toEpochDay) {
+        String query = "SELECT category_id, SUM(price) AS total FROM expenses " +
+                "WHERE account_id IN (SELECT id FROM accounts WHERE user_id = ?) AND date BETWEEN ? AND ? " +
+                "GROUP BY category_id ORDER BY total DESC";
+        try {
+            Map<Integer,ExpenseCategory> categories = CategoryCache.getInstance().getExpenseCategories(connection);
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,userId);
+            preparedStatement.setInt(2,fromEpochDay);
+            preparedStatement.setInt(3,toEpochDay);
+            LinkedHashMap<ExpenseCategory,Long> totals = new LinkedHashMap<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while(resultSet.next()) {
+                    ExpenseCategory category = categories.get(resultSet.getInt(1));
+                    if(category != null) {
+                        totals.put(category, resultSet.getLong(2));
+                    }
+                }
+            }
+            return totals;
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * Reads current month's expenses per category from monthly_summary
+     * @param userId user's id
+     * @param year calendar year
+     * @param month month 1-12
+     * @return totals in minor units by category, biggest first, or null if query failed
+     */
+    public LinkedHashMap<ExpenseCategory,Long> getMonthExpenseTotalsByCategory(int userId, int year, int month) {
+        String query = "SELECT category_id, SUM(total) AS categoryTotal FROM monthly_summary " +
+                "WHERE kind = ? AND year_month = ? AND account_id IN (SELECT id FROM accounts WHERE user_id = ?) " +
+                "GROUP BY category_id ORDER BY categoryTotal DESC";
+        try {
+            Map<Integer,ExpenseCategory> categories = CategoryCache.getInstance().getExpenseCategories(connection);
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,MonthlySummary.EXPENSE);
+            preparedStatement.setInt(2,year * 100 + month);
+            preparedStatement.setInt(3,userId);
+            LinkedHashMap<ExpenseCategory,Long> totals = new LinkedHashMap<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while(resultSet.next()) {
+                    ExpenseCategory category = categories.get(resultSet.getInt(1));
+                    if(category != null) {
+                        totals.put(category, resultSet.getLong(2));
+                    }
+                }
+            }
+            return totals;
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * Reads user's income and expense totals per calendar month from monthly_summary
+     * @param userId user's id
+     * @param fromYearMonth first month as yyyyMM number
+     * @param toYearMonth last month as yyyyMM number, inclusive
+     * @return totals of months having any posting, in month order, or null if query failed
+     */
+    public ArrayList<MonthlyTotal> getMonthlyTotals(int userId, int fromYearMonth, int toYearMonth) {
+        String query = "SELECT year_month, " +
+                "SUM(CASE WHEN kind = ? THEN total ELSE 0 END), SUM(CASE WHEN kind = ? THEN total ELSE 0 END) " +
+                "FROM monthly_summary WHERE kind IN (?,?) AND year_month BETWEEN ? AND ? " +
+                "AND account_id IN (SELECT id FROM accounts WHERE user_id = ?) " +
+                "GROUP BY year_month ORDER BY year_month";
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,MonthlySummary.INCOME);
+            preparedStatement.setInt(2,MonthlySummary.EXPENSE);
+            preparedStatement.setInt(3,MonthlySummary.INCOME);
+            preparedStatement.setInt(4,MonthlySummary.EXPENSE);
+            preparedStatement.setInt(5,fromYearMonth);
+            preparedStatement.setInt(6,toYearMonth);
+            preparedStatement.setInt(7,userId);
+            ArrayList<MonthlyTotal> totals = new ArrayList<>();
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while(resultSet.next()) {
+                    int yearMonth = resultSet.getInt(1);
+                    totals.add(new MonthlyTotal(yearMonth / 100, yearMonth % 100,
+                            resultSet.getLong(2), resultSet.getLong(3)));
+                }
+            }
+            return totals;
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+
+    /**
+     * @return all expense categories, served from CategoryCache
+     */
+    public ArrayList<ExpenseCategory> getExpenseCategories() {
+        try {
+            return new ArrayList<>(CategoryCache.getInstance().getExpenseCategoriesList(connection));
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+    /**
+     * @return all income categories, served from CategoryCache
+     */
+    public ArrayList<IncomeCategory> getIncomeCategories() {
+        try {
+            return new ArrayList<>(CategoryCache.getInstance().getIncomeCategoriesList(connection));
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+            return null;
+        }
+    }
+    public void insertExpenseCategory(String name) {
+        String sql = "INSERT INTO expensesCategories (name) VALUES (?)";
+        try {
+            PreparedStatement preparedStatement = prepare(sql);
+            preparedStatement.setString(1,name);
+            preparedStatement.executeUpdate();
+            LOGGER.info("new expense category added to database");
+            this.categoriesChanged();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+    public void insertIncomeCategory(String name) {
+        String sql = "INSERT INTO incomesCategories (name) VALUES (?)";
+        try {
+            PreparedStatement preparedStatement = prepare(sql);
+            preparedStatement.setString(1,name);
+            preparedStatement.executeUpdate();
+            LOGGER.info("new income category added to database");
+            this.categoriesChanged();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+
+    /**
+     * Invalidates CategoryCache right away in autocommit mode, or when the current transaction is committed
+     */
+    private void categoriesChanged() throws SQLException {
+        if(connection.getAutoCommit()) {
+            CategoryCache.getInstance().invalidate();
+        } else {
+            categoriesChanged = true;
+        }
+    }
+    @SuppressWarnings("Duplicates")
+    public void removeIncome(Income income) {
+        String query = "DELETE FROM incomes WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,income.getId());
+            preparedStatement.execute();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+    @SuppressWarnings("Duplicates")
+    public void removeExpense(Expense expense) {
+        String query = "DELETE FROM expenses WHERE id = ?";
+        try {
+            PreparedStatement preparedStatement = prepare(query);
+            preparedStatement.setInt(1,expense.getId());
+            preparedStatement.execute();
+        } catch (SQLException exc) {
+            lastError = exc;
+            LOGGER.warning("Error occurred: " + exc);
         }
     }
 }
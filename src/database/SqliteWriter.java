@@ -0,0 +1,132 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * SqliteWriter runs all database modifications one after another on a single thread
+ * with its own connection. Together with WAL journal mode this lets pooled read connections
+ * work in parallel with writes, while writers never compete for the database lock.
+ */
+public class SqliteWriter {
+    private static final Logger LOGGER = Logger.getLogger( SqliteWriter.class.getName() );
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final ExecutorService executor;
+    private final Connection connection;
+    private final SqliteDb db;
+    private volatile Thread writerThread;
+
+    /**
+     * @param connection dedicated connection used only by the writer thread
+     */
+    public SqliteWriter(Connection connection) {
+        this.connection = connection;
+        this.db = new SqliteDb(connection, new StatementCache(connection, STATEMENT_CACHE_SIZE));
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sqlite-writer");
+            thread.setDaemon(true);
+            writerThread = thread;
+            return thread;
+        });
+    }
+
+    /**
+     * Queues work for the writer thread
+     * @param work modification performed with writer's SqliteDb
+     * @return future completed with work's result
+     */
+    public <T> CompletableFuture<T> submit(Function<SqliteDb, T> work) {
+        if(Thread.currentThread() == writerThread) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(work.apply(db));
+            } catch (RuntimeException exc) {
+                future.completeExceptionally(exc);
+            }
+            return future;
+        }
+        return CompletableFuture.supplyAsync(() -> work.apply(db), executor);
+    }
+
+    /**
+     * Queues work that runs in one transaction on the writer thread. The transaction is committed when work
+     * returns and none of its SqliteDb modifications failed (see SqliteDb.takeLastError()), otherwise it's
+     * rolled back and the future completes exceptionally. Queued work of other callers waits until it's finished.
+     * @param work modification performed with writer's SqliteDb, must not start its own transaction
+     * @return future completed with work's result
+     */
+    public <T> CompletableFuture<T> submitInTransaction(Function<SqliteDb, T> work) {
+        return submit(writerDb -> {
+            try {
+                if(!connection.getAutoCommit()) {
+                    throw new IllegalStateException("writer is already in a transaction");
+                }
+                writerDb.beginTransaction();
+            } catch (SQLException exc) {
+                throw new CompletionException(exc);
+            }
+            try {
+                T result = work.apply(writerDb);
+                SQLException error = writerDb.takeLastError();
+                if(error != null) {
+                    throw error;
+                }
+                writerDb.commitTransaction();
+                return result;
+            } catch (SQLException exc) {
+                writerDb.rollbackTransaction();
+                throw new CompletionException(exc);
+            } catch (RuntimeException | Error exc) {
+                writerDb.rollbackTransaction();
+                throw exc;
+            }
+        });
+    }
+
+    /**
+     * Runs work on the writer thread and waits until it's finished
+     * @param work modification performed with writer's SqliteDb
+     */
+    public void write(Consumer<SqliteDb> work) {
+        try {
+            submit(writerDb -> {
+                work.accept(writerDb);
+                return null;
+            }).join();
+        } catch (CompletionException exc) {
+            if(exc.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exc.getCause();
+            }
+            throw exc;
+        }
+    }
+
+    /**
+     * Finishes queued work and closes writer's connection
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if(!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warning("writer didn't finish queued work in time");
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        db.closeStatements();
+        try {
+            connection.close();
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+}
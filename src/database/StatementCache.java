@@ -0,0 +1,107 @@
+package database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * StatementCache keeps compiled PreparedStatements of one connection, keyed by SQL text.
+ * Least recently used statements are closed when the cache is full.
+ * Statements returned by prepare() belong to the cache and must not be closed by the caller,
+ * only their ResultSets have to be closed.
+ */
+public class StatementCache {
+    private static final Logger LOGGER = Logger.getLogger( StatementCache.class.getName() );
+    private static final AtomicLong totalHits = new AtomicLong();
+    private static final AtomicLong totalMisses = new AtomicLong();
+    private static final AtomicLong totalEvictions = new AtomicLong();
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    /**
+     * @param connection connection statements are prepared on
+     * @param maxSize number of statements kept open
+     */
+    public StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns cached statement for sql or compiles a new one.
+     * Parameters of a reused statement are cleared. When QueryStats is enabled
+     * the statement is wrapped, so its executions are measured.
+     * @param sql SQL text
+     * @return prepared statement owned by the cache
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if(statement != null && !statement.isClosed()) {
+            totalHits.incrementAndGet();
+            statement.clearParameters();
+            return QueryStats.instrument(statement, sql);
+        }
+        totalMisses.incrementAndGet();
+        try {
+            statement = connection.prepareStatement(sql);
+        } catch (SQLException exc) {
+            QueryStats.recordError(sql);
+            throw exc;
+        }
+        statements.put(sql, statement);
+        evictOverflow();
+        return QueryStats.instrument(statement, sql);
+    }
+
+    /**
+     * Closes all cached statements
+     */
+    public synchronized void close() {
+        for(PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    public static long getHits() {
+        return totalHits.get();
+    }
+
+    public static long getMisses() {
+        return totalMisses.get();
+    }
+
+    public static long getEvictions() {
+        return totalEvictions.get();
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, PreparedStatement>> iterator = statements.entrySet().iterator();
+        while(statements.size() > maxSize && iterator.hasNext()) {
+            PreparedStatement eldest = iterator.next().getValue();
+            iterator.remove();
+            closeQuietly(eldest);
+            totalEvictions.incrementAndGet();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exc) {
+            LOGGER.warning("Error occurred: " + exc);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * WriteBehindQueue accepts database modifications without waiting for them.
+ * Queued mutations are written by SqliteWriter's thread in enqueue order, every flush
+ * writes everything queued so far in one transaction. Mutations with the same coalescing key
+ * replace each other while waiting, so e.g. several balance updates of one account are written once.
+ * Every mutation runs under its own savepoint: a mutation that throws or leaves an error
+ * (see SqliteDb.takeLastError()) is rolled back and fails alone, the rest of the flush is committed.
+ * A flush hitting SQLITE_BUSY is rolled back as a whole and retried.
+ */
+public class WriteBehindQueue {
+    private static final Logger LOGGER = Logger.getLogger( WriteBehindQueue.class.getName() );
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+    private static final String SAVEPOINT = "queued_write";
+
+    private final SqliteWriter writer;
+    private final ConcurrentLinkedQueue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile int maxAttempts = 5;
+    private volatile long retryDelayMillis = 20;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public WriteBehindQueue(SqliteWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Queues mutation
+     * @param mutation modification performed with writer's SqliteDb
+     * @return future completed when mutation is committed, or exceptionally when it failed
+     */
+    public CompletableFuture<Void> enqueue(Consumer<SqliteDb> mutation) {
+        return enqueue(null, mutation);
+    }
+
+    /**
+     * Queues mutation that replaces a still waiting mutation with the same key
+     * @param key coalescing key, e.g. "accounts:3", or null
+     * @param mutation modification performed with writer's SqliteDb
+     * @return future completed when mutation (or the one replacing it) is committed
+     */
+    public CompletableFuture<Void> enqueue(String key, Consumer<SqliteDb> mutation) {
+        Pending item = new Pending(key, mutation);
+        pending.add(item);
+        size.incrementAndGet();
+        if(flushScheduled.compareAndSet(false, true)) {
+            writer.submit(db -> {
+                writePending(db);
+                return null;
+            });
+        }
+        return item.future;
+    }
+
+    /**
+     * @return future completed when everything queued before the call is written
+     */
+    public CompletableFuture<Void> flush() {
+        return enqueue(null, db -> { });
+    }
+
+    /**
+     * @return number of mutations waiting to be written
+     */
+    public int getPending() {
+        return size.get();
+    }
+
+    /**
+     * @param maxAttempts how many times a busy flush is tried before its mutations fail
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if(maxAttempts < 1) {
+            throw new IllegalArgumentException("attempts must be positive: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * @param retryDelayMillis delay before first retry, doubled for every next one
+     */
+    public void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+    public long getWritten() {
+        return written.get();
+    }
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+    public long getRetries() {
+        return retries.get();
+    }
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Runs on writer's thread. Takes everything queued so far, drops replaced mutations
+     * and writes the rest in one transaction, failed mutations are rolled back to their savepoints.
+     */
+    private void writePending(SqliteDb db) {
+        flushScheduled.set(false);
+        List<Pending> batch = new ArrayList<>();
+        Pending item;
+        while((item = pending.poll()) != null) {
+            batch.add(item);
+        }
+        if(batch.isEmpty()) {
+            return;
+        }
+        size.addAndGet(-batch.size());
+        List<Pending> writes = coalesce(batch);
+        flushes.incrementAndGet();
+        long delay = retryDelayMillis;
+        for(int attempt = 1; ; attempt++) {
+            Map<Pending, Throwable> failed = new HashMap<>();
+            try {
+                db.beginTransaction();
+                for(Pending write : writes) {
+                    Throwable error = this.write(db, write);
+                    if(error != null) {
+                        failed.put(write, error);
+                    }
+                }
+                db.commitTransaction();
+                written.addAndGet(writes.size() - failed.size());
+                if(!failed.isEmpty()) {
+                    failures.addAndGet(failed.size());
+                    LOGGER.warning("Error occurred, " + failed.size() + " of " + writes.size() + " queued writes failed: "
+                            + failed.values().iterator().next());
+                }
+                for(Pending write : writes) {
+                    Throwable error = failed.get(write);
+                    if(error == null) {
+                        write.future.complete(null);
+                    } else {
+                        write.future.completeExceptionally(error);
+                    }
+                }
+                return;
+            } catch (SQLException | RuntimeException exc) {
+                db.rollbackTransaction();
+                if(isBusy(exc) && attempt < maxAttempts) {
+                    retries.incrementAndGet();
+                    LOGGER.info("database busy, retrying flush in " + delay + " ms");
+                    if(sleep(delay)) {
+                        delay *= 2;
+                        continue;
+                    }
+                }
+                failures.addAndGet(writes.size());
+                LOGGER.warning("Error occurred, " + writes.size() + " queued writes failed: " + exc);
+                for(Pending write : writes) {
+                    write.future.completeExceptionally(exc);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs mutation under a savepoint and rolls it back if it fails. Busy errors are rethrown,
+     * they roll back and retry the whole flush.
+     * @return error of the rolled back mutation or null if it succeeded
+     */
+    private Throwable write(SqliteDb db, Pending write) throws SQLException {
+        db.savepoint(SAVEPOINT);
+        Throwable error;
+        try {
+            write.mutation.accept(db);
+            error = db.takeLastError();
+        } catch (RuntimeException exc) {
+            error = exc;
+        }
+        if(error == null) {
+            db.releaseSavepoint(SAVEPOINT);
+            return null;
+        }
+        db.rollbackToSavepoint(SAVEPOINT);
+        if(isBusy(error)) {
+            if(error instanceof SQLException) {
+                throw (SQLException) error;
+            }
+            throw (RuntimeException) error;
+        }
+        return error;
+    }
+
+    /**
+     * @return batch without mutations replaced by a later one with the same key
+     */
+    private List<Pending> coalesce(List<Pending> batch) {
+        Map<String, Pending> latest = new HashMap<>();
+        for(Pending item : batch) {
+            if(item.key != null) {
+                latest.put(item.key, item);
+            }
+        }
+        if(latest.isEmpty()) {
+            return batch;
+        }
+        List<Pending> writes = new ArrayList<>(batch.size());
+        for(Pending item : batch) {
+            Pending replacement = item.key == null ? item : latest.get(item.key);
+            if(replacement == item) {
+                writes.add(item);
+            } else {
+                coalesced.incrementAndGet();
+                replacement.future.whenComplete((result, exc) -> {
+                    if(exc == null) {
+                        item.future.complete(null);
+                    } else {
+                        item.future.completeExceptionally(exc);
+                    }
+                });
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * @return true if exc or one of its causes is SQLITE_BUSY/SQLITE_LOCKED error
+     */
+    private static boolean isBusy(Throwable exc) {
+        for(Throwable cause = exc; cause != null; cause = cause.getCause()) {
+            if(cause instanceof SQLException) {
+                int code = ((SQLException) cause).getErrorCode();
+                String message = String.valueOf(cause.getMessage());
+                if(code == SQLITE_BUSY || code == SQLITE_LOCKED
+                        || message.contains("SQLITE_BUSY") || message.contains("database is locked")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static class Pending {
+        private final String key;
+        private final Consumer<SqliteDb> mutation;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(String key, Consumer<SqliteDb> mutation) {
+            this.key = key;
+            this.mutation = mutation;
+        }
+    }
+}
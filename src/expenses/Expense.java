@@ -1,30 +1,38 @@
 package expenses;
-import java.util.GregorianCalendar;
+import tools.DateCodec;
+
+import java.time.LocalDate;
 
 public class Expense {
+    /**
+     * Id of an expense that isn't stored in database yet, database ids start at 1
+     */
+    public static final int UNSAVED_ID = 0;
+
     private int id;
     private String name;
-    private double price;
-    private GregorianCalendar date;
+    private long price; //in minor units, see tools.Money
+    private int date;
     private ExpenseCategory category;
+    private int accountId;
 
-    public Expense(int id, String name, double price) {
+    public Expense(int id, String name, long price) {
         this.id = id;
         this.name = name;
         this.price = price;
         this.category = null;
-        this.date = new GregorianCalendar();
+        this.date = DateCodec.today();
     }
 
-    public Expense(int id, String name, double price, ExpenseCategory category) {
+    public Expense(int id, String name, long price, ExpenseCategory category) {
         this.id = id;
         this.name = name;
         this.price = price;
         this.category = category;
-        this.date = new GregorianCalendar();
+        this.date = DateCodec.today();
     }
 
-    public Expense(int id, String name, double price, ExpenseCategory category, GregorianCalendar date) {
+    public Expense(int id, String name, long price, ExpenseCategory category, int date) {
         this.id = id;
         this.name = name;
         this.price = price;
@@ -36,6 +44,17 @@ public class Expense {
         return id;
     }
 
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return true once the expense got its database id
+     */
+    public boolean isSaved() {
+        return id != UNSAVED_ID;
+    }
+
     public String getName() {
         return name;
     }
@@ -44,7 +63,7 @@ public class Expense {
         this.name = name;
     }
 
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
@@ -52,19 +71,40 @@ public class Expense {
         return category;
     }
 
-    public void setPrice(double price) {
+    public void setPrice(long price) {
         this.price = price;
     }
 
-    public GregorianCalendar getDate() {
+    /**
+     * @return date for display, created on every call
+     */
+    public LocalDate getDate() {
+        return DateCodec.toLocalDate(date);
+    }
+
+    /**
+     * @return date as epoch day
+     */
+    public int getEpochDay() {
         return date;
     }
 
-    public void setDate(GregorianCalendar date) {
+    public void setEpochDay(int date) {
         this.date = date;
     }
 
     public void setCategory(ExpenseCategory category) {
         this.category = category;
     }
+
+    /**
+     * @return id of the account the expense is posted to, 0 if it wasn't read from database
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
 }
@@ -1,48 +1,30 @@
 package expenses;
 
-import accounts.Account;
-import database.SqliteDb;
-import users.User;
+import tools.DateCodec;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.time.LocalDate;
 
 /**
  * Created by Kura on 11.06.2017.
  */
 public class RegularExpense extends Expense {
     private int frequency;
-    private int accountId;
-    private GregorianCalendar lastExpense;
+    private int lastExpense;
 
-    public RegularExpense(int id, String name, double price, ExpenseCategory category, GregorianCalendar date,
-                          int frequency, int accountId, GregorianCalendar lastExpense) {
+    public RegularExpense(int id, String name, long price, ExpenseCategory category, int date,
+                          int frequency, int accountId, int lastExpense) {
         super(id,name,price,category,date);
         this.frequency = frequency;
-        this.accountId = accountId;
+        this.setAccountId(accountId);
         this.lastExpense = lastExpense;
     }
 
-    public void isExpenseTime() {
-        GregorianCalendar date = new GregorianCalendar();
-        if(daysBetween(date)>=frequency) {
-            for(Account account: User.getInstance().getAccounts()) {
-                if(account.getId() == this.accountId) {
-                    account.increaseAccountBalance(this.getPrice());
-                    this.lastExpense = date;
-                    SqliteDb db = new SqliteDb();
-                    db.updateAccount(account);
-                    db.closeConnection();
-                    break;
-                }
-            }
-        }
-    }
-
-    public int daysBetween(GregorianCalendar currentDate) {
-        int from = currentDate.get(Calendar.DAY_OF_YEAR);
-        int to = lastExpense.get(Calendar.DAY_OF_YEAR);
-        return from - to;
+    /**
+     * @param currentDate epoch day
+     * @return days passed since lastExpense
+     */
+    public int daysBetween(int currentDate) {
+        return currentDate - lastExpense;
     }
 
     public int getFrequency() {
@@ -53,19 +35,21 @@ public class RegularExpense extends Expense {
         this.frequency = frequency;
     }
 
-    public int getAccountId() {
-        return accountId;
-    }
-
-    public void setAccountId(int accountId) {
-        this.accountId = accountId;
+    /**
+     * @return lastExpense date for display, created on every call
+     */
+    public LocalDate getLastExpense() {
+        return DateCodec.toLocalDate(lastExpense);
     }
 
-    public GregorianCalendar getLastExpense() {
+    /**
+     * @return lastExpense date as epoch day
+     */
+    public int getLastExpenseEpochDay() {
         return lastExpense;
     }
 
-    public void setLastExpense(GregorianCalendar lastExpense) {
+    public void setLastExpenseEpochDay(int lastExpense) {
         this.lastExpense = lastExpense;
     }
 }
@@ -3,19 +3,24 @@ package gui;
 import accounts.Account;
 import com.jfoenix.controls.JFXButton;
 import com.jfoenix.controls.JFXTextField;
+import database.SqliteConnection;
 import database.SqliteDb;
 import expenses.Expense;
 import expenses.ExpenseCategory;
 import expenses.RegularExpense;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.DatePicker;
 import javafx.stage.Stage;
+import tools.DateCodec;
+import tools.Money;
 import users.User;
 
-import java.util.GregorianCalendar;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class AddExpenseController  {
@@ -55,11 +60,11 @@ public class AddExpenseController  {
         this.getAccounts();
     }
     private void getCategories(){
-        SqliteDb db = new SqliteDb();
-        ObservableList<ExpenseCategory> expenseCategories = FXCollections.observableList(db.getExpenseCategories());
-        db.closeConnection();
-        categoryChoiceBox.setItems(expenseCategories);
-        categoryChoiceBox1.setItems(expenseCategories);
+        BackgroundExecutor.read(SqliteDb::getExpenseCategories, categories -> {
+            ObservableList<ExpenseCategory> expenseCategories = FXCollections.observableList(categories);
+            categoryChoiceBox.setItems(expenseCategories);
+            categoryChoiceBox1.setItems(expenseCategories);
+        });
     }
     private void getAccounts(){
         ObservableList<Account> accounts = FXCollections.observableArrayList(user.getAccounts());
@@ -69,24 +74,24 @@ public class AddExpenseController  {
 
 
     public void addExpense(){
-        SqliteDb db = new SqliteDb();
-        db.insertExpense(accountChoiceBox.getSelectionModel().getSelectedItem().getId(),
-                categoryChoiceBox.getSelectionModel().getSelectedItem().getId(),
-                expenseNameTxt.getText(),
-                Double.parseDouble(priceTxt.getText()),
-                datePicker.getValue().toString());
-        LOGGER.info("inserting new expense to database...");
-        db.updateAccount(accountChoiceBox.getSelectionModel().getSelectedItem(),
-                accountChoiceBox.getSelectionModel().getSelectedItem().getAccountBalance()-Double.parseDouble(priceTxt.getText()));
-        db.closeConnection();
+        Account selectedAccount = accountChoiceBox.getSelectionModel().getSelectedItem();
+        ExpenseCategory category = categoryChoiceBox.getSelectionModel().getSelectedItem();
+        String name = expenseNameTxt.getText();
+        long price = Money.parse(priceTxt.getText());
+        int date = DateCodec.fromLocalDate(datePicker.getValue());
 
-        String[] dateArray = datePicker.getValue().toString().split("-");
-        int dayOfMonth = Integer.parseInt(dateArray[2]);
-        int month = Integer.parseInt(dateArray[1]);
-        int year = Integer.parseInt(dateArray[0]);
-        GregorianCalendar date = new GregorianCalendar(year,month,dayOfMonth);
-        Account account = accountChoiceBox.getSelectionModel().getSelectedItem();
-        account.addExpense(new Expense(100,expenseNameTxt.getText(),Double.parseDouble(priceTxt.getText()),categoryChoiceBox.getSelectionModel().getSelectedItem(),date));
+        Expense expense = new Expense(Expense.UNSAVED_ID,name,price,category,date);
+        selectedAccount.addExpense(expense);
+        LOGGER.info("queueing new expense...");
+        // the id is published only after commit, a rolled back or retried flush may hand out ids that don't exist
+        AtomicInteger postedId = new AtomicInteger(Expense.UNSAVED_ID);
+        CompletableFuture<Void> posting = SqliteConnection.getWriteQueue().enqueue(db ->
+                postedId.set(db.postExpense(selectedAccount.getId(), category.getId(), name, price, date)));
+        posting.thenRun(() -> Platform.runLater(() -> expense.setId(postedId.get())));
+        AsyncWrites.watch(posting, () -> {
+            selectedAccount.getExpensesList().remove(expense);
+            selectedAccount.increaseAccountBalance(expense.getPrice());
+        });
         LOGGER.info("added new expense");
 
         Stage stage = (Stage) addExpenseBtn.getScene().getWindow();
@@ -94,26 +99,23 @@ public class AddExpenseController  {
     }
 
     public void addRegularExpense(){
-        SqliteDb db = new SqliteDb();
-        db.insertRegularExpense(accountChoiceBox1.getSelectionModel().getSelectedItem().getId(),
-                categoryChoiceBox1.getSelectionModel().getSelectedItem().getId(),
-                expenseNameTxt1.getText(),
-                Double.parseDouble(priceTxt1.getText()),
-                datePicker1.getValue().toString(),Integer.parseInt(frequencyTxt.getText()),datePicker1.getValue().toString());
-        db.updateAccount(accountChoiceBox1.getSelectionModel().getSelectedItem(),
-                accountChoiceBox1.getSelectionModel().getSelectedItem().getAccountBalance()-Double.parseDouble(priceTxt1.getText()));
-        db.closeConnection();
+        Account selectedAccount = accountChoiceBox1.getSelectionModel().getSelectedItem();
+        ExpenseCategory category = categoryChoiceBox1.getSelectionModel().getSelectedItem();
+        String name = expenseNameTxt1.getText();
+        long price = Money.parse(priceTxt1.getText());
+        int date = DateCodec.fromLocalDate(datePicker1.getValue());
+        int frequency = Integer.parseInt(frequencyTxt.getText());
 
-        String[] dateArray = datePicker1.getValue().toString().split("-");
-        int dayOfMonth = Integer.parseInt(dateArray[2]);
-        int month = Integer.parseInt(dateArray[1]);
-        int year = Integer.parseInt(dateArray[0]);
-        GregorianCalendar date = new GregorianCalendar(year,month,dayOfMonth);
-        Account account = accountChoiceBox1.getSelectionModel().getSelectedItem();
-
-        account.addRegularExpense(new RegularExpense(100,expenseNameTxt1.getText(),Double.parseDouble(priceTxt1.getText()),
-                categoryChoiceBox1.getSelectionModel().getSelectedItem(),date,Integer.parseInt(frequencyTxt.getText()),
-                accountChoiceBox1.getSelectionModel().getSelectedItem().getId(),date));
+        RegularExpense expense = new RegularExpense(Expense.UNSAVED_ID,name,price,category,date,frequency,selectedAccount.getId(),date);
+        selectedAccount.addRegularExpense(expense);
+        AtomicInteger postedId = new AtomicInteger(Expense.UNSAVED_ID);
+        CompletableFuture<Void> posting = SqliteConnection.getWriteQueue().enqueue(db ->
+                postedId.set(db.postRegularExpense(selectedAccount.getId(), category.getId(), name, price, date, frequency, date)));
+        posting.thenRun(() -> Platform.runLater(() -> expense.setId(postedId.get())));
+        AsyncWrites.watch(posting, () -> {
+            selectedAccount.getRegularExpensesList().remove(expense);
+            selectedAccount.increaseAccountBalance(price);
+        });
 
         for(RegularExpense exp: accountChoiceBox1.getSelectionModel().getSelectedItem().getRegularExpensesList()) {
             System.out.println(exp);
@@ -3,10 +3,12 @@ package gui;
 import accounts.Account;
 import com.jfoenix.controls.JFXButton;
 import com.jfoenix.controls.JFXTextField;
+import database.SqliteConnection;
 import database.SqliteDb;
 import incomes.Income;
 import incomes.IncomeCategory;
 import incomes.RegularIncome;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -14,9 +16,12 @@ import javafx.fxml.FXML;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.DatePicker;
 import javafx.stage.Stage;
+import tools.DateCodec;
+import tools.Money;
 import users.User;
 
-import java.util.GregorianCalendar;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 
@@ -58,11 +63,11 @@ public class AddIncomeController  {
         this.getAccounts();
     }
     private void getCategories(){
-        SqliteDb db = new SqliteDb();
-        ObservableList<IncomeCategory> incomeCategories = FXCollections.observableList(db.getIncomeCategories());
-        db.closeConnection();
-        categoryChoiceBox.setItems(incomeCategories);
-        categoryChoiceBox1.setItems(incomeCategories);
+        BackgroundExecutor.read(SqliteDb::getIncomeCategories, categories -> {
+            ObservableList<IncomeCategory> incomeCategories = FXCollections.observableList(categories);
+            categoryChoiceBox.setItems(incomeCategories);
+            categoryChoiceBox1.setItems(incomeCategories);
+        });
     }
     private void getAccounts(){
         ObservableList<Account> accounts = FXCollections.observableArrayList(user.getAccounts());
@@ -72,42 +77,46 @@ public class AddIncomeController  {
     }
 
     public void addIncome() {
-        SqliteDb db = new SqliteDb();
-        db.insertIncome(accountChoiceBox.getSelectionModel().getSelectedItem().getId(),
-                categoryChoiceBox.getSelectionModel().getSelectedItem().getId(),
-                incomeNameTxt.getText(),Double.parseDouble(moneyTxt.getText()),datePicker.getValue().toString());
-        db.updateAccount(accountChoiceBox.getSelectionModel().getSelectedItem(),
-                accountChoiceBox.getSelectionModel().getSelectedItem().getAccountBalance()+Double.parseDouble(moneyTxt.getText()));
-        db.closeConnection();
-        String[] dateArray = datePicker.getValue().toString().split("-");
-        int dayOfMonth = Integer.parseInt(dateArray[2]);
-        int month = Integer.parseInt(dateArray[1]);
-        int year = Integer.parseInt(dateArray[0]);
-        GregorianCalendar date = new GregorianCalendar(year,month,dayOfMonth);
-        Account account = accountChoiceBox.getSelectionModel().getSelectedItem();
-        account.addIncome(new Income(100,incomeNameTxt.getText(),Double.parseDouble(moneyTxt.getText()),categoryChoiceBox.getSelectionModel().getSelectedItem(),date));
+        Account selectedAccount = accountChoiceBox.getSelectionModel().getSelectedItem();
+        IncomeCategory category = categoryChoiceBox.getSelectionModel().getSelectedItem();
+        String name = incomeNameTxt.getText();
+        long money = Money.parse(moneyTxt.getText());
+        int date = DateCodec.fromLocalDate(datePicker.getValue());
+
+        Income income = new Income(Income.UNSAVED_ID,name,money,category,date);
+        selectedAccount.addIncome(income);
+        // id is published after commit only, a rolled back or retried flush may return an id that never existed
+        AtomicInteger postedId = new AtomicInteger(Income.UNSAVED_ID);
+        CompletableFuture<Void> posting = SqliteConnection.getWriteQueue().enqueue(db ->
+                postedId.set(db.postIncome(selectedAccount.getId(), category.getId(), name, money, date)));
+        posting.thenRun(() -> Platform.runLater(() -> income.setId(postedId.get())));
+        AsyncWrites.watch(posting, () -> {
+            selectedAccount.getIncomesList().remove(income);
+            selectedAccount.reduceAccountBalance(money);
+        });
         LOGGER.info("added new income");
         Stage stage = (Stage) addIncomeBtn.getScene().getWindow();
         stage.close();
     }
 
     public void addRegularIncome () {
-        SqliteDb db = new SqliteDb();
-        db.insertRegularIncome(accountChoiceBox1.getSelectionModel().getSelectedItem().getId(),
-                categoryChoiceBox1.getSelectionModel().getSelectedItem().getId(),
-                incomeNameTxt1.getText(),Double.parseDouble(moneyTxt1.getText()),
-                datePicker1.getValue().toString(),Integer.parseInt(frequencyTxt.getText()),datePicker1.getValue().toString());
+        Account selectedAccount = accountChoiceBox1.getSelectionModel().getSelectedItem();
+        IncomeCategory category = categoryChoiceBox1.getSelectionModel().getSelectedItem();
+        String name = incomeNameTxt1.getText();
+        long money = Money.parse(moneyTxt1.getText());
+        int date = DateCodec.fromLocalDate(datePicker1.getValue());
+        int frequency = Integer.parseInt(frequencyTxt.getText());
 
-        db.updateAccount(accountChoiceBox1.getSelectionModel().getSelectedItem(),
-                accountChoiceBox1.getSelectionModel().getSelectedItem().getAccountBalance()+Double.parseDouble(moneyTxt1.getText()));
-        db.closeConnection();
-        String[] dateArray = datePicker1.getValue().toString().split("-");
-        int dayOfMonth = Integer.parseInt(dateArray[2]);
-        int month = Integer.parseInt(dateArray[1]);
-        int year = Integer.parseInt(dateArray[0]);
-        GregorianCalendar date = new GregorianCalendar(year,month,dayOfMonth);
-        Account account = accountChoiceBox1.getSelectionModel().getSelectedItem();
-        account.addRegularIncome(new RegularIncome(100,incomeNameTxt1.getText(),Double.parseDouble(moneyTxt1.getText()),categoryChoiceBox1.getSelectionModel().getSelectedItem(),date,Integer.parseInt(frequencyTxt.getText()),accountChoiceBox1.getSelectionModel().getSelectedItem().getId(),date));
+        RegularIncome income = new RegularIncome(Income.UNSAVED_ID,name,money,category,date,frequency,selectedAccount.getId(),date);
+        selectedAccount.addRegularIncome(income);
+        AtomicInteger postedId = new AtomicInteger(Income.UNSAVED_ID);
+        CompletableFuture<Void> posting = SqliteConnection.getWriteQueue().enqueue(db ->
+                postedId.set(db.postRegularIncome(selectedAccount.getId(), category.getId(), name, money, date, frequency, date)));
+        posting.thenRun(() -> Platform.runLater(() -> income.setId(postedId.get())));
+        AsyncWrites.watch(posting, () -> {
+            selectedAccount.getRegularIncomesList().remove(income);
+            selectedAccount.reduceAccountBalance(money);
+        });
         LOGGER.info("added new regular income");
         Stage stage = (Stage) addIncomeBtn.getScene().getWindow();
         stage.close();
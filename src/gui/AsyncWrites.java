@@ -0,0 +1,54 @@
+package gui;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
+
+/**
+ * AsyncWrites reports failures of queued database writes. Controllers apply their changes
+ * to the model right away and hand over an undo action, which runs on the FX thread
+ * together with an error dialog if the write fails.
+ */
+public class AsyncWrites {
+    private static final Logger LOGGER = Logger.getLogger( AsyncWrites.class.getName() );
+    private static volatile Runnable onRevert;
+
+    private AsyncWrites() {
+    }
+
+    /**
+     * @param action run after a failed write was reverted, e.g. refreshing main scene
+     */
+    public static void setOnRevert(Runnable action) {
+        onRevert = action;
+    }
+
+    /**
+     * @param write future of queued write
+     * @param revert undoes the optimistic model change
+     */
+    public static void watch(CompletableFuture<?> write, Runnable revert) {
+        write.whenComplete((result, exc) -> {
+            if(exc == null) {
+                return;
+            }
+            Throwable cause = exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+            LOGGER.warning("Error occurred: " + cause);
+            Platform.runLater(() -> {
+                revert.run();
+                Runnable action = onRevert;
+                if(action != null) {
+                    action.run();
+                }
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("BudgetApp");
+                alert.setHeaderText("Change couldn't be saved");
+                alert.setContentText(cause.getMessage());
+                alert.show();
+            });
+        });
+    }
+}
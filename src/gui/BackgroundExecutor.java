@@ -0,0 +1,69 @@
+package gui;
+
+import database.SqliteDb;
+import javafx.concurrent.Task;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * BackgroundExecutor runs database reads away from the FX application thread.
+ * Threads are daemons, so an unfinished load never keeps the application running.
+ */
+public class BackgroundExecutor {
+    private static final Logger LOGGER = Logger.getLogger( BackgroundExecutor.class.getName() );
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "budget-loader-" + THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Runs action on a background thread
+     * @param action action to run
+     */
+    public static void execute(Runnable action) {
+        EXECUTOR.execute(action);
+    }
+
+    /**
+     * Starts task on a background thread. Its handlers are called on the FX thread.
+     * @param task task to run
+     * @return the same task
+     */
+    public static <T extends Task<?>> T submit(T task) {
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    /**
+     * Runs query with its own pooled SqliteDb and passes the result to onSuccess on the FX thread
+     * @param query read performed on background thread
+     * @param onSuccess consumer of query's result
+     * @return task running the query, can be cancelled
+     */
+    public static <T> Task<T> read(Function<SqliteDb, T> query, Consumer<T> onSuccess) {
+        Task<T> task = new Task<T>() {
+            @Override
+            protected T call() {
+                SqliteDb db = new SqliteDb();
+                try {
+                    return query.apply(db);
+                } finally {
+                    db.closeConnection();
+                }
+            }
+        };
+        task.setOnSucceeded(event -> onSuccess.accept(task.getValue()));
+        task.setOnFailed(event -> LOGGER.warning("Error occurred: " + task.getException()));
+        return submit(task);
+    }
+}
@@ -0,0 +1,27 @@
+package gui;
+
+import javafx.concurrent.Task;
+import users.SessionRegistry;
+import users.User;
+
+/**
+ * HydrationTask checks username and password and loads user's accounts, expenses and incomes
+ * on a background thread, reporting loaded rows through the task message.
+ * Task value is null when username or password is wrong.
+ */
+public class HydrationTask extends Task<User> {
+    private final String username;
+    private final char[] password;
+
+    public HydrationTask(String username, char[] password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    @Override
+    protected User call() {
+        updateMessage("Loading...");
+        return SessionRegistry.getDefault().login(username, password, (accounts, rows) ->
+                updateMessage("Loaded " + accounts + " accounts, " + rows + " rows"));
+    }
+}
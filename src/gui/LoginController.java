@@ -1,6 +1,5 @@
 package gui;
 
-import database.SqliteDb;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -8,9 +7,13 @@ import javafx.fxml.Initializable;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.TextField;
 import javafx.stage.Stage;
+import users.User;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ResourceBundle;
@@ -18,40 +21,98 @@ import java.util.ResourceBundle;
 
 //TODO app's main window should open in new centered window
 public class LoginController implements Initializable {
-    public SqliteDb db = new SqliteDb();
     @FXML
     public Label error;
     @FXML
+    private TextField txtUsername;
+    @FXML
     private PasswordField txtPassword;
+    @FXML
+    private Button loginBtn;
+    @FXML
+    private Button cancelBtn;
+    @FXML
+    private ProgressIndicator progress;
+    private HydrationTask hydration;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        if(db.isDbConnected()) {
-            error.setText("Hello!");
-        } else {
-
-        }
+        BackgroundExecutor.read(db -> db.isDbConnected(), connected -> {
+            if(connected) {
+                error.setText("Hello!");
+            }
+        });
     }
 
+    /**
+     * Validates password and loads user's data in background, main scene is shown when loading succeeds
+     */
     public void Login(ActionEvent event) {
-        try {
-            if(db.validatePassword(txtPassword.getText())) {
-                Stage appStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
-                FXMLLoader loader = new FXMLLoader();
-                Parent parent = loader.load(getClass().getResource("mainScene.fxml").openStream());
-                MainSceneController mainSceneController = (MainSceneController)loader.getController();
-                db.initUserData(txtPassword.getText());
-                mainSceneController.fillMainScene();
-                appStage.setTitle("BudgetApp");
-                appStage.setScene(new Scene(parent));
-                appStage.setResizable(false);
-                appStage.show();
-                db.closeConnection();
-            } else {
-                error.setText("Wrong password");
+        if(hydration != null) {
+            return;
+        }
+        Stage appStage = (Stage) ((Node) event.getSource()).getScene().getWindow();
+        HydrationTask task = new HydrationTask(txtUsername.getText(), txtPassword.getText().toCharArray());
+        hydration = task;
+        error.textProperty().bind(task.messageProperty());
+        setLoading(true);
+        task.setOnSucceeded(e -> {
+            finishLoading();
+            if(task.getValue() == null) {
+                error.setText("Wrong username or password");
+                return;
+            }
+            try {
+                showMainScene(appStage, task.getValue());
+            } catch (IOException exc) {
+                exc.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        });
+        task.setOnFailed(e -> {
+            finishLoading();
+            error.setText("Loading failed");
+            task.getException().printStackTrace();
+        });
+        task.setOnCancelled(e -> {
+            finishLoading();
+            error.setText("Login cancelled");
+        });
+        appStage.setOnCloseRequest(e -> task.cancel());
+        BackgroundExecutor.submit(task);
+    }
+
+    /**
+     * Stops loading user's data
+     */
+    public void cancel() {
+        if(hydration != null) {
+            hydration.cancel();
         }
     }
+
+    private void showMainScene(Stage appStage, User user) throws IOException {
+        FXMLLoader loader = new FXMLLoader();
+        Parent parent = loader.load(getClass().getResource("mainScene.fxml").openStream());
+        MainSceneController mainSceneController = (MainSceneController)loader.getController();
+        mainSceneController.fillMainScene(user);
+        appStage.setOnCloseRequest(null);
+        appStage.setTitle("BudgetApp");
+        appStage.setScene(new Scene(parent));
+        appStage.setResizable(false);
+        appStage.show();
+    }
+
+    private void finishLoading() {
+        error.textProperty().unbind();
+        hydration = null;
+        setLoading(false);
+    }
+
+    private void setLoading(boolean loading) {
+        loginBtn.setDisable(loading);
+        txtUsername.setDisable(loading);
+        txtPassword.setDisable(loading);
+        cancelBtn.setVisible(loading);
+        progress.setVisible(loading);
+    }
 }
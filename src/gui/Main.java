@@ -1,5 +1,6 @@
 package gui;
 
+import database.BackupService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -13,6 +14,7 @@ public class Main extends Application {
         primaryStage.setTitle("BudgetApp");
         primaryStage.setScene(new Scene(root));
         primaryStage.show();
+        BackupService.startFromSystemProperties();
     }
     public static void main(String[] args) {
         launch(args);
@@ -2,6 +2,8 @@ package gui;
 
 import accounts.Account;
 import com.jfoenix.controls.*;
+import database.PagedPostings;
+import database.SqliteConnection;
 import database.SqliteDb;
 import expenses.Expense;
 import expenses.ExpenseCategory;
@@ -9,6 +11,7 @@ import expenses.RegularExpense;
 import incomes.Income;
 import incomes.IncomeCategory;
 import incomes.RegularIncome;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -21,19 +24,27 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import tools.BudgetOverview;
+import tools.DateCodec;
+import tools.Money;
 import users.User;
 import java.io.IOException;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 
 public class MainSceneController  {
 
+    private static final int PAGE_SIZE = 100;
+    private static final int CACHED_PAGES = 16;
+
     User user;
-    double moneySpentThisMonth;
+    BudgetOverview budgetOverview;
+    private PagedItems<Expense> expenseItems;
+    private PagedItems<Income> incomeItems;
 
     //OVERVIEW TAB'S ELEMENTS
     @FXML
@@ -49,7 +60,7 @@ public class MainSceneController  {
     @FXML
     private TableColumn<Account,String> AccountNameColumn;
     @FXML
-    private TableColumn<Account,Double> AccountBalanceColumn;
+    private TableColumn<Account,Long> AccountBalanceColumn;
     @FXML
     private Label totalBalanceLbl;
     @FXML
@@ -73,9 +84,9 @@ public class MainSceneController  {
     @FXML
     private TableColumn<Income,String> IncomeNameColumn;
     @FXML
-    private TableColumn<Income,GregorianCalendar> IncomeDateColumn;
+    private TableColumn<Income,LocalDate> IncomeDateColumn;
     @FXML
-    private TableColumn<Income,Double> IncomeMoneyColumn;
+    private TableColumn<Income,Long> IncomeMoneyColumn;
     @FXML
     private TableColumn<Income,IncomeCategory> IncomeCategoryColumn;
 
@@ -85,13 +96,13 @@ public class MainSceneController  {
     @FXML
     private TableColumn<Income,String> RegIncomesColumnName;
     @FXML
-    private TableColumn<Income,GregorianCalendar> RegIncomesColumnDate;
+    private TableColumn<Income,LocalDate> RegIncomesColumnDate;
     @FXML
-    private TableColumn<Income,Double> RegIncomesColumnMoney;
+    private TableColumn<Income,Long> RegIncomesColumnMoney;
     @FXML
     private TableColumn<Income,IncomeCategory> RegIncomesColumnCategory;
     @FXML
-    private TableColumn<Income,GregorianCalendar> RegIncomesColumnLastIncome;
+    private TableColumn<Income,LocalDate> RegIncomesColumnLastIncome;
     @FXML
     private TableColumn<Income,Integer> RegIncomesColumnFrequency;
 
@@ -101,9 +112,9 @@ public class MainSceneController  {
     @FXML
     private TableColumn<Expense,String> ExpenseNameColumn;
     @FXML
-    private TableColumn<Expense,GregorianCalendar> ExpenseDateColumn;
+    private TableColumn<Expense,LocalDate> ExpenseDateColumn;
     @FXML
-    private TableColumn<Expense,Double> ExpensePriceColumn;
+    private TableColumn<Expense,Long> ExpensePriceColumn;
     @FXML
     private TableColumn<Expense, ExpenseCategory> ExpenseCategoryColumn;
 
@@ -113,9 +124,9 @@ public class MainSceneController  {
     @FXML
     private TableColumn<RegularExpense,String> RegExpColumnName;
     @FXML
-    private TableColumn<RegularExpense,GregorianCalendar> RegExpColumnDate;
+    private TableColumn<RegularExpense,LocalDate> RegExpColumnDate;
     @FXML
-    private TableColumn<RegularExpense,Double> RegExpColumnPrice;
+    private TableColumn<RegularExpense,Long> RegExpColumnPrice;
     @FXML
     private TableColumn<RegularExpense,ExpenseCategory> RegExpColumnCategory;
     @FXML
@@ -130,8 +141,12 @@ public class MainSceneController  {
 
 
 
-    public void fillMainScene() {
-        this.user = User.getInstance();
+    /**
+     * @param user logged in user whose data is shown
+     */
+    public void fillMainScene(User user) {
+        this.user = user;
+        AsyncWrites.setOnRevert(this::refresh);
         if(this.user!=null) {
             this.setOverviewTab();
             this.setStatisticTab();
@@ -148,7 +163,6 @@ public class MainSceneController  {
     private void setOverviewTab(){
         this.setAccountsTable();
         this.setTotalBalanceLbl();
-        this.fillLineChart();
     }
 
     private void setAccountsTable() {
@@ -160,53 +174,62 @@ public class MainSceneController  {
         AccountNameColumn.setCellValueFactory
                 (new PropertyValueFactory<Account, String>("accountName"));
         AccountBalanceColumn.setCellValueFactory
-                (new PropertyValueFactory<Account, Double>("accountBalance"));
+                (new PropertyValueFactory<Account, Long>("accountBalance"));
+        formatMoneyColumn(AccountBalanceColumn);
     }
 
     private void setTotalBalanceLbl() {
-        double balance = this.user.getTotalBalance();
-        DecimalFormat formatter = new DecimalFormat("#0.00");
-        totalBalanceLbl.setText(formatter.format(balance)+" PLN");
+        long balance = this.user.getTotalBalance();
+        totalBalanceLbl.setText(Money.format(balance)+" PLN");
     }
-    private void fillLineChart() {
+    /**
+     * @param overview current month's budget numbers, see SqliteDb.getDailyExpenseTotals
+     */
+    private void fillLineChart(BudgetOverview overview) {
 
         XYChart.Series monthlyBudget = new XYChart.Series();
         monthlyBudget.setName("Your budget");
         XYChart.Series monthlyExpenses = new XYChart.Series();
         monthlyExpenses.setName("Your expenses");
 
-        ArrayList<Expense> currentMonthExpenses = user.getMonthlyExpenses();
-        GregorianCalendar date = new GregorianCalendar();
-        
-        this.moneySpentThisMonth = 0;
-        for(int i=1;i<=date.getActualMaximum(Calendar.DAY_OF_MONTH);i++) {
-            for(Expense expense : currentMonthExpenses) {
-                if(expense.getDate().get(Calendar.DAY_OF_MONTH)==i){
-                    this.moneySpentThisMonth += expense.getPrice();
-                }
-            }
-            monthlyBudget.getData().add(new XYChart.Data<>(Integer.toString(i),user.getMonthlyBudget()));
+        long[] spending = overview.getCumulativeSpending();
+        for(int i=1;i<=spending.length;i++) {
+            monthlyBudget.getData().add(new XYChart.Data<>(Integer.toString(i),Money.toDouble(overview.getMonthlyBudget())));
 
-            monthlyExpenses.getData().add(new XYChart.Data<>(Integer.toString(i),this.moneySpentThisMonth));
+            monthlyExpenses.getData().add(new XYChart.Data<>(Integer.toString(i),Money.toDouble(spending[i-1])));
         }
 
-        monthlyLineChart.getData().addAll(monthlyBudget, monthlyExpenses);
+        monthlyLineChart.getData().setAll(monthlyBudget, monthlyExpenses);
         monthlyLineChart.setTitle("Your expenses graph for current month");
         monthlyLineChart.setCreateSymbols(false);
-        DecimalFormat formatter = new DecimalFormat("#0.00");
-        double moneyLeft =user.getMonthlyBudget()-this.moneySpentThisMonth;
-        String money =formatter.format(moneyLeft);
-        System.out.println(money);
-        moneyLeftLbl.setText(money+" PLN");
+        moneyLeftLbl.setText(Money.format(overview.getMoneyLeft())+" PLN");
     }
     
     
     //MONTHLY OVERVIEW METHODS
 
+    /**
+     * Current month's statistics are aggregated in database once queued writes are stored,
+     * line chart of overview tab is filled together with them
+     */
     public void setStatisticTab(){
-        setPieChart();
-        setBudgetProgressBar();
-        setMonthlyBudgetDetails();
+        int userId = user.getId();
+        int today = DateCodec.today();
+        int year = DateCodec.year(today);
+        int month = DateCodec.month(today);
+        readAfterWrites(db -> db.getDailyExpenseTotals(userId, year, month), dailyTotals -> {
+            if(dailyTotals != null) {
+                budgetOverview = new BudgetOverview(user.getMonthlyBudget(), dailyTotals, DateCodec.dayOfMonth(today));
+                fillLineChart(budgetOverview);
+                setBudgetProgressBar();
+                setMonthlyBudgetDetails();
+            }
+        });
+        readAfterWrites(db -> db.getMonthExpenseTotalsByCategory(userId, year, month), categoryTotals -> {
+            if(categoryTotals != null) {
+                setPieChart(categoryTotals);
+            }
+        });
     }
 
     public void addExpense() {
@@ -243,112 +266,117 @@ public class MainSceneController  {
         }
     }
 
-    private void setPieChart() {
-        ArrayList<Expense> allExpenses = user.getMonthlyExpenses();
-
-        HashMap<String,Double> pieChartData = new HashMap<>();
-        for(Expense expense : allExpenses) {
-            if(pieChartData.containsKey(expense.getCategory().getName())) {
-                pieChartData.put(expense.getCategory().getName(),
-                        pieChartData.get(expense.getCategory().getName())+expense.getPrice());
-            }
-            else {
-                pieChartData.put(expense.getCategory().getName(), expense.getPrice());
-            }
-        }
-
-        pieChartData.forEach((k,v) -> {
-            PieChart.Data slice = new PieChart.Data(k,v);
-            expensesPieChart.getData().add(slice);
-        });
+    /**
+     * @param categoryTotals current month's expenses per category, see SqliteDb.getMonthExpenseTotalsByCategory
+     */
+    private void setPieChart(Map<ExpenseCategory,Long> categoryTotals) {
+        ObservableList<PieChart.Data> slices = FXCollections.observableArrayList();
+        categoryTotals.forEach((category, total) -> slices.add(new PieChart.Data(category.getName(),Money.toDouble(total))));
+        expensesPieChart.setData(slices);
 
         expensesPieChart.setLegendSide(Side.LEFT);
     }
 
     private void setBudgetProgressBar() {
-        budgetProgressBar.setProgress(moneySpentThisMonth /user.getMonthlyBudget());
+        double spentPart = budgetOverview.getSpentPart();
+        budgetProgressBar.setProgress(spentPart);
         DecimalFormat formatter = new DecimalFormat("#0.00");
-        budgetPercentTxt.setText(formatter.format(moneySpentThisMonth*100 /user.getMonthlyBudget())+" % of monthly budget");
+        budgetPercentTxt.setText(formatter.format(spentPart*100)+" % of monthly budget");
     }
 
     private void setMonthlyBudgetDetails() {
-        DecimalFormat formatter = new DecimalFormat("#0.00");
-        moneyLeftTxt.setText(formatter.format(user.getMonthlyBudget()- moneySpentThisMonth));
-        GregorianCalendar date = new GregorianCalendar();
-        int dayLeft = date.getActualMaximum(Calendar.DAY_OF_MONTH)-date.get(Calendar.DAY_OF_MONTH)+1;
-        double moneyPerDay = (user.getMonthlyBudget()- moneySpentThisMonth)/dayLeft;
-        moneyPerDayTxt.setText(formatter.format(moneyPerDay));
+        moneyLeftTxt.setText(Money.format(budgetOverview.getMoneyLeft()));
+        moneyPerDayTxt.setText(Money.format(budgetOverview.getMoneyPerDay()));
     }
 
     //INCOMES METHODS
     // all incomes
 
+    /**
+     * Incomes table reads only visible pages from database, newest first
+     */
     private void setAllIncomesTable(){
-        ObservableList<Income> incomesObservableList = FXCollections.observableArrayList();
-        for(Account account: user.getAccounts()) {
-            for(Income income : account.getIncomesList()) {
-                AllIncomesTable.getItems().add(income);
-                incomesObservableList.add(income);
-            }
+        if(incomeItems != null) {
+            reloadAfterWrites(incomeItems);
+            return;
         }
+        incomeItems = new PagedItems<>(PagedPostings.incomes(user.getId(), PAGE_SIZE, CACHED_PAGES));
+        AllIncomesTable.setItems(incomeItems);
+        disableSorting(AllIncomesTable);
         IncomeNameColumn.setCellValueFactory
                 (new PropertyValueFactory<Income, String>("name"));
         IncomeDateColumn.setCellValueFactory
-                (new PropertyValueFactory<Income, GregorianCalendar>("date"));
+                (new PropertyValueFactory<Income, LocalDate>("date"));
         IncomeMoneyColumn.setCellValueFactory
-                (new PropertyValueFactory<Income, Double>("money"));
+                (new PropertyValueFactory<Income, Long>("money"));
+        formatMoneyColumn(IncomeMoneyColumn);
         IncomeCategoryColumn.setCellValueFactory
                 (new PropertyValueFactory<Income, IncomeCategory>("category"));
     }
 
+    /**
+     * Removes selected income by its id from the account it's posted to
+     */
     public void removeIncome(){
         Income income = AllIncomesTable.getSelectionModel().getSelectedItem();
-        one:for(Account account: this.user.getAccounts()) {
-            for(Income i : account.getIncomesList()) {
-                if(i==income) {
-                    account.removeIncome(income);
-
-                    break one;
-                }
-            }
+        Account account = income != null && income.isSaved() ? this.findAccount(income.getAccountId()) : null;
+        if(account != null) {
+            AsyncWrites.watch(account.removeIncome(income),
+                    () -> account.increaseAccountBalance(income.getMoney()));
         }
         this.refresh();
     }
 
     //EXPENSES METHODS
 
+    /**
+     * Expenses table reads only visible pages from database, newest first
+     */
     private void setAllExpensesTable(){
-        ObservableList<Expense> expensesObservableList = FXCollections.observableArrayList();
-        for(Account account: user.getAccounts()) {
-            for(Expense expense : account.getExpensesList()) {
-                AllExpenseTable.getItems().add(expense);
-                expensesObservableList.add(expense);
-            }
+        if(expenseItems != null) {
+            reloadAfterWrites(expenseItems);
+            return;
         }
+        expenseItems = new PagedItems<>(PagedPostings.expenses(user.getId(), PAGE_SIZE, CACHED_PAGES));
+        AllExpenseTable.setItems(expenseItems);
+        disableSorting(AllExpenseTable);
         ExpenseNameColumn.setCellValueFactory
                 (new PropertyValueFactory<Expense, String>("name"));
         ExpenseDateColumn.setCellValueFactory
-                (new PropertyValueFactory<Expense, GregorianCalendar>("date"));
+                (new PropertyValueFactory<Expense, LocalDate>("date"));
         ExpensePriceColumn.setCellValueFactory
-                (new PropertyValueFactory<Expense, Double>("price"));
+                (new PropertyValueFactory<Expense, Long>("price"));
+        formatMoneyColumn(ExpensePriceColumn);
         ExpenseCategoryColumn.setCellValueFactory
                 (new PropertyValueFactory<Expense, ExpenseCategory>("category"));
 
     }
 
+    /**
+     * Removes selected expense by its id from the account it's posted to
+     */
     public void removeExpense() {
         Expense expense = AllExpenseTable.getSelectionModel().getSelectedItem();
-        one:for(Account account : this.user.getAccounts()) {
-            for(Expense e : account.getExpensesList()) {
-                if(e == expense) {
-                    account.removeExpense(expense);
-                    break one;
-                }
-            }
+        Account account = expense != null && expense.isSaved() ? this.findAccount(expense.getAccountId()) : null;
+        if(account != null) {
+            AsyncWrites.watch(account.removeExpense(expense),
+                    () -> account.reduceAccountBalance(expense.getPrice()));
         }
         this.refresh();
     }
 
+    /**
+     * @return user's account with given id or null
+     */
+    private Account findAccount(int accountId) {
+        for(Account account : this.user.getAccounts()) {
+            if(account.getId() == accountId) {
+                return account;
+            }
+        }
+        return null;
+    }
+
     private void setRegExpenseTable(){
         ObservableList<RegularExpense> expensesObservableList = FXCollections.observableArrayList();
         for(Account account : user.getAccounts()) {
@@ -358,8 +386,9 @@ public class MainSceneController  {
             }
         }
         RegExpColumnName.setCellValueFactory(new PropertyValueFactory<RegularExpense, String>("name"));
-        RegExpColumnDate.setCellValueFactory(new PropertyValueFactory<RegularExpense, GregorianCalendar>("date"));
-        RegExpColumnPrice.setCellValueFactory(new PropertyValueFactory<RegularExpense, Double>("price"));
+        RegExpColumnDate.setCellValueFactory(new PropertyValueFactory<RegularExpense, LocalDate>("date"));
+        RegExpColumnPrice.setCellValueFactory(new PropertyValueFactory<RegularExpense, Long>("price"));
+        formatMoneyColumn(RegExpColumnPrice);
         RegExpColumnCategory.setCellValueFactory(
                 new PropertyValueFactory<RegularExpense, ExpenseCategory>("category"));
         RegExpColumnLastExpense.setCellValueFactory(
@@ -377,10 +406,11 @@ public class MainSceneController  {
             }
         }
         RegIncomesColumnName.setCellValueFactory(new PropertyValueFactory<Income, String>("name"));
-        RegIncomesColumnDate.setCellValueFactory(new PropertyValueFactory<Income, GregorianCalendar>("date"));
-        RegIncomesColumnMoney.setCellValueFactory(new PropertyValueFactory<Income, Double>("money"));
+        RegIncomesColumnDate.setCellValueFactory(new PropertyValueFactory<Income, LocalDate>("date"));
+        RegIncomesColumnMoney.setCellValueFactory(new PropertyValueFactory<Income, Long>("money"));
+        formatMoneyColumn(RegIncomesColumnMoney);
         RegIncomesColumnLastIncome.setCellValueFactory(
-                new PropertyValueFactory<Income, GregorianCalendar>("lastIncome"));
+                new PropertyValueFactory<Income, LocalDate>("lastIncome"));
         RegIncomesColumnFrequency.setCellValueFactory(new PropertyValueFactory<Income, Integer>("frequency"));
         RegIncomesColumnCategory.setCellValueFactory(
                 new PropertyValueFactory<Income, IncomeCategory>("category"));
@@ -391,10 +421,10 @@ public class MainSceneController  {
 
     public void setNewBudget() {
             try {
-                user.setMonthlyBudget(Double.parseDouble(newBudgetTxt.getText()));
-                SqliteDb db = new SqliteDb();
-                db.updateUser(user);
-                db.closeConnection();
+                long previousBudget = user.getMonthlyBudget();
+                user.setMonthlyBudget(Money.parse(newBudgetTxt.getText()));
+                AsyncWrites.watch(SqliteConnection.getWriteQueue().enqueue("users:" + user.getId(),
+                        db -> db.updateUser(user)), () -> user.setMonthlyBudget(previousBudget));
                 this.refresh();
             } catch (NumberFormatException exc) {
                 System.out.println(exc);
@@ -402,15 +432,46 @@ public class MainSceneController  {
             }
     }
 
+    /**
+     * Shows column's minor units as formatted amount
+     */
+    private static <S> void formatMoneyColumn(TableColumn<S,Long> column) {
+        column.setCellFactory(tableColumn -> new TableCell<S,Long>() {
+            @Override
+            protected void updateItem(Long item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : Money.format(item));
+            }
+        });
+    }
+
+    /**
+     * Runs query in background after queued writes are stored, result is passed to onSuccess on FX thread
+     */
+    private static <T> void readAfterWrites(Function<SqliteDb,T> query, Consumer<T> onSuccess) {
+        SqliteConnection.getWriteQueue().flush().whenComplete((result, exc) ->
+                Platform.runLater(() -> BackgroundExecutor.read(query, onSuccess)));
+    }
+
+    /**
+     * Paged tables read database, so they are reloaded once queued writes are stored
+     */
+    private static void reloadAfterWrites(PagedItems<?> items) {
+        SqliteConnection.getWriteQueue().flush().whenComplete((result, exc) -> Platform.runLater(items::reload));
+    }
+
+    /**
+     * Paged rows are ordered by date in database and can't be sorted in memory
+     */
+    private static void disableSorting(TableView<?> table) {
+        for(TableColumn<?,?> column : table.getColumns()) {
+            column.setSortable(false);
+        }
+    }
+
     private void refresh(){
-        SqliteDb db = new SqliteDb();
-        monthlyLineChart.getData().clear();
         AccountsTable.getItems().clear();
-        expensesPieChart.getData().clear();
-        AllExpenseTable.getItems().clear();
-        AllIncomesTable.getItems().clear();
-        this.fillMainScene();
-        db.closeConnection();
+        this.fillMainScene(user);
     }
 
 }
@@ -0,0 +1,101 @@
+package gui;
+
+import database.PagedPostings;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * PagedItems is a read-only TableView items list backed by PagedPostings.
+ * Table asks only for visible rows, so only their pages are read. Nothing is read on the FX thread:
+ * row count is read in background, the list is empty until it is known.
+ * Rows of a page that isn't read yet are null, shown as empty rows, and are replaced once
+ * the page is read on the background executor. A page that couldn't be read is requested again
+ * the next time the table asks for its rows.
+ */
+public class PagedItems<T> extends ObservableListBase<T> {
+    private final PagedPostings<T> postings;
+    private int size;
+    private long generation;
+    private final Set<Integer> requestedPages = new HashSet<>();
+
+    public PagedItems(PagedPostings<T> postings) {
+        this.postings = postings;
+        postings.setPrefetchExecutor(BackgroundExecutor::execute);
+        this.reload();
+    }
+
+    /**
+     * Drops cached pages and counts rows again, e.g. after rows were added or removed
+     */
+    public void reload() {
+        postings.invalidate();
+        generation++;
+        requestedPages.clear();
+        BackgroundExecutor.read(postings::count, count -> {
+            int oldSize = size;
+            size = Math.max(count, 0);
+            beginChange();
+            if(oldSize > 0) {
+                nextRemove(0, Collections.<T>nCopies(oldSize, null));
+            }
+            if(size > 0) {
+                nextAdd(0, size);
+            }
+            endChange();
+        });
+    }
+
+    @Override
+    public T get(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        T row = postings.getIfCached(index);
+        int page = index / postings.getPageSize();
+        if(row == null && !postings.isCached(index) && requestedPages.add(page)) {
+            long requested = generation;
+            postings.load(index, () -> Platform.runLater(() -> pageLoaded(page, requested)),
+                    () -> Platform.runLater(() -> pageFailed(page, requested)));
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Lets the next get request the page again, rows stay empty until then
+     */
+    private void pageFailed(int page, long requested) {
+        if(requested == generation) {
+            requestedPages.remove(page);
+        }
+    }
+
+    /**
+     * Tells the table that rows of the page that was read have changed
+     */
+    private void pageLoaded(int page, long requested) {
+        if(requested != generation) {
+            return;
+        }
+        requestedPages.remove(page);
+        int pageSize = postings.getPageSize();
+        int from = page * pageSize;
+        int to = Math.min(from + pageSize, size);
+        if(from >= to) {
+            return;
+        }
+        beginChange();
+        for(int i = from; i < to; i++) {
+            nextSet(i, null);
+        }
+        endChange();
+    }
+}
@@ -0,0 +1,57 @@
+package importer;
+
+import expenses.ExpenseCategory;
+import incomes.IncomeCategory;
+
+import java.util.List;
+
+/**
+ * CategoryMapper resolves category names found in statements to expense and income category ids.
+ * Names are compared case-insensitively; unknown or missing categories map to the default ids.
+ */
+public class CategoryMapper {
+    private final List<ExpenseCategory> expenseCategories;
+    private final List<IncomeCategory> incomeCategories;
+    private final int defaultExpenseCategoryId;
+    private final int defaultIncomeCategoryId;
+
+    public CategoryMapper(List<ExpenseCategory> expenseCategories, List<IncomeCategory> incomeCategories,
+                          int defaultExpenseCategoryId, int defaultIncomeCategoryId) {
+        this.expenseCategories = expenseCategories;
+        this.incomeCategories = incomeCategories;
+        this.defaultExpenseCategoryId = defaultExpenseCategoryId;
+        this.defaultIncomeCategoryId = defaultIncomeCategoryId;
+    }
+
+    public int expenseCategoryId(CharSequence name) {
+        for(ExpenseCategory category : expenseCategories) {
+            if(equalsIgnoreCase(name, category.getName())) {
+                return category.getId();
+            }
+        }
+        return defaultExpenseCategoryId;
+    }
+
+    public int incomeCategoryId(CharSequence name) {
+        for(IncomeCategory category : incomeCategories) {
+            if(equalsIgnoreCase(name, category.getName())) {
+                return category.getId();
+            }
+        }
+        return defaultIncomeCategoryId;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, String name) {
+        if(name == null || text.length() != name.length()) {
+            return false;
+        }
+        for(int i = 0; i < name.length(); i++) {
+            char a = text.charAt(i);
+            char b = name.charAt(i);
+            if(a != b && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,180 @@
+package importer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * CsvStatementReader streams transactions from a CSV bank export.
+ * The file is read through a fixed size buffer and fields are copied into reusable builders,
+ * so memory use doesn't depend on file size. Quoted fields with "" escapes are supported.
+ */
+public class CsvStatementReader implements StatementReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NONE = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long lineNumber;
+    private boolean started;
+
+    private char delimiter = ',';
+    private boolean skipHeader = true;
+    private int dateColumn = 0;
+    private int nameColumn = 1;
+    private int amountColumn = 2;
+    private int categoryColumn = 3;
+
+    private final StringBuilder dateField = new StringBuilder();
+    private final StringBuilder amountField = new StringBuilder();
+    private final StringBuilder ignoredField = new StringBuilder();
+
+    public CsvStatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+    public void setSkipHeader(boolean skipHeader) {
+        this.skipHeader = skipHeader;
+    }
+    /**
+     * Sets zero based column positions. Category column may be -1 when file has no categories.
+     */
+    public void setColumns(int dateColumn, int nameColumn, int amountColumn, int categoryColumn) {
+        this.dateColumn = dateColumn;
+        this.nameColumn = nameColumn;
+        this.amountColumn = amountColumn;
+        this.categoryColumn = categoryColumn;
+    }
+
+    @Override
+    public boolean next(StatementLine line) throws IOException {
+        while(true) {
+            line.clear();
+            dateField.setLength(0);
+            amountField.setLength(0);
+            int fields = readRecord(line);
+            if(fields == 0) {
+                return false;
+            }
+            lineNumber++;
+            if(skipHeader && lineNumber == 1) {
+                continue;
+            }
+            if(fields == 1 && dateField.length() == 0 && amountField.length() == 0) {
+                continue;
+            }
+            int date = FieldParser.parseDate(dateField);
+            if(date == FieldParser.INVALID) {
+                throw new IOException("line " + lineNumber + ": invalid date '" + dateField + "'");
+            }
+            line.setDate(date);
+            try {
+                line.setAmountCents(FieldParser.parseAmountCents(amountField));
+            } catch (NumberFormatException exc) {
+                throw new IOException("line " + lineNumber + ": " + exc.getMessage());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads one CSV record, copying wanted columns into line and field builders
+     * @return number of fields read, 0 at end of input
+     */
+    private int readRecord(StatementLine line) throws IOException {
+        int column = 0;
+        StringBuilder target = targetFor(column, line);
+        boolean quoted = false;
+        boolean fieldStart = true;
+        boolean any = false;
+        int c;
+        while((c = read()) != NONE) {
+            any = true;
+            char ch = (char) c;
+            if(quoted) {
+                if(ch == '"') {
+                    if(peek() == '"') {
+                        read();
+                        target.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    target.append(ch);
+                }
+            } else if(ch == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if(ch == delimiter) {
+                column++;
+                target = targetFor(column, line);
+                fieldStart = true;
+            } else if(ch == '\n') {
+                return column + 1;
+            } else if(ch == '\r') {
+                if(peek() == '\n') {
+                    read();
+                }
+                return column + 1;
+            } else {
+                target.append(ch);
+                fieldStart = false;
+            }
+        }
+        return any ? column + 1 : 0;
+    }
+
+    private StringBuilder targetFor(int column, StatementLine line) {
+        if(column == dateColumn) {
+            return dateField;
+        } else if(column == amountColumn) {
+            return amountField;
+        } else if(column == nameColumn) {
+            return line.getName();
+        } else if(column == categoryColumn) {
+            return line.getCategory();
+        }
+        ignoredField.setLength(0);
+        return ignoredField;
+    }
+
+    private int read() throws IOException {
+        if(position == limit && !fill()) {
+            return NONE;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if(position == limit && !fill()) {
+            return NONE;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if(read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        if(!started) {
+            started = true;
+            if(buffer[0] == '\uFEFF') {
+                position = 1;
+                return position < limit || fill();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
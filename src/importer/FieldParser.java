@@ -0,0 +1,131 @@
+package importer;
+
+import tools.DateCodec;
+
+/**
+ * FieldParser parses dates and amounts straight from character sequences,
+ * without splitting them into temporary strings.
+ */
+public class FieldParser {
+    public static final int INVALID = -1;
+
+    private FieldParser() {
+    }
+
+    /**
+     * Parses date written as yyyy-MM-dd, yyyy.MM.dd, dd.MM.yyyy, dd-MM-yyyy or yyyyMMdd[hhmmss...].
+     * @param text date text
+     * @return date packed as yyyyMMdd or INVALID
+     */
+    public static int parseDate(CharSequence text) {
+        int length = text.length();
+        int first = 0, second = 0, third = 0;
+        int firstDigits = 0, thirdDigits = 0;
+        int part = 0;
+        int i = 0;
+        while(i < length && !isDigit(text.charAt(i))) {
+            i++;
+        }
+        for(; i < length; i++) {
+            char c = text.charAt(i);
+            if(isDigit(c)) {
+                int digit = c - '0';
+                if(part == 0) {
+                    first = first * 10 + digit;
+                    if(++firstDigits == 8) {
+                        return checked(first / 10000, first / 100 % 100, first % 100);
+                    }
+                } else if(part == 1) {
+                    second = second * 10 + digit;
+                } else {
+                    third = third * 10 + digit;
+                    thirdDigits++;
+                }
+            } else if((c == '-' || c == '.' || c == '/') && part < 2) {
+                part++;
+            } else {
+                break;
+            }
+        }
+        if(part != 2 || thirdDigits == 0) {
+            return INVALID;
+        }
+        if(firstDigits == 4) {
+            return checked(first, second, third);
+        }
+        return checked(third, second, first);
+    }
+
+    /**
+     * Parses decimal amount such as -1234.5, 1 234,56, (12.00), +1,234.56 or 1.234.567
+     * The last '.' or ',' followed by one or two digits is the decimal separator,
+     * other separators and spaces are treated as grouping. Three digits after the only separator
+     * (e.g. 12.345) can be either, so such amounts are rejected, as are more digits after the last separator.
+     * @param text amount text
+     * @return amount in hundredths
+     * @throws NumberFormatException when text contains no digits or unexpected characters,
+     *                               is ambiguous or doesn't fit in long
+     */
+    public static long parseAmountCents(CharSequence text) {
+        long value = 0;
+        boolean negative = false;
+        boolean anyDigit = false;
+        int digitsAfterSeparator = -1;
+        char lastSeparator = 0;
+        boolean lastSeparatorRepeated = false;
+        boolean mixedSeparators = false;
+        int length = text.length();
+        try {
+            for(int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if(isDigit(c)) {
+                    value = Math.addExact(Math.multiplyExact(value, 10), c - '0');
+                    anyDigit = true;
+                    if(digitsAfterSeparator >= 0) {
+                        digitsAfterSeparator++;
+                    }
+                } else if(c == '.' || c == ',') {
+                    if(lastSeparator != 0) {
+                        lastSeparatorRepeated = c == lastSeparator;
+                        mixedSeparators |= c != lastSeparator;
+                    }
+                    lastSeparator = c;
+                    digitsAfterSeparator = 0;
+                } else if(c == '-' || c == '(') {
+                    negative = true;
+                } else if(c != '+' && c != ')' && c != ' ' && c != '\u00A0' && c != '\'' && c != '"') {
+                    throw new NumberFormatException("unexpected character in amount: " + text);
+                }
+            }
+            if(!anyDigit) {
+                throw new NumberFormatException("no digits in amount: " + text);
+            }
+            long cents;
+            if(digitsAfterSeparator == 1) {
+                cents = Math.multiplyExact(value, 10);
+            } else if(digitsAfterSeparator == 2) {
+                cents = value;
+            } else if(digitsAfterSeparator == -1
+                    || digitsAfterSeparator == 3 && lastSeparatorRepeated && !mixedSeparators) {
+                cents = Math.multiplyExact(value, 100);
+            } else {
+                throw new NumberFormatException("ambiguous decimal separator in amount: " + text);
+            }
+            return negative ? -cents : cents;
+        } catch (ArithmeticException exc) {
+            throw new NumberFormatException("amount out of range: " + text);
+        }
+    }
+
+    private static int checked(int year, int month, int day) {
+        if(year < 1000 || year > 9999 || month < 1 || month > 12 || day < 1
+                || day > DateCodec.lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,183 @@
+package importer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * OfxStatementReader streams STMTTRN transactions from OFX files.
+ * Both SGML (OFX 1.x, no closing tags) and XML (OFX 2.x) variants are read
+ * with a fixed size buffer and reusable builders.
+ */
+public class OfxStatementReader implements StatementReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NONE = -1;
+    private static final String[][] ENTITIES = {{"amp", "&"}, {"lt", "<"}, {"gt", ">"}, {"quot", "\""}, {"apos", "'"}};
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final StringBuilder tag = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder memo = new StringBuilder();
+
+    public OfxStatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next(StatementLine line) throws IOException {
+        line.clear();
+        memo.setLength(0);
+        boolean inTransaction = false;
+        boolean hasDate = false;
+        boolean hasAmount = false;
+        while(readTag()) {
+            if(!inTransaction) {
+                inTransaction = tagIs("STMTTRN");
+                continue;
+            }
+            if(tagIs("/STMTTRN")) {
+                if(!hasDate || !hasAmount) {
+                    throw new IOException("transaction without DTPOSTED or TRNAMT");
+                }
+                if(line.getName().length() == 0) {
+                    line.getName().append(memo);
+                }
+                return true;
+            }
+            if(tag.length() > 0 && tag.charAt(0) == '/') {
+                continue;
+            }
+            readValue();
+            if(tagIs("DTPOSTED")) {
+                int date = FieldParser.parseDate(value);
+                if(date == FieldParser.INVALID) {
+                    throw new IOException("invalid DTPOSTED '" + value + "'");
+                }
+                line.setDate(date);
+                hasDate = true;
+            } else if(tagIs("TRNAMT")) {
+                try {
+                    line.setAmountCents(FieldParser.parseAmountCents(value));
+                } catch (NumberFormatException exc) {
+                    throw new IOException(exc.getMessage());
+                }
+                hasAmount = true;
+            } else if(tagIs("NAME") || tagIs("PAYEE")) {
+                line.getName().setLength(0);
+                line.getName().append(value);
+            } else if(tagIs("MEMO")) {
+                memo.append(value);
+            } else if(tagIs("CATEGORY")) {
+                line.getCategory().append(value);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Skips to next '<' and reads tag name
+     * @return false at end of input
+     */
+    private boolean readTag() throws IOException {
+        int c;
+        while((c = read()) != NONE && c != '<') {
+            // skip text between tags
+        }
+        if(c == NONE) {
+            return false;
+        }
+        tag.setLength(0);
+        while((c = read()) != NONE && c != '>') {
+            tag.append(Character.toUpperCase((char) c));
+        }
+        return c != NONE;
+    }
+
+    /**
+     * Reads trimmed text up to next tag, decoding basic XML entities
+     */
+    private void readValue() throws IOException {
+        value.setLength(0);
+        int c;
+        while((c = peek()) != NONE && c != '<') {
+            read();
+            if(c == '&') {
+                decodeEntity();
+            } else if(value.length() > 0 || !Character.isWhitespace((char) c)) {
+                value.append((char) c);
+            }
+        }
+        int end = value.length();
+        while(end > 0 && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        value.setLength(end);
+    }
+
+    private void decodeEntity() throws IOException {
+        int start = value.length();
+        int c;
+        while((c = peek()) != NONE && c != ';' && c != '<' && value.length() - start < 6) {
+            value.append((char) read());
+        }
+        if(c == ';') {
+            read();
+        }
+        for(String[] entity : ENTITIES) {
+            if(regionIs(value, start, entity[0])) {
+                value.setLength(start);
+                value.append(entity[1]);
+                return;
+            }
+        }
+        value.insert(start, '&');
+    }
+
+    private boolean tagIs(String name) {
+        return regionIs(tag, 0, name) && tag.length() == name.length();
+    }
+
+    private static boolean regionIs(StringBuilder builder, int start, String text) {
+        if(builder.length() - start != text.length()) {
+            return false;
+        }
+        for(int i = 0; i < text.length(); i++) {
+            if(builder.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int read() throws IOException {
+        if(position == limit && !fill()) {
+            return NONE;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if(position == limit && !fill()) {
+            return NONE;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if(read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,322 @@
+package importer;
+
+import database.ImportCheckpoint;
+import database.PostingRow;
+import database.SqliteConnection;
+import database.SqliteDb;
+import expenses.ExpenseCategory;
+import incomes.IncomeCategory;
+import tools.DateCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * StatementImporter loads bank statements into expenses and incomes tables without the GUI.
+ * A reader thread parses the statement into chunks of rows which the writer thread posts
+ * with SqliteDb batch postings. The queue between them is bounded, so parsing waits
+ * for the database when it falls behind and memory use stays constant for any file size.
+ * Negative amounts become expenses, positive amounts incomes, account balance changes by their sum.
+ * Every chunk is committed in its own transaction together with the import's checkpoint, so other writes
+ * get their turn between chunks. The checkpoint is kept under an import key identifying the statement:
+ * running a failed import again with the same key continues after the last committed line,
+ * running a finished one again imports nothing.
+ */
+public class StatementImporter {
+    private static final Logger LOGGER = Logger.getLogger( StatementImporter.class.getName() );
+    private static final int CHUNK_SIZE = 5_000;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final Chunk END = new Chunk();
+
+    private final int accountId;
+    private final CategoryMapper categoryMapper;
+
+    /**
+     * @param accountId account the imported rows are assigned to
+     * @param categoryMapper maps statement categories to category ids
+     */
+    public StatementImporter(int accountId, CategoryMapper categoryMapper) {
+        this.accountId = accountId;
+        this.categoryMapper = categoryMapper;
+    }
+
+    /**
+     * Imports transactions of the statement that weren't imported with the same key yet. Reader is closed afterwards.
+     * @param statementReader statement to import
+     * @param importKey key identifying the statement, see fileKey
+     * @return number of expenses and incomes imported by this call
+     * @throws IOException when statement can't be read or rows can't be written, rows of committed chunks
+     *                     stay imported and running the import again with the same key continues after them
+     */
+    public Result importStatement(StatementReader statementReader, String importKey) throws IOException {
+        ImportCheckpoint checkpoint;
+        try {
+            checkpoint = SqliteConnection.getWriter().submit(db -> {
+                ImportCheckpoint stored = db.getImportCheckpoint(importKey);
+                SQLException error = db.takeLastError();
+                if(error != null) {
+                    throw new ImportFailure("reading import checkpoint failed", error);
+                }
+                return stored;
+            }).join();
+        } catch (CompletionException exc) {
+            statementReader.close();
+            throw new IOException("reading import checkpoint failed", failureCause(exc));
+        }
+        if(checkpoint == null) {
+            checkpoint = new ImportCheckpoint(importKey, accountId, 0, 0, 0, false);
+        } else if(checkpoint.getAccountId() != accountId) {
+            statementReader.close();
+            throw new IOException("statement " + importKey + " was imported into account " + checkpoint.getAccountId());
+        }
+        Result result = new Result();
+        result.skippedLines = checkpoint.getLines();
+        if(checkpoint.isFinished()) {
+            statementReader.close();
+            LOGGER.info("statement " + importKey + " was already imported");
+            return result;
+        }
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        AtomicReference<Throwable> readError = new AtomicReference<>();
+        long skip = checkpoint.getLines();
+        Thread parser = new Thread(() -> parse(statementReader, skip, queue, readError), "statement-import-reader");
+        parser.setDaemon(true);
+        parser.start();
+        try {
+            Chunk chunk;
+            while((chunk = queue.take()) != END) {
+                checkpoint = this.write(chunk, checkpoint, false);
+                result.expenses += chunk.expenses.size();
+                result.incomes += chunk.incomes.size();
+            }
+            if(readError.get() != null) {
+                throw new IOException("reading statement failed after " + result + ", " + resumeHint(importKey),
+                        readError.get());
+            }
+            this.write(new Chunk(), checkpoint, true);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IOException("import interrupted after " + result + ", " + resumeHint(importKey), exc);
+        } catch (CompletionException exc) {
+            throw new IOException("writing rows failed after " + result + ", " + resumeHint(importKey),
+                    failureCause(exc));
+        } finally {
+            parser.interrupt();
+        }
+        LOGGER.info("imported " + result);
+        return result;
+    }
+
+    private static String resumeHint(String importKey) {
+        return "import again with key " + importKey + " to continue";
+    }
+
+    /**
+     * @return error reported by the writer task, unwrapped from ImportFailure
+     */
+    private static Throwable failureCause(CompletionException exc) {
+        Throwable cause = exc.getCause();
+        if(cause instanceof ImportFailure && cause.getCause() != null) {
+            return cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Posts chunk and stores the checkpoint including it in one transaction on the writer thread
+     * @return stored checkpoint
+     */
+    private ImportCheckpoint write(Chunk chunk, ImportCheckpoint previous, boolean finished) {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(previous.getImportKey(), accountId,
+                previous.getLines() + chunk.size(), previous.getExpenses() + chunk.expenses.size(),
+                previous.getIncomes() + chunk.incomes.size(), finished);
+        return SqliteConnection.getWriter().submitInTransaction(db -> {
+            if(!chunk.expenses.isEmpty() && db.postExpenses(chunk.expenses) < 0) {
+                throw new ImportFailure("writing expenses failed", db.takeLastError());
+            }
+            if(!chunk.incomes.isEmpty() && db.postIncomes(chunk.incomes) < 0) {
+                throw new ImportFailure("writing incomes failed", db.takeLastError());
+            }
+            db.saveImportCheckpoint(checkpoint);
+            return checkpoint;
+        }).join();
+    }
+
+    /**
+     * Computes import key of a statement file from its content, so the same export is recognized
+     * under any file name. An edited file is a new statement.
+     * @param file statement file
+     * @return SHA-256 of the file as hex text
+     */
+    public static String fileKey(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exc) {
+            throw new IllegalStateException(exc);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder key = new StringBuilder("sha256:");
+        for(byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Reads the statement into chunks, the first skip lines were imported before and are only read
+     */
+    private void parse(StatementReader statementReader, long skip, BlockingQueue<Chunk> queue,
+                       AtomicReference<Throwable> readError) {
+        StatementLine line = new StatementLine();
+        Chunk chunk = new Chunk();
+        try {
+            for(long skipped = 0; skipped < skip; skipped++) {
+                if(!statementReader.next(line)) {
+                    throw new IOException("statement has fewer lines than were imported before: " + skipped);
+                }
+            }
+            while(statementReader.next(line)) {
+                String name = line.getName().toString();
+                int date = DateCodec.fromYmd(line.getDate());
+                long cents = line.getAmountCents();
+                if(cents < 0) {
+                    int categoryId = categoryMapper.expenseCategoryId(line.getCategory());
+                    chunk.expenses.add(new PostingRow(accountId, categoryId, name, -cents, date));
+                } else {
+                    int categoryId = categoryMapper.incomeCategoryId(line.getCategory());
+                    chunk.incomes.add(new PostingRow(accountId, categoryId, name, cents, date));
+                }
+                if(chunk.size() == CHUNK_SIZE) {
+                    queue.put(chunk);
+                    chunk = new Chunk();
+                }
+            }
+            if(chunk.size() > 0) {
+                queue.put(chunk);
+            }
+        } catch (InterruptedException exc) {
+            // importer stopped waiting for rows
+            return;
+        } catch (Throwable exc) {
+            readError.set(exc);
+        } finally {
+            try {
+                statementReader.close();
+            } catch (IOException exc) {
+                LOGGER.warning("Error occurred: " + exc);
+            }
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Command line entry: StatementImporter file accountId [csv|ofx] [delimiter]
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.out.println("usage: StatementImporter <file> <accountId> [csv|ofx] [delimiter]");
+            System.exit(2);
+        }
+        String file = args[0];
+        int accountId = Integer.parseInt(args[1]);
+        String format = args.length > 2 ? args[2] : (file.toLowerCase().endsWith(".ofx") ? "ofx" : "csv");
+        Reader reader = new InputStreamReader(Files.newInputStream(Paths.get(file)), StandardCharsets.UTF_8);
+        StatementReader statementReader;
+        if(format.equalsIgnoreCase("ofx")) {
+            statementReader = new OfxStatementReader(reader);
+        } else {
+            CsvStatementReader csvReader = new CsvStatementReader(reader);
+            if(args.length > 3) {
+                csvReader.setDelimiter(args[3].charAt(0));
+            }
+            statementReader = csvReader;
+        }
+
+        SqliteDb db = new SqliteDb();
+        ArrayList<ExpenseCategory> expenseCategories = db.getExpenseCategories();
+        ArrayList<IncomeCategory> incomeCategories = db.getIncomeCategories();
+        db.closeConnection();
+        CategoryMapper mapper = new CategoryMapper(expenseCategories, incomeCategories,
+                expenseCategories.isEmpty() ? 0 : expenseCategories.get(0).getId(),
+                incomeCategories.isEmpty() ? 0 : incomeCategories.get(0).getId());
+
+        long start = System.nanoTime();
+        Result result = new StatementImporter(accountId, mapper).importStatement(statementReader,
+                fileKey(Paths.get(file)));
+        System.out.println("imported " + result + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static class Chunk {
+        private final ArrayList<PostingRow> expenses = new ArrayList<>();
+        private final ArrayList<PostingRow> incomes = new ArrayList<>();
+
+        int size() {
+            return expenses.size() + incomes.size();
+        }
+    }
+
+    /**
+     * Failure that rolls the chunk back, its cause is reported to the caller
+     */
+    private static class ImportFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ImportFailure(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Numbers of rows written by an import
+     */
+    public static class Result {
+        private long expenses;
+        private long incomes;
+        private long skippedLines;
+
+        public long getExpenses() {
+            return expenses;
+        }
+        public long getIncomes() {
+            return incomes;
+        }
+        /**
+         * @return statement lines imported by an earlier run with the same key
+         */
+        public long getSkippedLines() {
+            return skippedLines;
+        }
+
+        @Override
+        public String toString() {
+            return expenses + " expenses, " + incomes + " incomes"
+                    + (skippedLines > 0 ? ", " + skippedLines + " lines imported before" : "");
+        }
+    }
+}
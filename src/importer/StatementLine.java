@@ -0,0 +1,45 @@
+package importer;
+
+/**
+ * StatementLine is a reusable holder for one parsed bank statement transaction.
+ * Readers overwrite the same object for every line, so nothing is allocated per line
+ * until the importer turns it into a database row.
+ */
+public class StatementLine {
+    private int date;
+    private long amountCents;
+    private final StringBuilder name = new StringBuilder();
+    private final StringBuilder category = new StringBuilder();
+
+    /**
+     * @return transaction date packed as yyyyMMdd
+     */
+    public int getDate() {
+        return date;
+    }
+    public void setDate(int date) {
+        this.date = date;
+    }
+    /**
+     * @return signed amount in hundredths, negative for expenses
+     */
+    public long getAmountCents() {
+        return amountCents;
+    }
+    public void setAmountCents(long amountCents) {
+        this.amountCents = amountCents;
+    }
+    public StringBuilder getName() {
+        return name;
+    }
+    public StringBuilder getCategory() {
+        return category;
+    }
+
+    void clear() {
+        date = 0;
+        amountCents = 0;
+        name.setLength(0);
+        category.setLength(0);
+    }
+}
@@ -0,0 +1,17 @@
+package importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sequential reader of bank statement transactions
+ */
+public interface StatementReader extends Closeable {
+    /**
+     * Reads next transaction into line
+     * @param line holder overwritten with the next transaction
+     * @return false when there are no more transactions
+     * @throws IOException when reading fails or line can't be parsed
+     */
+    boolean next(StatementLine line) throws IOException;
+}
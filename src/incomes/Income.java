@@ -1,34 +1,42 @@
 package incomes;
 
-import java.util.GregorianCalendar;
+import tools.DateCodec;
+
+import java.time.LocalDate;
 
 /**
  * Created by Kura on 19.03.2017.
  */
 public class Income {
+    /**
+     * Id of an income that isn't stored in database yet, database ids start at 1
+     */
+    public static final int UNSAVED_ID = 0;
+
     private int id;
     private String name;
-    private double money;
-    private GregorianCalendar date;
+    private long money; //in minor units, see tools.Money
+    private int date;
     private IncomeCategory category;
+    private int accountId;
 
-    public Income(int id, String name, double money) {
+    public Income(int id, String name, long money) {
         this.id = id;
         this.name = name;
         this. money = money;
         this.category = null;
-        this.date = new GregorianCalendar();
+        this.date = DateCodec.today();
     }
 
-    public Income(int id, String name, double money, IncomeCategory category) {
+    public Income(int id, String name, long money, IncomeCategory category) {
         this.id = id;
         this.name = name;
         this. money = money;
         this.category = category;
-        this.date = new GregorianCalendar();
+        this.date = DateCodec.today();
     }
 
-    public Income(int id, String name, double money, IncomeCategory category, GregorianCalendar date) {
+    public Income(int id, String name, long money, IncomeCategory category, int date) {
         this.id = id;
         this.name = name;
         this. money = money;
@@ -44,6 +52,13 @@ public class Income {
         this.id = id;
     }
 
+    /**
+     * @return true once the income got its database id
+     */
+    public boolean isSaved() {
+        return id != UNSAVED_ID;
+    }
+
     public String getName() {
         return name;
     }
@@ -52,19 +67,29 @@ public class Income {
         this.name = name;
     }
 
-    public double getMoney() {
+    public long getMoney() {
         return money;
     }
 
-    public void setMoney(double money) {
+    public void setMoney(long money) {
         this.money = money;
     }
 
-    public GregorianCalendar getDate() {
+    /**
+     * @return date for display, created on every call
+     */
+    public LocalDate getDate() {
+        return DateCodec.toLocalDate(date);
+    }
+
+    /**
+     * @return date as epoch day
+     */
+    public int getEpochDay() {
         return date;
     }
 
-    public void setDate(GregorianCalendar date) {
+    public void setEpochDay(int date) {
         this.date = date;
     }
 
@@ -75,4 +100,15 @@ public class Income {
     public void setCategory(IncomeCategory category) {
         this.category = category;
     }
+
+    /**
+     * @return id of the account the income is posted to, 0 if it wasn't read from database
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(int accountId) {
+        this.accountId = accountId;
+    }
 }
@@ -1,45 +1,27 @@
 package incomes;
 
-import accounts.Account;
-import database.SqliteDb;
-import users.User;
+import tools.DateCodec;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.time.LocalDate;
 
 public class RegularIncome extends Income  {
     private int frequency;
-    private int accountId;
-    private GregorianCalendar lastIncome;
+    private int lastIncome;
 
-    public RegularIncome(int id, String name, double money, IncomeCategory category,
-                         GregorianCalendar date, int frequency, int accountId, GregorianCalendar lastIncome) {
+    public RegularIncome(int id, String name, long money, IncomeCategory category,
+                         int date, int frequency, int accountId, int lastIncome) {
         super(id,name,money,category, date);
         this.frequency = frequency;
-        this.accountId = accountId;
+        this.setAccountId(accountId);
         this.lastIncome = lastIncome;
     }
 
-    public void isIncomeTime() {
-        GregorianCalendar now = new GregorianCalendar();
-        if(daysBetween(now)>=frequency) {
-            for(Account account: User.getInstance().getAccounts()) {
-                if(account.getId() == accountId) {
-                    account.increaseAccountBalance(this.getMoney());
-                    this.lastIncome = now;
-                    SqliteDb db = new SqliteDb();
-                    db.updateAccount(account);
-                    db.closeConnection();
-                    break;
-                }
-            }
-        }
-    }
-
-    public int daysBetween(GregorianCalendar currentDate) {
-        int from = currentDate.get(Calendar.DAY_OF_YEAR);
-        int to = lastIncome.get(Calendar.DAY_OF_YEAR);
-        return from - to;
+    /**
+     * @param currentDate epoch day
+     * @return days passed since lastIncome
+     */
+    public int daysBetween(int currentDate) {
+        return currentDate - lastIncome;
     }
 
     public int getFrequency() {
@@ -50,19 +32,21 @@ public class RegularIncome extends Income  {
         this.frequency = frequency;
     }
 
-    public int getAccountId() {
-        return accountId;
-    }
-
-    public void setAccountId(int accountId) {
-        this.accountId = accountId;
+    /**
+     * @return lastIncome date for display, created on every call
+     */
+    public LocalDate getLastIncome() {
+        return DateCodec.toLocalDate(lastIncome);
     }
 
-    public GregorianCalendar getLastIncome() {
+    /**
+     * @return lastIncome date as epoch day
+     */
+    public int getLastIncomeEpochDay() {
         return lastIncome;
     }
 
-    public void setLastIncome(GregorianCalendar lastIncome) {
+    public void setLastIncomeEpochDay(int lastIncome) {
         this.lastIncome = lastIncome;
     }
 
@@ -70,8 +54,8 @@ public class RegularIncome extends Income  {
     public String toString() {
         return super.toString() + "RegularIncome{" +
                 "frequency=" + frequency +
-                ", accountId=" + accountId +
-                ", lastIncome=" + lastIncome +
+                ", accountId=" + getAccountId() +
+                ", lastIncome=" + DateCodec.format(lastIncome) +
                 '}';
     }
 }
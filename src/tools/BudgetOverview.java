@@ -0,0 +1,65 @@
+package tools;
+
+/**
+ * BudgetOverview holds the numbers of current month's budget charts: spending accumulated day by day,
+ * money left, spent part of the budget and money that can be spent per remaining day.
+ * All amounts are in minor units, see Money.
+ */
+public class BudgetOverview {
+    private final long monthlyBudget;
+    private final long[] cumulativeSpending;
+    private final int daysLeft;
+
+    /**
+     * @param monthlyBudget user's monthly budget
+     * @param dailyTotals expenses per day of month, index 0 is the 1st
+     * @param dayOfMonth today's day of month, 1-based; today counts as a day left
+     */
+    public BudgetOverview(long monthlyBudget, long[] dailyTotals, int dayOfMonth) {
+        this.monthlyBudget = monthlyBudget;
+        this.cumulativeSpending = new long[dailyTotals.length];
+        long spent = 0;
+        for(int day = 0; day < dailyTotals.length; day++) {
+            spent += dailyTotals[day];
+            cumulativeSpending[day] = spent;
+        }
+        this.daysLeft = Math.max(dailyTotals.length - dayOfMonth + 1, 1);
+    }
+
+    public long getMonthlyBudget() {
+        return monthlyBudget;
+    }
+    /**
+     * @return money spent from the 1st until the end of each day, index 0 is the 1st
+     */
+    public long[] getCumulativeSpending() {
+        return cumulativeSpending.clone();
+    }
+    public long getSpent() {
+        return cumulativeSpending.length == 0 ? 0 : cumulativeSpending[cumulativeSpending.length - 1];
+    }
+    public long getMoneyLeft() {
+        return monthlyBudget - getSpent();
+    }
+    /**
+     * @return spent money divided by budget, 1 when something was spent without any budget
+     */
+    public double getSpentPart() {
+        if(monthlyBudget <= 0) {
+            return getSpent() > 0 ? 1 : 0;
+        }
+        return getSpent() / (double) monthlyBudget;
+    }
+    /**
+     * @return days from today until the end of month, today included
+     */
+    public int getDaysLeft() {
+        return daysLeft;
+    }
+    /**
+     * @return money left divided evenly between days left
+     */
+    public long getMoneyPerDay() {
+        return getMoneyLeft() / daysLeft;
+    }
+}
@@ -0,0 +1,203 @@
+package tools;
+
+import java.time.LocalDate;
+import java.util.TimeZone;
+
+/**
+ * DateCodec converts between calendar dates and epoch days (days since 1970-01-01),
+ * the representation dates are stored in. Conversions work on primitives only and
+ * don't allocate, apart from format and toLocalDate.
+ */
+public final class DateCodec {
+    public static final int INVALID = Integer.MIN_VALUE;
+
+    private static final int DAYS_0000_03_01_TO_1970 = 719468;
+    private static final int DAYS_PER_ERA = 146097;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private DateCodec() {
+    }
+
+    /**
+     * @param year year
+     * @param month month 1-12
+     * @param dayOfMonth day 1-31
+     * @return epoch day
+     */
+    public static int toEpochDay(int year, int month, int dayOfMonth) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + dayOfMonth - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_03_01_TO_1970;
+    }
+
+    /**
+     * @param epochDay epoch day
+     * @return date packed as yyyyMMdd number, e.g. 20170517
+     */
+    public static int toYmd(int epochDay) {
+        int z = epochDay + DAYS_0000_03_01_TO_1970;
+        int era = (z >= 0 ? z : z - DAYS_PER_ERA + 1) / DAYS_PER_ERA;
+        int dayOfEra = z - era * DAYS_PER_ERA;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * @param ymd date packed as yyyyMMdd number
+     * @return epoch day
+     */
+    public static int fromYmd(int ymd) {
+        return toEpochDay(ymd / 10000, ymd / 100 % 100, ymd % 100);
+    }
+
+    public static int year(int epochDay) {
+        return toYmd(epochDay) / 10000;
+    }
+
+    /**
+     * @return month 1-12
+     */
+    public static int month(int epochDay) {
+        return toYmd(epochDay) / 100 % 100;
+    }
+
+    public static int dayOfMonth(int epochDay) {
+        return toYmd(epochDay) % 100;
+    }
+
+    /**
+     * @return months since year 0, difference of two values is number of whole calendar months between dates
+     */
+    public static int monthIndex(int epochDay) {
+        int ymd = toYmd(epochDay);
+        return ymd / 10000 * 12 + ymd / 100 % 100 - 1;
+    }
+
+    /**
+     * @return epoch day of first day of the month containing epochDay
+     */
+    public static int firstDayOfMonth(int epochDay) {
+        return epochDay - dayOfMonth(epochDay) + 1;
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * @param month month 1-12
+     * @return number of days in the month
+     */
+    public static int lengthOfMonth(int year, int month) {
+        if(month == 2) {
+            return isLeapYear(year) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * @return current date in default time zone
+     */
+    public static int today() {
+        long millis = System.currentTimeMillis();
+        millis += TimeZone.getDefault().getOffset(millis);
+        return (int) Math.floorDiv(millis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Parses yyyy-MM-dd date. Dots are accepted as separators and month and day may have one digit.
+     * @param text date text
+     * @return epoch day or INVALID
+     */
+    public static int parse(CharSequence text) {
+        if(text == null) {
+            return INVALID;
+        }
+        int length = text.length();
+        int position = 0;
+        int year = 0;
+        int digits = 0;
+        while(position < length && isDigit(text.charAt(position))) {
+            year = year * 10 + text.charAt(position++) - '0';
+            digits++;
+        }
+        if(digits != 4 || position == length || !isSeparator(text.charAt(position++))) {
+            return INVALID;
+        }
+        int month = 0;
+        digits = 0;
+        while(position < length && isDigit(text.charAt(position))) {
+            month = month * 10 + text.charAt(position++) - '0';
+            digits++;
+        }
+        if(digits == 0 || digits > 2 || position == length || !isSeparator(text.charAt(position++))) {
+            return INVALID;
+        }
+        int day = 0;
+        digits = 0;
+        while(position < length && isDigit(text.charAt(position))) {
+            day = day * 10 + text.charAt(position++) - '0';
+            digits++;
+        }
+        if(digits == 0 || digits > 2 || position != length) {
+            return INVALID;
+        }
+        if(month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return INVALID;
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    /**
+     * @return date in yyyy-MM-dd format
+     */
+    public static String format(int epochDay) {
+        StringBuilder builder = new StringBuilder(10);
+        formatTo(epochDay, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends date in yyyy-MM-dd format to builder
+     */
+    public static void formatTo(int epochDay, StringBuilder builder) {
+        int ymd = toYmd(epochDay);
+        int year = ymd / 10000;
+        int month = ymd / 100 % 100;
+        int day = ymd % 100;
+        builder.append((char) ('0' + year / 1000 % 10))
+                .append((char) ('0' + year / 100 % 10))
+                .append((char) ('0' + year / 10 % 10))
+                .append((char) ('0' + year % 10))
+                .append('-')
+                .append((char) ('0' + month / 10))
+                .append((char) ('0' + month % 10))
+                .append('-')
+                .append((char) ('0' + day / 10))
+                .append((char) ('0' + day % 10));
+    }
+
+    public static LocalDate toLocalDate(int epochDay) {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    public static int fromLocalDate(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == '.';
+    }
+}
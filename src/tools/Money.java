@@ -0,0 +1,113 @@
+package tools;
+
+/**
+ * Money works on amounts kept as long number of minor units (grosze, cents).
+ * Sums of such amounts are exact, doubles are used only to draw charts.
+ */
+public final class Money {
+    public static final long ONE = 100;
+
+    private Money() {
+    }
+
+    /**
+     * @param units whole currency units
+     * @return amount in minor units
+     */
+    public static long of(long units) {
+        return Math.multiplyExact(units, ONE);
+    }
+
+    /**
+     * Parses amount typed by user, e.g. "12", "12.5", "-12,50" or "1 234.56"
+     * @param text amount text
+     * @return amount in minor units
+     * @throws NumberFormatException if text isn't an amount or has more than two decimal places
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int position = 0;
+        while(position < length && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        boolean negative = false;
+        if(position < length && (text.charAt(position) == '-' || text.charAt(position) == '+')) {
+            negative = text.charAt(position) == '-';
+            position++;
+        }
+        long units = 0;
+        int digits = 0;
+        long fraction = 0;
+        int fractionDigits = -1;
+        for(; position < length; position++) {
+            char c = text.charAt(position);
+            if(c >= '0' && c <= '9') {
+                if(fractionDigits >= 0) {
+                    if(++fractionDigits > 2) {
+                        throw new NumberFormatException("too many decimal places: " + text);
+                    }
+                    fraction = fraction * 10 + (c - '0');
+                } else {
+                    units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+                    digits++;
+                }
+            } else if((c == '.' || c == ',') && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if(c == ' ' || c == '\u00A0' || c == '\'') {
+                if(fractionDigits >= 0) {
+                    break;
+                }
+            } else {
+                throw new NumberFormatException("not an amount: " + text);
+            }
+        }
+        for(; position < length; position++) {
+            if(!Character.isWhitespace(text.charAt(position))) {
+                throw new NumberFormatException("not an amount: " + text);
+            }
+        }
+        if(digits == 0 && fractionDigits <= 0) {
+            throw new NumberFormatException("not an amount: " + text);
+        }
+        if(fractionDigits == 1) {
+            fraction *= 10;
+        }
+        long cents = Math.addExact(Math.multiplyExact(units, ONE), fraction);
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * @return amount in "1234.56" format
+     */
+    public static String format(long cents) {
+        StringBuilder builder = new StringBuilder(16);
+        formatTo(cents, builder);
+        return builder.toString();
+    }
+
+    /**
+     * Appends amount in "1234.56" format to builder
+     */
+    public static void formatTo(long cents, StringBuilder builder) {
+        if(cents < 0) {
+            builder.append('-');
+        }
+        long units = Math.abs(cents / ONE);
+        int fraction = (int) Math.abs(cents % ONE);
+        builder.append(units).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * @return amount multiplied by factor, rounded half up to whole minor units
+     */
+    public static long multiply(long cents, double factor) {
+        return Math.round(cents * factor);
+    }
+
+    /**
+     * @return amount in currency units, for charts and percentages only
+     */
+    public static double toDouble(long cents) {
+        return cents / (double) ONE;
+    }
+}
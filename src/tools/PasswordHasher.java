@@ -0,0 +1,89 @@
+package tools;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PasswordHasher derives password hashes with PBKDF2-HMAC-SHA256 and a random salt.
+ * Hashes are stored as "pbkdf2-sha256$iterations$salt$hash" with Base64 salt and hash,
+ * so the iteration count can be raised later without breaking stored passwords.
+ */
+public final class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int ITERATIONS = 100_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final String DUMMY_HASH = hash("dummy".toCharArray());
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * @param password password to hash
+     * @return encoded hash with fresh salt
+     */
+    public static String hash(char[] password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return hash(password, salt);
+    }
+
+    /**
+     * Hash with given salt, salt has to be random except for generated test data that must be reproducible
+     * @param password password to hash
+     * @param salt salt stored with the hash
+     * @return encoded hash
+     */
+    public static String hash(char[] password, byte[] salt) {
+        Base64.Encoder encoder = Base64.getEncoder();
+        return PREFIX + "$" + ITERATIONS + "$" + encoder.encodeToString(salt) + "$"
+                + encoder.encodeToString(derive(password, salt, ITERATIONS, HASH_BITS));
+    }
+
+    /**
+     * Compares password with stored hash in time independent of where they differ
+     * @param password password to check
+     * @param storedHash hash created by hash(), null is never matched
+     * @return true if password matches
+     */
+    public static boolean verify(char[] password, String storedHash) {
+        String[] parts = storedHash == null ? null : storedHash.split("\\$");
+        if(parts == null || parts.length != 4 || !PREFIX.equals(parts[0])) {
+            verify(password, DUMMY_HASH);
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(parts[2]);
+            byte[] expected = decoder.decode(parts[3]);
+            byte[] actual = derive(password, salt, Integer.parseInt(parts[1]), expected.length * 8);
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException exc) {
+            return false;
+        }
+    }
+
+    /**
+     * Spends the same time as verifying a password, used when there is no hash to check against
+     */
+    public static void verifyNothing(char[] password) {
+        verify(password, DUMMY_HASH);
+    }
+
+    private static byte[] derive(char[] password, byte[] salt, int iterations, int bits) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException exc) {
+            throw new IllegalStateException(ALGORITHM + " not available", exc);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
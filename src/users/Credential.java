@@ -0,0 +1,39 @@
+package users;
+
+import tools.PasswordHasher;
+
+/**
+ * Credential is a verified username with its user id and stored password hash.
+ * SessionRegistry keeps credentials of logged in users to unlock them again without database.
+ */
+public final class Credential {
+    private final String username;
+    private final int userId;
+    private final String passwordHash;
+
+    public Credential(String username, int userId, String passwordHash) {
+        this.username = username;
+        this.userId = userId;
+        this.passwordHash = passwordHash;
+    }
+
+    /**
+     * @param password password to check, compared in constant time
+     * @return true if password matches stored hash
+     */
+    public boolean matches(char[] password) {
+        return PasswordHasher.verify(password, passwordHash);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+    public int getUserId() {
+        return userId;
+    }
+
+    @Override
+    public String toString() {
+        return "Credential{username='" + username + "', userId=" + userId + '}';
+    }
+}
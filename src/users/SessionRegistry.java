@@ -0,0 +1,265 @@
+package users;
+
+import database.LoadListener;
+import database.SqliteDb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * SessionRegistry keeps loaded User object graphs by user id, so one process can serve many users.
+ * Sessions are evicted when there are more than maxSessions of them (least recently used first)
+ * or when they weren't used for idleTimeoutMillis, sessions that are in use are never evicted.
+ * Work on one user's graph is serialized with the session's lock, different users are loaded
+ * and used concurrently.
+ */
+public class SessionRegistry {
+    private static final int DEFAULT_MAX_SESSIONS = 256;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    private static SessionRegistry defaultRegistry;
+
+    private final IntFunction<User> loader;
+    private final int maxSessions;
+    private final long idleTimeoutMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<Integer, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, Credential> credentials = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param loader loads user graph by id, returns null for unknown users
+     * @param maxSessions how many users are kept loaded
+     * @param idleTimeoutMillis unused sessions older than this are evicted
+     */
+    public SessionRegistry(IntFunction<User> loader, int maxSessions, long idleTimeoutMillis) {
+        this(loader, maxSessions, idleTimeoutMillis, System::currentTimeMillis);
+    }
+
+    SessionRegistry(IntFunction<User> loader, int maxSessions, long idleTimeoutMillis, LongSupplier clock) {
+        if(maxSessions < 1) {
+            throw new IllegalArgumentException("max sessions must be positive: " + maxSessions);
+        }
+        this.loader = loader;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Registry loading users from application database
+     * @return shared registry, created on first use
+     */
+    public static synchronized SessionRegistry getDefault() {
+        if(defaultRegistry == null) {
+            defaultRegistry = new SessionRegistry(userId -> {
+                SqliteDb db = new SqliteDb();
+                try {
+                    return db.loadUser(userId);
+                } finally {
+                    db.closeConnection();
+                }
+            }, DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+        }
+        return defaultRegistry;
+    }
+
+    /**
+     * Checks username and password and returns the user's graph. The first login of a username
+     * authenticates against database with SqliteDb.authenticate and remembers the verified credential,
+     * later unlocks compare the password with the remembered hash and don't read database
+     * unless the graph was evicted meanwhile.
+     * @param username user's login
+     * @param password user's password
+     * @param listener notified while user's data is loaded from database
+     * @return user or null if username or password is wrong
+     */
+    public User login(String username, char[] password, LoadListener listener) {
+        Credential credential = credentials.get(username);
+        if(credential != null) {
+            return credential.matches(password) ? get(credential.getUserId()) : null;
+        }
+        SqliteDb db = new SqliteDb();
+        try {
+            User user = db.authenticate(username, password, listener,
+                    verified -> credentials.put(username, verified));
+            if(user != null) {
+                register(user);
+            }
+            return user;
+        } finally {
+            db.closeConnection();
+        }
+    }
+
+    /**
+     * Forgets remembered credential, e.g. after password change. Next login reads database.
+     */
+    public void forget(String username) {
+        credentials.remove(username);
+    }
+
+    /**
+     * Runs work on user's graph holding the session lock, user is loaded first if needed
+     * @param userId user's id
+     * @param work work on the user, gets null if user doesn't exist
+     * @return result of work
+     */
+    public <T> T withUser(int userId, Function<User, T> work) {
+        Session session = lockSession(userId);
+        try {
+            if(session.user == null) {
+                loads.incrementAndGet();
+                session.user = loader.apply(userId);
+            } else {
+                hits.incrementAndGet();
+            }
+            User user = session.user;
+            if(user == null) {
+                this.invalidate(userId);
+            }
+            return work.apply(user);
+        } finally {
+            session.lastAccess = clock.getAsLong();
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * @param userId user's id
+     * @return user's graph, loaded if needed, or null if user doesn't exist
+     */
+    public User get(int userId) {
+        return withUser(userId, user -> user);
+    }
+
+    /**
+     * Adds an already loaded user, e.g. after login checked the password and loaded the graph
+     * @param user loaded user
+     */
+    public void register(User user) {
+        Session session = lockSession(user.getId());
+        try {
+            session.user = user;
+        } finally {
+            session.lastAccess = clock.getAsLong();
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Drops user's session, next access loads the user again
+     */
+    public synchronized void invalidate(int userId) {
+        sessions.remove(userId);
+    }
+
+    /**
+     * Removes sessions idle for longer than the timeout. Sessions that are in use stay.
+     * @return number of evicted sessions
+     */
+    public synchronized int evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        Iterator<Session> iterator = sessions.values().iterator();
+        while(iterator.hasNext()) {
+            Session session = iterator.next();
+            if(now - session.lastAccess >= idleTimeoutMillis && !session.lock.isLocked()) {
+                iterator.remove();
+                evicted++;
+            }
+        }
+        evictions.addAndGet(evicted);
+        return evicted;
+    }
+
+    /**
+     * @return ids of loaded users, least recently used first
+     */
+    public synchronized List<Integer> getUserIds() {
+        return new ArrayList<>(sessions.keySet());
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+    public long getHits() {
+        return hits.get();
+    }
+    public long getLoads() {
+        return loads.get();
+    }
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Locks user's session. Session found unlocked may be evicted before its lock is taken,
+     * then it's unlocked and the user's current session is locked instead.
+     * @return locked session that is still registered for the user
+     */
+    private Session lockSession(int userId) {
+        while(true) {
+            Session session = session(userId);
+            session.lock.lock();
+            if(isRegistered(userId, session)) {
+                return session;
+            }
+            session.lock.unlock();
+        }
+    }
+
+    private synchronized boolean isRegistered(int userId, Session session) {
+        return sessions.get(userId) == session;
+    }
+
+    /**
+     * Finds or creates session and evicts sessions over the limits
+     */
+    private synchronized Session session(int userId) {
+        evictIdle();
+        Session session = sessions.get(userId);
+        if(session == null) {
+            session = new Session(clock.getAsLong());
+            sessions.put(userId, session);
+            evictOverLimit(userId);
+        }
+        return session;
+    }
+
+    /**
+     * Evicts least recently used sessions over the limit, except the new one and those in use.
+     * The registry stays over the limit until sessions in use are released.
+     */
+    private void evictOverLimit(int newUserId) {
+        Iterator<Map.Entry<Integer, Session>> iterator = sessions.entrySet().iterator();
+        while(sessions.size() > maxSessions && iterator.hasNext()) {
+            Map.Entry<Integer, Session> entry = iterator.next();
+            if(entry.getKey() != newUserId && !entry.getValue().lock.isLocked()) {
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Session {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile User user;
+        private volatile long lastAccess;
+
+        private Session(long lastAccess) {
+            this.lastAccess = lastAccess;
+        }
+    }
+}
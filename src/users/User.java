@@ -1,46 +1,37 @@
 package users;
 
 import accounts.Account;
-import expenses.Expense;
+
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.GregorianCalendar;
 
 public class User {
 
-    private static User user;
-
     private int id;
     private String name;
     private ArrayList<Account> accounts;
-    private double monthlyBudget;
+    private long monthlyBudget; //in minor units, see tools.Money
 
 
-    private User(String name,int id,double monthlyBudget){
+    public User(String name,int id,long monthlyBudget){
         this.id = id;
         this.name = name;
         this.accounts = new ArrayList<>();
         this.monthlyBudget = monthlyBudget;
     }
 
-    public static void initializeUser(String name,int id,double monthlyBudget) {
-        user = new User(name,id,monthlyBudget);
-    }
-
-    public static User getInstance() {
-        return user;
-    }
-
-    public double getMonthlyBudget() {
+    public long getMonthlyBudget() {
         return monthlyBudget;
     }
 
-    public void setMonthlyBudget(double money) {
+    public void setMonthlyBudget(long money) {
         this.monthlyBudget = money;
     }
 
-    public double getTotalBalance() {
-        double result = 0;
+    /**
+     * @return sum of all accounts' balances in minor units
+     */
+    public long getTotalBalance() {
+        long result = 0;
         for(Account account : this.accounts){
             result += account.getAccountBalance();
         }
@@ -77,31 +68,6 @@ public class User {
     public ArrayList<Account> getAccounts() {
         return accounts;
     }
-    public ArrayList<Expense> getMonthlyExpenses(){
-        ArrayList<Expense> expenses = new ArrayList<>();
-        GregorianCalendar date = new GregorianCalendar();
-        int month = date.get(Calendar.MONTH);
-        for(Account account: accounts) {
-            for(Expense expense: account.getExpensesList()) {
-                if(expense.getDate().get(Calendar.MONTH)==month+1) {
-                    expenses.add(expense);
-                }
-            }
-        }
-        return expenses;
-    }
-
-    public ArrayList<Expense> getMonthlyExpenses(int month){
-        ArrayList<Expense> expenses = new ArrayList<>();
-        for(Account account: accounts) {
-            for(Expense expense: account.getExpensesList()) {
-                if(expense.getDate().get(Calendar.MONTH)==month+1) {
-                    expenses.add(expense);
-                }
-            }
-        }
-        return expenses;
-    }
 
     @Override
     public String toString() {
@@ -10,27 +10,27 @@ import static org.junit.Assert.*;
 public class AccountTest {
     @Test
     public void transferMoney() throws Exception {
-        Account account_1 = new Account(1,"Account_1",1500.23);
-        Account account_2 = new Account(2,"Account_2", 1000);
-        account_1.transferMoney(1000.23,account_2);
-        assertEquals(500,account_1.getAccountBalance(),1);
-        assertEquals(2000,account_2.getAccountBalance(),1);
-        account_1.transferMoney(500,account_1);
-        assertEquals(500,account_1.getAccountBalance(),1);
+        Account account_1 = new Account(1,"Account_1",150023);
+        Account account_2 = new Account(2,"Account_2", 100000);
+        account_1.transferMoney(100023,account_2);
+        assertEquals(50000,account_1.getAccountBalance());
+        assertEquals(200023,account_2.getAccountBalance());
+        account_1.transferMoney(50000,account_1);
+        assertEquals(50000,account_1.getAccountBalance());
     }
 
     @Test
     public void increaseAccountBalance() throws Exception {
-        Account account = new Account(1,"Account",1500);
-        account.increaseAccountBalance(1000.21);
-        assertEquals(2500.21,account.getAccountBalance(),1);
+        Account account = new Account(1,"Account",150000);
+        account.increaseAccountBalance(100021);
+        assertEquals(250021,account.getAccountBalance());
     }
 
     @Test
     public void reduceAccountBalance() throws Exception {
-        Account account = new Account(1,"Account",1500);
-        account.reduceAccountBalance(500);
-        assertEquals(1000,account.getAccountBalance(),1);
+        Account account = new Account(1,"Account",150000);
+        account.reduceAccountBalance(50000);
+        assertEquals(100000,account.getAccountBalance());
     }
 
     @Test
@@ -39,7 +39,7 @@ public class AccountTest {
         Expense expense = new Expense(1,"Expense",100);
         account.addExpense(expense);
         assertEquals(true, account.getExpensesList().contains(expense));
-        assertEquals(1400,account.getAccountBalance(),1);
+        assertEquals(1400,account.getAccountBalance());
     }
 
     @Test
@@ -49,7 +49,7 @@ public class AccountTest {
         account.addExpense(expense);
         account.removeExpense(expense);
         assertEquals(false,account.getExpensesList().contains(expense));
-        assertEquals(1500,account.getAccountBalance(),1);
+        assertEquals(1500,account.getAccountBalance());
     }
 
     @Test
@@ -58,7 +58,7 @@ public class AccountTest {
         Income income = new Income(1,"Income",1000);
         account.addIncome(income);
         assertEquals(true,account.getIncomesList().contains(income));
-        assertEquals(2500,account.getAccountBalance(),1);
+        assertEquals(2500,account.getAccountBalance());
     }
 
     @Test
@@ -68,6 +68,6 @@ public class AccountTest {
         account.addIncome(income);
         account.removeIncome(income);
         assertEquals(false,account.getIncomesList().contains(income));
-        assertEquals(1500,account.getAccountBalance(),1);
+        assertEquals(1500,account.getAccountBalance());
     }
 }
\ No newline at end of file
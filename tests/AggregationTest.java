@@ -0,0 +1,93 @@
+import database.MonthlyTotal;
+import database.SqliteDb;
+import expenses.Expense;
+import expenses.ExpenseCategory;
+import incomes.Income;
+import org.junit.Test;
+import tools.DateCodec;
+import users.User;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for aggregate queries of SqliteDb
+ */
+public class AggregationTest {
+    private static final int FROM = DateCodec.toEpochDay(1970, 1, 1);
+    private static final int TO = DateCodec.toEpochDay(2100, 12, 31);
+
+    @Test
+    public void dailyTotalsMatchStreamedExpenses() throws Exception {
+        SqliteDb db = new SqliteDb();
+        User user = db.loadUser(1);
+        List<Expense> expenses = expenses(db, user);
+        assertFalse(expenses.isEmpty());
+        Expense any = expenses.get(0);
+        int year = DateCodec.year(any.getEpochDay());
+        int month = DateCodec.month(any.getEpochDay());
+        long[] expected = new long[DateCodec.lengthOfMonth(year, month)];
+        for(Expense expense : expenses) {
+            int day = expense.getEpochDay();
+            if(DateCodec.year(day) == year && DateCodec.month(day) == month) {
+                expected[DateCodec.dayOfMonth(day) - 1] += expense.getPrice();
+            }
+        }
+        assertArrayEquals(expected, db.getDailyExpenseTotals(user.getId(), year, month));
+        db.closeConnection();
+    }
+
+    @Test
+    public void categoryTotalsMatchStreamedExpenses() throws Exception {
+        SqliteDb db = new SqliteDb();
+        User user = db.loadUser(1);
+        Map<Integer,Long> expected = new HashMap<>();
+        for(Expense expense : expenses(db, user)) {
+            if(expense.getCategory() != null) {
+                expected.merge(expense.getCategory().getId(), expense.getPrice(), Long::sum);
+            }
+        }
+        Map<ExpenseCategory,Long> totals = db.getExpenseTotalsByCategory(user.getId(), FROM, TO);
+        assertEquals(expected.size(), totals.size());
+        long previous = Long.MAX_VALUE;
+        for(Map.Entry<ExpenseCategory,Long> entry : totals.entrySet()) {
+            assertEquals(expected.get(entry.getKey().getId()), entry.getValue());
+            assertTrue(entry.getValue() <= previous);
+            previous = entry.getValue();
+        }
+        db.closeConnection();
+    }
+
+    @Test
+    public void monthlyTotalsMatchStreamedPostings() throws Exception {
+        SqliteDb db = new SqliteDb();
+        User user = db.loadUser(1);
+        long incomes;
+        try (Stream<Income> stream = db.streamIncomes(user.getId(), 100)) {
+            incomes = stream.mapToLong(Income::getMoney).sum();
+        }
+        long expenses = expenses(db, user).stream().mapToLong(Expense::getPrice).sum();
+        List<MonthlyTotal> totals = db.getMonthlyTotals(user.getId(), 197001, 210012);
+        long previousMonth = 0;
+        for(MonthlyTotal total : totals) {
+            assertTrue(total.getYear() * 12L + total.getMonth() > previousMonth);
+            previousMonth = total.getYear() * 12L + total.getMonth();
+            incomes -= total.getIncomes();
+            expenses -= total.getExpenses();
+        }
+        assertEquals(0, incomes);
+        assertEquals(0, expenses);
+        db.closeConnection();
+    }
+
+    private static List<Expense> expenses(SqliteDb db, User user) {
+        try (Stream<Expense> stream = db.streamExpenses(user.getId(), 100)) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import database.BackupService;
+import database.ConnectionProfile;
+import database.SqliteConnection;
+import database.SqliteDb;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for BackupService class, working on a copy of database.db
+ */
+public class BackupServiceTest {
+    private ConnectionProfile previousProfile;
+    private File database;
+    private File directory;
+
+    @Before
+    public void useCopy() throws Exception {
+        previousProfile = SqliteConnection.getProfile();
+        database = File.createTempFile("backup-test", ".db");
+        Files.copy(new File(previousProfile.getPath()).toPath(), database.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        directory = Files.createTempDirectory("snapshots").toFile();
+        ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+        profile.setPath(database.getPath());
+        SqliteConnection.configure(profile);
+    }
+
+    @After
+    public void restoreProfile() {
+        SqliteConnection.configure(previousProfile);
+        for(String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(database.getPath() + suffix).delete();
+        }
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void snapshotsAreRotated() throws Exception {
+        BackupService service = new BackupService(directory, 2);
+        for(int i = 0; i < 3; i++) {
+            service.backup();
+            Thread.sleep(5);
+        }
+        List<File> snapshots = service.getSnapshots();
+        assertEquals(2, snapshots.size());
+        assertEquals(3, service.getBackups());
+        assertEquals(count(database, "expenses"), count(snapshots.get(1), "expenses"));
+    }
+
+    @Test
+    public void backupDoesNotStopWriters() throws Exception {
+        long before = count(database, "expenses");
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger written = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            SqliteDb db = new SqliteDb();
+            while(running.get()) {
+                db.insertExpense(1, 1, "during backup", 100, DateCodec.today());
+                written.incrementAndGet();
+                started.countDown();
+            }
+            db.closeConnection();
+        });
+        writer.start();
+        started.await();
+        BackupService service = new BackupService(directory, 1);
+        File snapshot = service.backup();
+        int writtenDuringBackup = written.get();
+        running.set(false);
+        writer.join();
+        long copied = count(snapshot, "expenses");
+        assertTrue(writtenDuringBackup > 0);
+        assertTrue(copied >= before && copied <= before + written.get());
+    }
+
+    @Test
+    public void restoreReplacesDatabase() throws Exception {
+        BackupService service = new BackupService(directory, 1);
+        long before = count(database, "expenses");
+        File snapshot = service.backup();
+        SqliteDb db = new SqliteDb();
+        int userExpenses = db.countExpenses(1);
+        db.insertExpense(1, 1, "after backup", 100, DateCodec.today());
+        db.closeConnection();
+        assertEquals(before + 1, count(database, "expenses"));
+        BackupService.restore(snapshot);
+        assertEquals(before, count(database, "expenses"));
+        db = new SqliteDb();
+        assertEquals(userExpenses, db.countExpenses(1));
+        db.closeConnection();
+    }
+
+    private static long count(File file, String table) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
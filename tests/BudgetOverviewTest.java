@@ -0,0 +1,32 @@
+import org.junit.Test;
+import tools.BudgetOverview;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for BudgetOverview class
+ */
+public class BudgetOverviewTest {
+    @Test
+    public void spendingIsAccumulated() throws Exception {
+        BudgetOverview overview = new BudgetOverview(10_000, new long[]{100, 0, 250, 50}, 2);
+        assertArrayEquals(new long[]{100, 100, 350, 400}, overview.getCumulativeSpending());
+        assertEquals(400, overview.getSpent());
+        assertEquals(9_600, overview.getMoneyLeft());
+        assertEquals(0.04, overview.getSpentPart(), 1e-9);
+    }
+
+    @Test
+    public void moneyLeftIsSplitBetweenDaysLeft() throws Exception {
+        BudgetOverview overview = new BudgetOverview(3_100, new long[31], 29);
+        assertEquals(3, overview.getDaysLeft());
+        assertEquals(1_033, overview.getMoneyPerDay());
+        assertEquals(3_100, new BudgetOverview(3_100, new long[31], 31).getMoneyPerDay());
+    }
+
+    @Test
+    public void spendingWithoutBudgetIsWholeBudget() throws Exception {
+        assertEquals(1.0, new BudgetOverview(0, new long[]{5}, 1).getSpentPart(), 0);
+        assertEquals(0.0, new BudgetOverview(0, new long[]{0}, 1).getSpentPart(), 0);
+    }
+}
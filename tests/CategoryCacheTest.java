@@ -0,0 +1,60 @@
+import database.CategoryCache;
+import database.SqliteConnection;
+import database.SqliteDb;
+import expenses.ExpenseCategory;
+import incomes.IncomeCategory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for CategoryCache class
+ */
+public class CategoryCacheTest {
+    @Test
+    public void categoriesAreShared() throws Exception {
+        SqliteDb db = new SqliteDb();
+        ArrayList<ExpenseCategory> first = db.getExpenseCategories();
+        ArrayList<ExpenseCategory> second = db.getExpenseCategories();
+        assertEquals(first.size(), second.size());
+        for(int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+        db.closeConnection();
+    }
+
+    @Test
+    public void invalidateReloadsCategories() throws Exception {
+        SqliteDb db = new SqliteDb();
+        ArrayList<IncomeCategory> before = db.getIncomeCategories();
+        long version = CategoryCache.getInstance().getVersion();
+        CategoryCache.getInstance().invalidate();
+        ArrayList<IncomeCategory> after = db.getIncomeCategories();
+        assertEquals(version + 1, CategoryCache.getInstance().getVersion());
+        assertEquals(before.size(), after.size());
+        if(!before.isEmpty()) {
+            assertNotSame(before.get(0), after.get(0));
+            assertEquals(before.get(0).getId(), after.get(0).getId());
+        }
+        db.closeConnection();
+    }
+
+    @Test
+    public void categoryInsertInTransactionInvalidatesOnlyOnCommit() throws Exception {
+        long version = CategoryCache.getInstance().getVersion();
+        try {
+            SqliteConnection.getWriter().submitInTransaction(db -> {
+                db.insertIncomeCategory("rolled back category");
+                assertEquals(version, CategoryCache.getInstance().getVersion());
+                throw new IllegalStateException("roll back");
+            }).join();
+            fail("transaction should fail");
+        } catch (CompletionException exc) {
+            assertEquals("roll back", exc.getCause().getMessage());
+        }
+        assertEquals(version, CategoryCache.getInstance().getVersion());
+    }
+}
@@ -0,0 +1,47 @@
+import database.ConnectionPool;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for ConnectionPool class
+ */
+public class ConnectionPoolTest {
+    @Test
+    public void releasedConnectionIsReused() throws Exception {
+        ConnectionPool pool = new ConnectionPool(2, 1000);
+        Connection first = pool.lease();
+        pool.release(first);
+        Connection second = pool.lease();
+        assertSame(first, second);
+        assertEquals(1, pool.getStats().getCreated());
+        pool.release(second);
+        pool.shutdown();
+    }
+
+    @Test
+    public void statsTrackActiveAndIdle() throws Exception {
+        ConnectionPool pool = new ConnectionPool(2, 1000);
+        Connection first = pool.lease();
+        Connection second = pool.lease();
+        assertEquals(2, pool.getStats().getActive());
+        assertEquals(0, pool.getStats().getIdle());
+        pool.release(first);
+        pool.release(first);
+        assertEquals(1, pool.getStats().getActive());
+        assertEquals(1, pool.getStats().getIdle());
+        pool.release(second);
+        assertEquals(2, pool.getStats().getLeases());
+        pool.shutdown();
+    }
+
+    @Test(expected = SQLException.class)
+    public void exhaustedPoolTimesOut() throws Exception {
+        ConnectionPool pool = new ConnectionPool(1, 50);
+        pool.lease();
+        pool.lease();
+    }
+}
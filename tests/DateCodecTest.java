@@ -0,0 +1,45 @@
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for DateCodec class
+ */
+public class DateCodecTest {
+    @Test
+    public void epochDayMatchesLocalDate() throws Exception {
+        for(int day = -800_000; day <= 800_000; day += 37) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            assertEquals(day, DateCodec.toEpochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+            assertEquals(date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth(),
+                    DateCodec.toYmd(day));
+        }
+    }
+
+    @Test
+    public void parseAndFormat() throws Exception {
+        int day = DateCodec.toEpochDay(2017, 5, 17);
+        assertEquals(17303, day);
+        assertEquals(day, DateCodec.parse("2017-05-17"));
+        assertEquals(day, DateCodec.parse("2017.5.17"));
+        assertEquals("2017-05-17", DateCodec.format(day));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("2017-02-29"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("17-05-2017"));
+        assertEquals(DateCodec.INVALID, DateCodec.parse("2017-05-17x"));
+    }
+
+    @Test
+    public void calendarFields() throws Exception {
+        int day = DateCodec.toEpochDay(2016, 2, 29);
+        assertEquals(2016, DateCodec.year(day));
+        assertEquals(2, DateCodec.month(day));
+        assertEquals(29, DateCodec.dayOfMonth(day));
+        assertEquals(29, DateCodec.lengthOfMonth(2016, 2));
+        assertEquals(DateCodec.toEpochDay(2016, 2, 1), DateCodec.firstDayOfMonth(day));
+        assertEquals(11, DateCodec.monthIndex(DateCodec.toEpochDay(2017, 1, 1)) - DateCodec.monthIndex(day));
+        assertEquals(LocalDate.now().toEpochDay(), DateCodec.today());
+    }
+}
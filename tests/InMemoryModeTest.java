@@ -0,0 +1,143 @@
+import database.ConnectionProfile;
+import database.SqliteConnection;
+import database.SqliteDb;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests of memory mode of SqliteConnection, working on a copy of database.db
+ */
+public class InMemoryModeTest {
+    private ConnectionProfile previousProfile;
+    private File database;
+    private long expenses;
+
+    @Before
+    public void useCopy() throws Exception {
+        previousProfile = SqliteConnection.getProfile();
+        database = File.createTempFile("memory-test", ".db");
+        Files.copy(new File(previousProfile.getPath()).toPath(), database.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        expenses = count(database, "expenses");
+    }
+
+    @After
+    public void restoreProfile() {
+        SqliteConnection.configure(previousProfile);
+        for(String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            new File(database.getPath() + suffix).delete();
+        }
+    }
+
+    @Test
+    public void fileIsLoadedAndWrittenOnCheckpoint() throws Exception {
+        configure("SHUTDOWN");
+        SqliteDb db = new SqliteDb();
+        int userExpenses = db.countExpenses(1);
+        db.insertExpense(1, 1, "in memory", 100, DateCodec.today());
+        assertEquals(userExpenses + 1, db.countExpenses(1));
+        db.closeConnection();
+        assertEquals(expenses, count(database, "expenses"));
+        assertTrue(SqliteConnection.checkpoint());
+        assertFalse(SqliteConnection.checkpoint());
+        assertEquals(expenses + 1, count(database, "expenses"));
+    }
+
+    @Test
+    public void shutdownWritesLastCheckpoint() throws Exception {
+        configure("SHUTDOWN");
+        insertExpense();
+        SqliteConnection.shutdown();
+        assertEquals(expenses + 1, count(database, "expenses"));
+    }
+
+    @Test
+    public void intervalCheckpointsInBackground() throws Exception {
+        ConnectionProfile profile = configure("INTERVAL");
+        profile.setCheckpointIntervalMillis(20);
+        SqliteConnection.configure(profile);
+        insertExpense();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while(count(database, "expenses") == expenses && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expenses + 1, count(database, "expenses"));
+    }
+
+    @Test
+    public void noDurabilityDoesNotWriteOnShutdown() throws Exception {
+        configure("NONE");
+        insertExpense();
+        SqliteConnection.shutdown();
+        assertEquals(expenses, count(database, "expenses"));
+    }
+
+    @Test
+    public void readersWaitForUncommittedWrites() throws Exception {
+        configure("NONE");
+        SqliteDb db = new SqliteDb();
+        int userExpenses = db.countExpenses(1);
+        db.closeConnection();
+        Connection writer = SqliteConnection.connector();
+        writer.setAutoCommit(false);
+        try (Statement statement = writer.createStatement()) {
+            statement.execute("INSERT INTO expenses (account_id, category_id, name, price, date) " +
+                    "SELECT id, 1, 'uncommitted', 100, 0 FROM accounts WHERE user_id = 1 LIMIT 1");
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Integer> count = executor.submit(() -> {
+            SqliteDb reader = new SqliteDb();
+            try {
+                return reader.countExpenses(1);
+            } finally {
+                reader.closeConnection();
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(count.isDone());
+        writer.rollback();
+        writer.close();
+        assertEquals(userExpenses, count.get(10, TimeUnit.SECONDS).intValue());
+        executor.shutdown();
+    }
+
+    private ConnectionProfile configure(String durability) {
+        ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+        profile.setPath(database.getPath());
+        profile.setInMemory(true);
+        profile.setDurability(durability);
+        SqliteConnection.configure(profile);
+        return profile;
+    }
+
+    private static void insertExpense() {
+        SqliteDb db = new SqliteDb();
+        db.insertExpense(1, 1, "in memory", 100, DateCodec.today());
+        db.closeConnection();
+    }
+
+    private static long count(File file, String table) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
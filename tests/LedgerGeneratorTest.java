@@ -0,0 +1,85 @@
+import database.LedgerGenerator;
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for LedgerGenerator class
+ */
+public class LedgerGeneratorTest {
+    @Test
+    public void sameSeedGivesSameLedger() throws Exception {
+        File first = generate(7);
+        File second = generate(7);
+        File other = generate(8);
+        try {
+            assertEquals(checksum(first), checksum(second));
+            assertNotEquals(checksum(first), checksum(other));
+        } finally {
+            delete(first);
+            delete(second);
+            delete(other);
+        }
+    }
+
+    @Test
+    public void ledgerIsConsistent() throws Exception {
+        File file = generate(3);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+            assertEquals(3, query(connection, "SELECT COUNT(DISTINCT type) FROM accounts"));
+            assertEquals(20, query(connection, "SELECT COUNT(*) FROM accounts"));
+            assertTrue(query(connection, "SELECT COUNT(*) FROM expenses") > 20 * 60);
+            assertTrue(query(connection, "SELECT COUNT(*) FROM regularExpenses") > 0);
+            assertEquals(query(connection, "SELECT SUM(price) FROM expenses"),
+                    query(connection, "SELECT SUM(total) FROM monthly_summary WHERE kind = 0"));
+            assertEquals(query(connection, "SELECT SUM(money) FROM incomes") - query(connection, "SELECT SUM(price) FROM expenses"),
+                    query(connection, "SELECT SUM(balance) FROM accounts"));
+            assertEquals(0, query(connection, "SELECT COUNT(*) FROM expenses WHERE category_id NOT IN (SELECT id FROM expensesCategories)"));
+            assertEquals(12, query(connection, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger'"));
+        } finally {
+            delete(file);
+        }
+    }
+
+    private static File generate(long seed) throws Exception {
+        File file = File.createTempFile("ledger", ".db");
+        LedgerGenerator generator = new LedgerGenerator();
+        generator.setSeed(seed);
+        generator.setAccounts(20);
+        generator.setDays(90);
+        generator.setEndDay(DateCodec.toEpochDay(2017, 12, 31));
+        generator.setOverwrite(true);
+        generator.generate(file);
+        return file;
+    }
+
+    private static long checksum(File file) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath())) {
+            return query(connection, "SELECT SUM(id * 31 + account_id * 7 + category_id * 3 + price + date) FROM expenses")
+                    + query(connection, "SELECT SUM(id * 31 + account_id * 7 + money + date) FROM incomes")
+                    + query(connection, "SELECT SUM(id * 31 + user_id + balance + type) FROM accounts")
+                    + query(connection, "SELECT SUM(length(password_hash) + unicode(substr(password_hash, 22))) FROM users");
+        }
+    }
+
+    private static long query(Connection connection, String sql) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void delete(File file) {
+        for(String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+}
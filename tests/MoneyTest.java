@@ -0,0 +1,47 @@
+import org.junit.Test;
+import tools.Money;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for Money class
+ */
+public class MoneyTest {
+    @Test
+    public void parse() throws Exception {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(-1250, Money.parse("-12,50"));
+        assertEquals(123456, Money.parse(" 1 234.56 "));
+        assertEquals(5, Money.parse("0.05"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRejectsFractionsOfMinorUnit() throws Exception {
+        Money.parse("1.999");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRejectsText() throws Exception {
+        Money.parse("12a");
+    }
+
+    @Test
+    public void format() throws Exception {
+        assertEquals("12.05", Money.format(1205));
+        assertEquals("-0.50", Money.format(-50));
+        assertEquals("0.00", Money.format(0));
+    }
+
+    @Test
+    public void sumsAreExact() throws Exception {
+        long sum = 0;
+        double doubleSum = 0;
+        for(int i = 0; i < 1000; i++) {
+            sum += Money.parse("0.10");
+            doubleSum += 0.10;
+        }
+        assertEquals(10000, sum);
+        assertNotEquals(100.0, doubleSum, 0.0);
+    }
+}
@@ -0,0 +1,115 @@
+import database.ConnectionProfile;
+import database.MonthlySummary;
+import database.SqliteConnection;
+import database.SqliteDb;
+import expenses.Expense;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for MonthlySummary class, working on a copy of database.db
+ */
+public class MonthlySummaryTest {
+    private static final int ACCOUNT_ID = 1;
+    private static final int CATEGORY_ID = 1;
+
+    private ConnectionProfile previousProfile;
+    private File database;
+
+    @Before
+    public void useCopy() throws Exception {
+        previousProfile = SqliteConnection.getProfile();
+        database = File.createTempFile("summary-test", ".db");
+        Files.copy(new File(previousProfile.getPath()).toPath(), database.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+        profile.setPath(database.getPath());
+        SqliteConnection.configure(profile);
+    }
+
+    @After
+    public void restoreProfile() {
+        SqliteConnection.configure(previousProfile);
+        for(String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(database.getPath() + suffix).delete();
+        }
+    }
+
+    @Test
+    public void triggersFollowInsertAndRemove() throws Exception {
+        int date = DateCodec.toEpochDay(2031, 3, 14);
+        int yearMonth = MonthlySummary.yearMonth(date);
+        assertEquals(203103, yearMonth);
+        long[] before = summary(yearMonth);
+
+        SqliteDb db = new SqliteDb();
+        db.insertExpense(ACCOUNT_ID, CATEGORY_ID, "summary test", 1250, date);
+        db.insertExpense(ACCOUNT_ID, CATEGORY_ID, "summary test", 750, date + 1);
+        long[] inserted = summary(yearMonth);
+        assertEquals(before[0] + 2000, inserted[0]);
+        assertEquals(before[1] + 2, inserted[1]);
+
+        int id = lastExpenseId();
+        db.removeExpense(new Expense(id, "summary test", 750, null, date + 1));
+        db.closeConnection();
+        long[] removed = summary(yearMonth);
+        assertEquals(before[0] + 1250, removed[0]);
+        assertEquals(before[1] + 1, removed[1]);
+    }
+
+    @Test
+    public void rebuildMatchesTriggers() throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        String snapshot = "SELECT group_concat(kind || ':' || account_id || ':' || year_month || ':' || " +
+                "category_id || ':' || total || ':' || count, ',') FROM " +
+                "(SELECT * FROM monthly_summary ORDER BY kind, account_id, year_month, category_id)";
+        String maintained = single(connection, snapshot);
+        connection.setAutoCommit(false);
+        assertTrue(MonthlySummary.rebuild(connection) > 0);
+        assertEquals(maintained, single(connection, snapshot));
+        connection.rollback();
+        connection.close();
+    }
+
+    private static long[] summary(int yearMonth) throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT total, count FROM monthly_summary " +
+                     "WHERE kind = " + MonthlySummary.EXPENSE + " AND account_id = " + ACCOUNT_ID +
+                     " AND year_month = " + yearMonth + " AND category_id = " + CATEGORY_ID)) {
+            return resultSet.next() ? new long[]{resultSet.getLong(1), resultSet.getLong(2)} : new long[2];
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static int lastExpenseId() throws Exception {
+        Connection connection = SqliteConnection.connector();
+        try {
+            return Integer.parseInt(single(connection, "SELECT MAX(id) FROM expenses"));
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static String single(Connection connection, String query) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+}
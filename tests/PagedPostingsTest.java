@@ -0,0 +1,136 @@
+import database.PageKey;
+import database.PagedPostings;
+import database.SqliteConnection;
+import database.SqliteDb;
+import expenses.Expense;
+import incomes.Income;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for PagedPostings class
+ */
+public class PagedPostingsTest {
+    private static final int USER_ID = 1;
+
+    @Test
+    public void pagesFollowDateOrder() throws Exception {
+        List<Integer> expected = orderedIds("expenses");
+        PagedPostings<Expense> postings = PagedPostings.expenses(USER_ID, 3, 2);
+        SqliteDb db = new SqliteDb();
+        assertEquals(expected.size(), postings.count(db));
+        db.closeConnection();
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).intValue(), postings.get(i).getId());
+        }
+        assertNull(postings.get(expected.size()));
+        assertEquals(0, postings.getIndexReads());
+    }
+
+    @Test
+    public void jumpsSeekPageStart() throws Exception {
+        List<Integer> expected = orderedIds("incomes");
+        PagedPostings<Income> postings = PagedPostings.incomes(USER_ID, 2, 4);
+        int last = expected.size() - 1;
+        assertEquals(expected.get(last).intValue(), postings.get(last).getId());
+        if(last >= 2) {
+            assertEquals(1, postings.getIndexReads());
+        }
+        assertEquals(expected.get(0).intValue(), postings.get(0).getId());
+        assertTrue(postings.isCached(0));
+        postings.get(1);
+        assertTrue(postings.getHits() > 0);
+        postings.invalidate();
+        assertFalse(postings.isCached(0));
+    }
+
+    @Test
+    public void pageQueryWalksAccountIndex() throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        StringBuilder plan = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN QUERY PLAN SELECT * FROM expenses" +
+                     " WHERE account_id = 1 AND date <= 17000 AND (date < 17000 OR id < 5)" +
+                     " ORDER BY date DESC, id DESC LIMIT 100")) {
+            while(resultSet.next()) {
+                plan.append(resultSet.getString("detail")).append('\n');
+            }
+        }
+        connection.close();
+        assertTrue(plan.toString(), plan.toString().contains("idx_expenses_account_date"));
+        assertFalse(plan.toString(), plan.toString().contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void pageEndsMatchOrder() throws Exception {
+        List<Integer> expected = orderedIds("expenses");
+        SqliteDb db = new SqliteDb();
+        List<PageKey> ends = db.getExpensePageEnds(USER_ID, 2);
+        db.closeConnection();
+        assertEquals(expected.size() / 2, ends.size());
+        for(int page = 0; page < ends.size(); page++) {
+            assertEquals(expected.get(page * 2 + 1).intValue(), ends.get(page).getId());
+        }
+    }
+
+    @Test
+    public void loadReadsPageInBackground() throws Exception {
+        List<Integer> expected = orderedIds("expenses");
+        if(expected.isEmpty()) {
+            return;
+        }
+        PagedPostings<Expense> postings = PagedPostings.expenses(USER_ID, 2, 4);
+        List<Thread> readers = new ArrayList<>();
+        postings.setPrefetchExecutor(command -> {
+            Thread thread = new Thread(command);
+            readers.add(thread);
+            thread.start();
+        });
+        int last = expected.size() - 1;
+        assertNull(postings.getIfCached(last));
+        CountDownLatch loaded = new CountDownLatch(1);
+        postings.load(last, loaded::countDown, () -> fail());
+        assertTrue(loaded.await(10, TimeUnit.SECONDS));
+        assertEquals(expected.get(last).intValue(), postings.getIfCached(last).getId());
+        for(Thread reader : readers) {
+            reader.join(10_000);
+        }
+    }
+
+    @Test
+    public void failedLoadCanBeRetried() throws Exception {
+        PagedPostings<Expense> postings = PagedPostings.expenses(USER_ID, 2, 4);
+        int beyondLastPage = orderedIds("expenses").size() + 10;
+        int[] failures = {0};
+        postings.load(beyondLastPage, () -> fail(), () -> failures[0]++);
+        postings.load(beyondLastPage, () -> fail(), () -> failures[0]++);
+        assertEquals(2, failures[0]);
+        assertFalse(postings.isCached(beyondLastPage));
+    }
+
+    private static List<Integer> orderedIds(String table) throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        List<Integer> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT id FROM " + table +
+                     " WHERE account_id IN (SELECT id FROM accounts WHERE user_id = " + USER_ID + ")" +
+                     " ORDER BY date DESC, id DESC")) {
+            while(resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        connection.close();
+        return ids;
+    }
+}
@@ -0,0 +1,31 @@
+import org.junit.Test;
+import tools.PasswordHasher;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for PasswordHasher class
+ */
+public class PasswordHasherTest {
+    @Test
+    public void hashVerifiesOnlyItsPassword() throws Exception {
+        String hash = PasswordHasher.hash("budget".toCharArray());
+        assertTrue(hash.startsWith("pbkdf2-sha256$"));
+        assertFalse(hash.contains("budget"));
+        assertTrue(PasswordHasher.verify("budget".toCharArray(), hash));
+        assertFalse(PasswordHasher.verify("Budget".toCharArray(), hash));
+        assertFalse(PasswordHasher.verify("".toCharArray(), hash));
+    }
+
+    @Test
+    public void sameTextGetsDifferentSalt() throws Exception {
+        assertNotEquals(PasswordHasher.hash("budget".toCharArray()), PasswordHasher.hash("budget".toCharArray()));
+    }
+
+    @Test
+    public void malformedHashIsRejected() throws Exception {
+        assertFalse(PasswordHasher.verify("budget".toCharArray(), null));
+        assertFalse(PasswordHasher.verify("budget".toCharArray(), "budget"));
+        assertFalse(PasswordHasher.verify("budget".toCharArray(), "pbkdf2-sha256$x$y$z"));
+    }
+}
@@ -0,0 +1,64 @@
+import accounts.Account;
+import database.PageKey;
+import database.SqliteDb;
+import expenses.Expense;
+import incomes.Income;
+import org.junit.Test;
+import users.User;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for streaming and visiting SqliteDb postings
+ */
+public class PostingStreamTest {
+    @Test
+    public void streamMatchesPagedExpenses() throws Exception {
+        SqliteDb db = new SqliteDb();
+        User user = db.loadUser(1);
+        List<Expense> paged = db.getExpensesPage(user.getId(), PageKey.FIRST, db.countExpenses(user.getId()));
+        List<Integer> accountIds = user.getAccounts().stream().map(Account::getId).collect(Collectors.toList());
+        try (Stream<Expense> expenses = db.streamExpenses(user.getId(), 2)) {
+            List<Expense> streamed = expenses.collect(Collectors.toList());
+            assertEquals(paged.size(), streamed.size());
+            assertEquals(paged.stream().mapToLong(Expense::getPrice).sum(),
+                    streamed.stream().mapToLong(Expense::getPrice).sum());
+            for(Expense expense : streamed) {
+                assertTrue(accountIds.contains(expense.getAccountId()));
+            }
+        }
+        db.closeConnection();
+    }
+
+    @Test
+    public void closedStreamReleasesStatement() throws Exception {
+        SqliteDb db = new SqliteDb();
+        Stream<Income> incomes = db.streamIncomes(1, 1);
+        assertTrue(incomes.findFirst().isPresent());
+        incomes.close();
+        try (Stream<Income> again = db.streamIncomes(1, 100)) {
+            assertTrue(again.count() > 0);
+        }
+        db.closeConnection();
+    }
+
+    @Test
+    public void visitorSeesEveryRow() throws Exception {
+        SqliteDb db = new SqliteDb();
+        long[] sum = {0};
+        long rows = db.forEachIncome(1, (accountId, epochDay, amount, categoryId) -> sum[0] += amount);
+        long expected;
+        try (Stream<Income> incomes = db.streamIncomes(1, 100)) {
+            expected = incomes.mapToLong(Income::getMoney).sum();
+        }
+        try (Stream<Income> incomes = db.streamIncomes(1, 100)) {
+            assertEquals(incomes.count(), rows);
+        }
+        assertEquals(expected, sum[0]);
+        db.closeConnection();
+    }
+}
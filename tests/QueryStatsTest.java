@@ -0,0 +1,102 @@
+import database.PageKey;
+import database.QueryStats;
+import database.SqliteDb;
+import expenses.Expense;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for QueryStats class
+ */
+public class QueryStatsTest {
+    @Before
+    public void enable() {
+        QueryStats.reset();
+        QueryStats.setEnabled(true);
+    }
+
+    @After
+    public void disable() {
+        QueryStats.setEnabled(false);
+        QueryStats.setSlowQueryThresholdMillis(100);
+        QueryStats.reset();
+    }
+
+    @Test
+    public void queriesAreMeasuredPerSql() throws Exception {
+        SqliteDb db = new SqliteDb();
+        int expenses = db.countExpenses(1);
+        db.countExpenses(1);
+        db.getExpensesPage(1, PageKey.FIRST, 5);
+        db.closeConnection();
+        QueryStats.OperationStats count = find("SELECT COUNT(*) FROM expenses");
+        assertEquals(2, count.getCount());
+        assertEquals(2, count.getRows());
+        assertEquals(0, count.getErrors());
+        assertTrue(count.getP50Nanos() <= count.getP99Nanos());
+        assertTrue(count.getMaxNanos() > 0);
+        QueryStats.OperationStats page = find("ORDER BY date DESC, id DESC LIMIT");
+        assertEquals(Math.min(expenses, 5), page.getRows());
+        assertTrue(QueryStats.dump().contains("SELECT COUNT(*) FROM expenses"));
+    }
+
+    @Test
+    public void failedStatementsAreCounted() throws Exception {
+        SqliteDb db = new SqliteDb();
+        db.updateExpense(new Expense(-1, "missing", 100, null, 0));
+        db.closeConnection();
+        assertEquals(1, find("UPDATE expense SET").getErrors());
+    }
+
+    @Test
+    public void slowQueriesAreLogged() throws Exception {
+        List<String> messages = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+            @Override
+            public void flush() {
+            }
+            @Override
+            public void close() {
+            }
+        };
+        Logger.getLogger("database.slow-queries").addHandler(handler);
+        QueryStats.setSlowQueryThresholdMillis(0);
+        SqliteDb db = new SqliteDb();
+        db.countIncomes(1);
+        db.closeConnection();
+        Logger.getLogger("database.slow-queries").removeHandler(handler);
+        assertTrue(messages.toString(), messages.stream().anyMatch(message -> message.contains("FROM incomes")));
+    }
+
+    @Test
+    public void disabledStatementsAreNotMeasured() throws Exception {
+        QueryStats.setEnabled(false);
+        SqliteDb db = new SqliteDb();
+        db.countExpenses(1);
+        db.closeConnection();
+        assertTrue(QueryStats.snapshot().isEmpty());
+    }
+
+    private static QueryStats.OperationStats find(String sql) {
+        for(QueryStats.OperationStats stats : QueryStats.snapshot()) {
+            if(stats.getSql().contains(sql)) {
+                return stats;
+            }
+        }
+        fail("not measured: " + sql + "\n" + QueryStats.dump());
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+import database.Migration;
+import database.SchemaMigrations;
+import database.SqliteConnection;
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for SchemaMigrations class
+ */
+public class SchemaMigrationsTest {
+    @Test
+    public void databaseIsAtLatestVersion() throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        assertEquals(SchemaMigrations.getLatestVersion(), SchemaMigrations.getCurrentVersion(connection));
+        assertEquals(0, SchemaMigrations.migrate(connection));
+        connection.close();
+    }
+
+    @Test
+    public void datesAreStoredAsEpochDays() throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM expenses WHERE typeof(date) = 'text'")) {
+            resultSet.next();
+            assertEquals(0, resultSet.getInt(1));
+        }
+        connection.close();
+    }
+
+    @Test
+    public void passwordsAreStoredAsHashes() throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM users " +
+                     "WHERE password IS NOT NULL OR password_hash IS NULL OR username IS NULL")) {
+            resultSet.next();
+            assertEquals(0, resultSet.getInt(1));
+        }
+        connection.close();
+    }
+
+    @Test
+    public void duplicateNamesGetUniqueUsernames() throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE users (id INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT UNIQUE, " +
+                    "name TEXT, password TEXT, monthlyBudget INTEGER)");
+            statement.execute("INSERT INTO users (id, name, password, monthlyBudget) VALUES " +
+                    "(1, 'Anna', 'a', 0), (2, 'Anna', 'b', 0), (3, 'Piotr', 'c', 0), (4, 'Anna', 'd', 0)");
+        }
+        for(Migration migration : SchemaMigrations.getMigrations()) {
+            if(migration.getVersion() == 7) {
+                migration.apply(connection);
+            }
+        }
+        StringBuilder usernames = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT username FROM users ORDER BY id")) {
+            while(resultSet.next()) {
+                usernames.append(resultSet.getString(1)).append(' ');
+            }
+        }
+        connection.close();
+        assertEquals("Anna Anna#2 Piotr Anna#4 ", usernames.toString());
+    }
+
+    @Test
+    public void rebuiltTablesKeepAutoincrementCounter() throws Exception {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        for(Migration migration : SchemaMigrations.getMigrations()) {
+            if(migration.getVersion() == 1) {
+                migration.apply(connection);
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO expenses (account_id, category_id, name, price, date) VALUES " +
+                    "(1, 1, 'a', 1.5, '2017-06-01'), (1, 1, 'b', 2, '2017-06-02'), (1, 1, 'c', 3, '2017-06-03')");
+            statement.execute("DELETE FROM expenses WHERE id = 3");
+        }
+        for(Migration migration : SchemaMigrations.getMigrations()) {
+            if(migration.getVersion() == 4 || migration.getVersion() == 5) {
+                migration.apply(connection);
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO expenses (account_id, category_id, name, price, date) VALUES (1, 1, 'd', 4, 0)");
+            try (ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM expenses")) {
+                resultSet.next();
+                assertEquals(4, resultSet.getInt(1));
+            }
+        }
+        connection.close();
+    }
+
+    @Test
+    public void versionsAreIncreasing() throws Exception {
+        int previous = 0;
+        for(Migration migration : SchemaMigrations.getMigrations()) {
+            assertTrue(migration.toString(), migration.getVersion() > previous);
+            previous = migration.getVersion();
+        }
+    }
+
+    @Test
+    public void hotQueriesUseIndexes() throws Exception {
+        SqliteConnection.migrate();
+        Connection connection = SqliteConnection.connector();
+        assertTrue(queryPlan(connection, "SELECT * FROM expenses WHERE account_id = 1 ORDER BY date")
+                .contains("idx_expenses_account_date"));
+        assertTrue(queryPlan(connection, "SELECT * FROM incomes WHERE account_id = 1 AND date >= "
+                + DateCodec.toEpochDay(2017, 5, 1))
+                .contains("idx_incomes_account_date"));
+        assertTrue(queryPlan(connection, "SELECT * FROM regularExpenses WHERE account_id = 1")
+                .contains("idx_regularExpenses_account"));
+        assertTrue(queryPlan(connection, "SELECT * FROM regularIncomes WHERE account_id = 1")
+                .contains("idx_regularIncomes_account"));
+        assertTrue(queryPlan(connection, "SELECT * FROM expenses WHERE category_id = 1")
+                .contains("idx_expenses_category"));
+        connection.close();
+    }
+
+    private static String queryPlan(Connection connection, String sql) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN QUERY PLAN " + sql)) {
+            while(resultSet.next()) {
+                plan.append(resultSet.getString("detail")).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
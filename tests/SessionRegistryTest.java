@@ -0,0 +1,137 @@
+import database.LoadListener;
+import org.junit.Test;
+import users.SessionRegistry;
+import users.User;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for SessionRegistry class
+ */
+public class SessionRegistryTest {
+    @Test
+    public void loadsOnceAndEvictsLeastRecentlyUsed() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        SessionRegistry registry = new SessionRegistry(id -> {
+            loads.incrementAndGet();
+            return new User("user" + id, id, 0);
+        }, 2, 60_000);
+        User first = registry.get(1);
+        assertSame(first, registry.get(1));
+        registry.get(2);
+        registry.get(1);
+        registry.get(3);
+        assertEquals(Arrays.asList(1, 3), registry.getUserIds());
+        assertEquals(3, loads.get());
+        assertEquals(1, registry.getEvictions());
+        assertEquals("user1", registry.get(1).getName());
+    }
+
+    @Test
+    public void repeatedLoginUsesRememberedCredential() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        SessionRegistry registry = new SessionRegistry(id -> {
+            loads.incrementAndGet();
+            return new User("user" + id, id, 0);
+        }, 4, 60_000);
+        User user = registry.login("Micha\u0142", "budget".toCharArray(), LoadListener.NONE);
+        assertNotNull(user);
+        assertSame(user, registry.login("Micha\u0142", "budget".toCharArray(), LoadListener.NONE));
+        assertNull(registry.login("Micha\u0142", "wrong".toCharArray(), LoadListener.NONE));
+        assertNull(registry.login("nobody", "budget".toCharArray(), LoadListener.NONE));
+        assertEquals(0, loads.get());
+        assertEquals(1, registry.getHits());
+    }
+
+    @Test
+    public void unknownUserIsNotKept() throws Exception {
+        SessionRegistry registry = new SessionRegistry(id -> null, 4, 60_000);
+        assertNull(registry.get(7));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void idleSessionsAreEvicted() throws Exception {
+        SessionRegistry registry = new SessionRegistry(id -> new User("user" + id, id, 0), 4, 0);
+        registry.register(new User("user", 5, 0));
+        Thread.sleep(2);
+        assertEquals(1, registry.evictIdle());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void sessionLockSerializesOneUser() throws Exception {
+        SessionRegistry registry = new SessionRegistry(id -> new User("user" + id, id, 0), 4, 60_000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[8];
+        for(int i = 0; i < futures.length; i++) {
+            futures[i] = executor.submit(() -> {
+                start.await();
+                return registry.withUser(1, user -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    user.setMonthlyBudget(user.getMonthlyBudget() + 1);
+                    inside.decrementAndGet();
+                    return null;
+                });
+            });
+        }
+        start.countDown();
+        for(Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(1, maxInside.get());
+        assertEquals(8, registry.get(1).getMonthlyBudget());
+        assertEquals(1, registry.getLoads());
+    }
+
+    @Test
+    public void sessionInUseIsNotEvicted() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        SessionRegistry registry = new SessionRegistry(id -> {
+            loads.incrementAndGet();
+            return new User("user" + id, id, 0);
+        }, 1, 60_000);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        Future<User> first = executor.submit(() -> registry.withUser(1, user -> {
+            maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+            inside.decrementAndGet();
+            return user;
+        }));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        registry.get(2);
+        assertTrue(registry.getUserIds().contains(1));
+        Future<User> second = executor.submit(() -> registry.withUser(1, user -> {
+            maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            inside.decrementAndGet();
+            return user;
+        }));
+        Thread.sleep(50);
+        release.countDown();
+        assertSame(first.get(10, TimeUnit.SECONDS), second.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(1, maxInside.get());
+        assertEquals(2, loads.get());
+    }
+}
@@ -1,14 +1,28 @@
 import accounts.Account;
+import database.ConnectionProfile;
+import database.LoadListener;
+import database.PostingRow;
+import database.SqliteConnection;
 import database.SqliteDb;
 import expenses.Expense;
 import expenses.ExpenseCategory;
+import expenses.RegularExpense;
 import incomes.Income;
 import incomes.IncomeCategory;
+import incomes.RegularIncome;
 import org.junit.Test;
+import tools.DateCodec;
+import users.Credential;
 import users.User;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.ListIterator;
+import java.util.concurrent.CancellationException;
 
 import static org.junit.Assert.*;
 
@@ -19,6 +33,7 @@ public class SqliteDbTest {
         for(IncomeCategory incomeCategory : db.getIncomeCategories()) {
             System.out.println(incomeCategory.getName());
         }
+        db.closeConnection();
     }
 
     @Test
@@ -28,66 +43,260 @@ public class SqliteDbTest {
         for(ExpenseCategory cat : categories) {
             System.out.println(cat.getName()+ " " + cat.getId());
         }
+        db.closeConnection();
     }
 
     @Test
     public void updateAccount() throws Exception {
         SqliteDb db = new SqliteDb();
-        Account account= new Account(3,"NewTestName123123123",9999.99);
+        Account account= new Account(3,"NewTestName123123123",999999);
         db.updateAccount(account);
+        db.closeConnection();
     }
 
     @Test
     public void insertAccount() throws Exception {
         SqliteDb db = new SqliteDb();
-        db.insertAccount(1,"TESTACCountNAME",1987.90);
+        db.insertAccount(1,"TESTACCountNAME",198790);
+        db.closeConnection();
     }
 
     @Test
     public void insertExpense() throws Exception {
         SqliteDb db = new SqliteDb();
-        db.insertExpense(1,1,"TestWydatku",129.49,"2016-01-12");
+        db.insertExpense(1,1,"TestWydatku",12949,DateCodec.toEpochDay(2016,1,12));
+        db.closeConnection();
+    }
+
+    @Test
+    public void insertExpensesBatch() throws Exception {
+        ConnectionProfile previousProfile = SqliteConnection.getProfile();
+        File copy = useCopy(previousProfile);
+        try {
+            SqliteDb db = new SqliteDb();
+            db.setBatchCommitInterval(2);
+            ArrayList<PostingRow> rows = new ArrayList<>();
+            rows.add(new PostingRow(1,1,"TestBatch1",1050,DateCodec.toEpochDay(2016,1,12)));
+            rows.add(new PostingRow(1,2,"TestBatch2",2050,DateCodec.toEpochDay(2016,1,13)));
+            rows.add(new PostingRow(1,3,"TestBatch3",3050,DateCodec.toEpochDay(2016,1,14)));
+            int[] ids = db.insertExpenses(rows);
+            assertEquals(3, ids.length);
+            assertEquals(ids[0] + 1, ids[1]);
+            assertEquals(ids[1] + 1, ids[2]);
+            db.closeConnection();
+        } finally {
+            restore(previousProfile, copy);
+        }
+    }
+
+    /**
+     * Points SqliteConnection at a temporary copy of the profile's database, for tests that add rows
+     * @return the copy, deleted again by restore
+     */
+    private static File useCopy(ConnectionProfile profile) throws Exception {
+        File copy = File.createTempFile("sqlitedb-test", ".db");
+        Files.copy(new File(profile.getPath()).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        ConnectionProfile copyProfile = ConnectionProfile.fromSystemProperties();
+        copyProfile.setPath(copy.getPath());
+        SqliteConnection.configure(copyProfile);
+        return copy;
+    }
+
+    private static void restore(ConnectionProfile profile, File copy) {
+        SqliteConnection.configure(profile);
+        for(String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(copy.getPath() + suffix).delete();
+        }
+    }
+
+    @Test
+    public void postAndRemoveExpenseKeepBalance() throws Exception {
+        ConnectionProfile previousProfile = SqliteConnection.getProfile();
+        File copy = useCopy(previousProfile);
+        try {
+            SqliteDb db = new SqliteDb();
+            long before = balance(db, 1);
+            int id = db.postExpense(1,1,"TestPosting",2599,DateCodec.toEpochDay(2017,6,1));
+            assertTrue(id > 0);
+            assertEquals(before - 2599, balance(db, 1));
+            assertTrue(db.removeExpensePosting(1, new Expense(id,"TestPosting",0)));
+            assertEquals(before, balance(db, 1));
+            assertFalse(db.removeExpensePosting(1, new Expense(id,"TestPosting",0)));
+            assertNotNull(db.takeLastError());
+            assertEquals(before, balance(db, 1));
+            db.closeConnection();
+        } finally {
+            restore(previousProfile, copy);
+        }
+    }
+
+    @Test
+    public void failedPostingIsRolledBack() throws Exception {
+        ConnectionProfile previousProfile = SqliteConnection.getProfile();
+        File copy = useCopy(previousProfile);
+        try {
+            SqliteDb db = new SqliteDb();
+            assertEquals(-1, db.postIncome(-1,1,"NoAccount",100,DateCodec.toEpochDay(2017,6,1)));
+            assertNotNull(db.takeLastError());
+            Connection connection = SqliteConnection.connector();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM incomes WHERE account_id = -1")) {
+                resultSet.next();
+                assertEquals(0, resultSet.getInt(1));
+            }
+            connection.close();
+            int id = db.postIncome(1,1,"TestPosting",100,DateCodec.toEpochDay(2017,6,1));
+            assertTrue(id > 0);
+            assertTrue(db.removeIncomePosting(1, new Income(id,"TestPosting",100)));
+            db.closeConnection();
+        } finally {
+            restore(previousProfile, copy);
+        }
+    }
+
+    private static long balance(SqliteDb db, int accountId) {
+        User user = db.loadUser(1);
+        for(Account account : user.getAccounts()) {
+            if(account.getId() == accountId) {
+                return account.getAccountBalance();
+            }
+        }
+        throw new AssertionError("no account " + accountId);
     }
 
     @Test
     public void isDbConnected1() throws Exception {
         SqliteDb db = new SqliteDb();
         assertEquals(true,db.isDbConnected());
+        db.closeConnection();
     }
 
     @Test
     public void isPasswordCorrect1() throws Exception {
         SqliteDb db = new SqliteDb();
-        assertEquals(true,db.validatePassword("budget"));
+        assertNotNull(db.authenticate("Micha\u0142", "budget".toCharArray(), LoadListener.NONE, null));
+        db.closeConnection();
     }
 
 
     @Test
     public void getUserData() throws Exception {
         SqliteDb db = new SqliteDb();
-        User user = db.initUserData("budget");
+        User user = db.loadUser(1);
         ArrayList<Account> accounts = user.getAccounts();
         ListIterator<Account> iterator = accounts.listIterator();
         System.out.println(user.getName() + " budget:  " + user.getMonthlyBudget());
         while(iterator.hasNext()) {
             Account acc = iterator.next();
             System.out.println(acc.getAccountName() + " " + acc.getAccountBalance() );
-            System.out.println("wydatki: ");
-            ArrayList<Expense> expenses = acc.getExpensesList();
-            ListIterator<Expense> expenseListIterator = expenses.listIterator();
+            System.out.println("wydatki stale: ");
+            ListIterator<RegularExpense> expenseListIterator = acc.getRegularExpensesList().listIterator();
             while(expenseListIterator.hasNext()) {
                 Expense expense = expenseListIterator.next();
-                System.out.println(expense.getDate().get(Calendar.DAY_OF_MONTH)+"."+expense.getDate().get(Calendar.MONTH)+"."+expense.getDate().get(Calendar.YEAR));
+                System.out.println(expense.getDate().getDayOfMonth()+"."+expense.getDate().getMonthValue()+"."+expense.getDate().getYear());
                 System.out.println("----");
             }
-            ArrayList<Income> incomes = acc.getIncomesList();
-            ListIterator<Income> incomesListIterator = incomes.listIterator();
+            ListIterator<RegularIncome> incomesListIterator = acc.getRegularIncomesList().listIterator();
             while(incomesListIterator.hasNext()) {
                 Income income = incomesListIterator.next();
                 System.out.println(income.getName()+ " :" + income.getMoney() + " " + income.getCategory().getName());
             }
 
         }
+        db.closeConnection();
+    }
+
+    @Test
+    public void getUserDataFillsEveryAccount() throws Exception {
+        SqliteDb db = new SqliteDb();
+        User user = db.loadUser(1);
+        for(Account account : user.getAccounts()) {
+            assertTrue(account.getExpensesList().isEmpty());
+            assertNotNull(account.getRegularExpensesList());
+            assertTrue(account.getIncomesList().isEmpty());
+            assertNotNull(account.getRegularIncomesList());
+        }
+        db.closeConnection();
+    }
+
+    @Test
+    public void getUserDataReportsProgress() throws Exception {
+        SqliteDb db = new SqliteDb();
+        int[] accounts = {-1};
+        long[] rows = {-1};
+        User user = db.authenticate("Micha\u0142", "budget".toCharArray(), (loadedAccounts, loadedRows) -> {
+            accounts[0] = loadedAccounts;
+            rows[0] = loadedRows;
+        }, null);
+        long expected = 0;
+        for(Account account : user.getAccounts()) {
+            expected += account.getRegularExpensesList().size() + account.getRegularIncomesList().size();
+        }
+        assertEquals(user.getAccounts().size(), accounts[0]);
+        assertEquals(expected, rows[0]);
+        db.closeConnection();
+    }
+
+    @Test
+    public void authenticateChecksUsernameAndPassword() throws Exception {
+        SqliteDb db = new SqliteDb();
+        Credential[] verified = {null};
+        User user = db.authenticate("Micha\u0142", "budget".toCharArray(), LoadListener.NONE,
+                credential -> verified[0] = credential);
+        assertNotNull(user);
+        assertEquals(user.getId(), verified[0].getUserId());
+        assertTrue(verified[0].matches("budget".toCharArray()));
+        assertNull(db.authenticate("Micha\u0142", "wrong".toCharArray(), LoadListener.NONE, credential -> fail()));
+        assertNull(db.authenticate("nobody", "budget".toCharArray(), LoadListener.NONE, credential -> fail()));
+        db.closeConnection();
+    }
+
+    @Test
+    public void parallelHydrationMatchesSequential() throws Exception {
+        ConnectionProfile previousProfile = SqliteConnection.getProfile();
+        File copy = useCopy(previousProfile);
+        try {
+            SqliteDb db = new SqliteDb();
+            db.insertAccount(1,"ParallelHydration",100);
+            String sequential = describe(db.loadUser(1));
+            db.setHydrationParallelism(3);
+            long[] rows = {-1};
+            User user = db.authenticate("Micha\u0142", "budget".toCharArray(),
+                    (loadedAccounts, loadedRows) -> rows[0] = loadedRows, null);
+            assertEquals(sequential, describe(user));
+            assertEquals(sequential, describe(db.loadUser(1)));
+            long expected = 0;
+            for(Account account : user.getAccounts()) {
+                expected += account.getRegularExpensesList().size() + account.getRegularIncomesList().size();
+            }
+            assertEquals(expected, rows[0]);
+            db.closeConnection();
+        } finally {
+            restore(previousProfile, copy);
+        }
+    }
+
+    private static String describe(User user) {
+        StringBuilder description = new StringBuilder();
+        for(Account account : user.getAccounts()) {
+            description.append(account.getClass().getSimpleName()).append(' ').append(account.getId()).append(':');
+            account.getRegularExpensesList().forEach(expense -> description.append(" r").append(expense.getId()));
+            account.getRegularIncomesList().forEach(income -> description.append(" q").append(income.getId()));
+            description.append('\n');
+        }
+        return description.toString();
+    }
+
+    @Test(expected = CancellationException.class)
+    public void getUserDataStopsWhenInterrupted() throws Exception {
+        SqliteDb db = new SqliteDb();
+        Thread.currentThread().interrupt();
+        try {
+            db.authenticate("Micha\u0142", "budget".toCharArray(), LoadListener.NONE, null);
+        } finally {
+            Thread.interrupted();
+            db.closeConnection();
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+import database.SqliteConnection;
+import database.SqliteWriter;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for SqliteWriter and connection profile
+ */
+public class SqliteWriterTest {
+    @Test
+    public void connectionsUseWalJournal() throws Exception {
+        Connection connection = SqliteConnection.getPool().lease();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+            assertTrue(resultSet.next());
+            assertEquals("wal", resultSet.getString(1).toLowerCase());
+        }
+        SqliteConnection.getPool().release(connection);
+    }
+
+    @Test
+    public void writesRunOnWriterThread() throws Exception {
+        SqliteWriter writer = SqliteConnection.getWriter();
+        String threadName = writer.submit(db -> Thread.currentThread().getName()).get();
+        assertEquals("sqlite-writer", threadName);
+        writer.write(db -> assertTrue(db.isDbConnected()));
+    }
+}
@@ -0,0 +1,44 @@
+import database.SqliteConnection;
+import database.StatementCache;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for StatementCache class
+ */
+public class StatementCacheTest {
+    @Test
+    public void sameSqlReusesStatement() throws Exception {
+        Connection connection = SqliteConnection.connector();
+        StatementCache cache = new StatementCache(connection, 4);
+        long hits = StatementCache.getHits();
+        long misses = StatementCache.getMisses();
+        PreparedStatement first = cache.prepare("SELECT * FROM users WHERE id = ?");
+        PreparedStatement second = cache.prepare("SELECT * FROM users WHERE id = ?");
+        assertSame(first, second);
+        assertEquals(hits + 1, StatementCache.getHits());
+        assertEquals(misses + 1, StatementCache.getMisses());
+        cache.close();
+        connection.close();
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementIsClosed() throws Exception {
+        Connection connection = SqliteConnection.connector();
+        StatementCache cache = new StatementCache(connection, 2);
+        PreparedStatement first = cache.prepare("SELECT 1");
+        cache.prepare("SELECT 2");
+        cache.prepare("SELECT 1");
+        PreparedStatement third = cache.prepare("SELECT 3");
+        assertEquals(2, cache.size());
+        assertFalse(first.isClosed());
+        assertFalse(third.isClosed());
+        cache.close();
+        assertTrue(first.isClosed());
+        connection.close();
+    }
+}
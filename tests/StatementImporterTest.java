@@ -0,0 +1,143 @@
+import database.ConnectionProfile;
+import database.SqliteConnection;
+import importer.CategoryMapper;
+import importer.CsvStatementReader;
+import importer.StatementImporter;
+import importer.StatementLine;
+import importer.StatementReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * End-to-end JUnit tests for StatementImporter class, working on a copy of database.db
+ */
+public class StatementImporterTest {
+    private ConnectionProfile previousProfile;
+    private File database;
+    private StatementImporter importer;
+
+    @Before
+    public void useCopy() throws Exception {
+        previousProfile = SqliteConnection.getProfile();
+        database = File.createTempFile("import-test", ".db");
+        Files.copy(new File(previousProfile.getPath()).toPath(), database.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        ConnectionProfile profile = ConnectionProfile.fromSystemProperties();
+        profile.setPath(database.getPath());
+        SqliteConnection.configure(profile);
+        importer = new StatementImporter(1, new CategoryMapper(new ArrayList<>(), new ArrayList<>(), 1, 1));
+    }
+
+    @After
+    public void restoreProfile() {
+        SqliteConnection.configure(previousProfile);
+        for(String suffix : new String[]{"", "-wal", "-shm"}) {
+            new File(database.getPath() + suffix).delete();
+        }
+    }
+
+    @Test
+    public void importPostsRowsAndChangesBalance() throws Exception {
+        long expenses = count("SELECT COUNT(*) FROM expenses");
+        long incomes = count("SELECT COUNT(*) FROM incomes");
+        long balance = count("SELECT balance FROM accounts WHERE id = 1");
+        StringBuilder csv = new StringBuilder("date,name,amount,category\n");
+        for(int i = 0; i < 12_000; i++) {
+            csv.append("2017-05-17,row ").append(i).append(i % 3 == 0 ? ",10.00" : ",-2.50").append(",food\n");
+        }
+        StatementImporter.Result result = importer.importStatement(
+                new CsvStatementReader(new StringReader(csv.toString())), "rows");
+        assertEquals(8_000, result.getExpenses());
+        assertEquals(4_000, result.getIncomes());
+        assertEquals(expenses + 8_000, count("SELECT COUNT(*) FROM expenses"));
+        assertEquals(incomes + 4_000, count("SELECT COUNT(*) FROM incomes"));
+        assertEquals(balance + 4_000 * 1000 - 8_000 * 250, count("SELECT balance FROM accounts WHERE id = 1"));
+
+        StatementImporter.Result again = importer.importStatement(
+                new CsvStatementReader(new StringReader(csv.toString())), "rows");
+        assertEquals(0, again.getExpenses() + again.getIncomes());
+        assertEquals(12_000, again.getSkippedLines());
+        assertEquals(expenses + 8_000, count("SELECT COUNT(*) FROM expenses"));
+    }
+
+    @Test
+    public void badLineKeepsCommittedChunksAndImportResumes() throws Exception {
+        long expenses = count("SELECT COUNT(*) FROM expenses");
+        long balance = count("SELECT balance FROM accounts WHERE id = 1");
+        StringBuilder csv = new StringBuilder("date,name,amount,category\n");
+        for(int i = 0; i < 11_000; i++) {
+            csv.append("2017-05-17,row ").append(i).append(",-1.00,food\n");
+        }
+        try {
+            importer.importStatement(new CsvStatementReader(
+                    new StringReader(csv + "yesterday,broken,-1.00,food\n")), "broken");
+            fail("invalid date should fail the import");
+        } catch (IOException exc) {
+            assertTrue(exc.getMessage().contains("to continue"));
+        }
+        assertEquals(expenses + 10_000, count("SELECT COUNT(*) FROM expenses"));
+        assertEquals(balance - 10_000 * 100, count("SELECT balance FROM accounts WHERE id = 1"));
+
+        StatementImporter.Result result = importer.importStatement(
+                new CsvStatementReader(new StringReader(csv.toString())), "broken");
+        assertEquals(1_000, result.getExpenses());
+        assertEquals(10_000, result.getSkippedLines());
+        assertEquals(expenses + 11_000, count("SELECT COUNT(*) FROM expenses"));
+        assertEquals(balance - 11_000 * 100, count("SELECT balance FROM accounts WHERE id = 1"));
+    }
+
+    @Test(timeout = 10_000)
+    public void parserFailureDoesNotHang() throws Exception {
+        long incomes = count("SELECT COUNT(*) FROM incomes");
+        StatementReader failing = new StatementReader() {
+            private int lines;
+
+            @Override
+            public boolean next(StatementLine line) {
+                if(++lines > 7_000) {
+                    throw new IllegalArgumentException("unexpected record");
+                }
+                line.setDate(20170517);
+                line.setAmountCents(100);
+                line.getName().setLength(0);
+                line.getName().append("line ").append(lines);
+                line.getCategory().setLength(0);
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            importer.importStatement(failing, "failing");
+            fail("parser failure should fail the import");
+        } catch (IOException exc) {
+            assertTrue(exc.getCause() instanceof IllegalArgumentException);
+        }
+        assertEquals(incomes + 5_000, count("SELECT COUNT(*) FROM incomes"));
+    }
+
+    private long count(String sql) throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database.getPath());
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import importer.CsvStatementReader;
+import importer.FieldParser;
+import importer.OfxStatementReader;
+import importer.StatementLine;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for bank statement readers
+ */
+public class StatementReaderTest {
+    @Test
+    public void parseDate() throws Exception {
+        assertEquals(20170517, FieldParser.parseDate("2017-05-17"));
+        assertEquals(20170610, FieldParser.parseDate("2017.06.10"));
+        assertEquals(20170531, FieldParser.parseDate("31.05.2017"));
+        assertEquals(20170517, FieldParser.parseDate("20170517120000[-5:EST]"));
+        assertEquals(FieldParser.INVALID, FieldParser.parseDate("2017-13-01"));
+        assertEquals(FieldParser.INVALID, FieldParser.parseDate("yesterday"));
+    }
+
+    @Test
+    public void parseAmount() throws Exception {
+        assertEquals(-4000, FieldParser.parseAmountCents("-40.00"));
+        assertEquals(123456, FieldParser.parseAmountCents("1 234,56"));
+        assertEquals(123456, FieldParser.parseAmountCents("1,234.56"));
+        assertEquals(150, FieldParser.parseAmountCents("1.5"));
+        assertEquals(-1200, FieldParser.parseAmountCents("(12)"));
+        assertEquals(123456700, FieldParser.parseAmountCents("1.234.567"));
+    }
+
+    @Test
+    public void ambiguousAmountsAreRejected() throws Exception {
+        for(String amount : new String[]{"12.345", "1,234.567", "12.3456", "12."}) {
+            try {
+                FieldParser.parseAmountCents(amount);
+                fail(amount + " should be rejected");
+            } catch (NumberFormatException expected) {
+            }
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void amountOverflowIsRejected() throws Exception {
+        FieldParser.parseAmountCents("92233720368547758.08");
+    }
+
+    @Test
+    public void readCsv() throws Exception {
+        String csv = "date;name;amount;category\r\n" +
+                "2017-05-17;kokos;-40,00;food\r\n" +
+                "2017-06-01;\"salary; June\";1300;salary\r\n";
+        CsvStatementReader reader = new CsvStatementReader(new StringReader(csv));
+        reader.setDelimiter(';');
+        StatementLine line = new StatementLine();
+        assertTrue(reader.next(line));
+        assertEquals(20170517, line.getDate());
+        assertEquals(-4000, line.getAmountCents());
+        assertEquals("kokos", line.getName().toString());
+        assertEquals("food", line.getCategory().toString());
+        assertTrue(reader.next(line));
+        assertEquals("salary; June", line.getName().toString());
+        assertEquals(130000, line.getAmountCents());
+        assertFalse(reader.next(line));
+    }
+
+    @Test
+    public void readOfx() throws Exception {
+        String ofx = "OFXHEADER:100\n<OFX><BANKTRANLIST>\n" +
+                "<STMTTRN><TRNTYPE>DEBIT<DTPOSTED>20170517<TRNAMT>-40.00<NAME>kokos &amp; co\n</STMTTRN>\n" +
+                "<STMTTRN><TRNTYPE>CREDIT<DTPOSTED>20170601120000<TRNAMT>1300.00<MEMO>salary</MEMO></STMTTRN>\n" +
+                "</BANKTRANLIST></OFX>";
+        OfxStatementReader reader = new OfxStatementReader(new StringReader(ofx));
+        StatementLine line = new StatementLine();
+        assertTrue(reader.next(line));
+        assertEquals(20170517, line.getDate());
+        assertEquals(-4000, line.getAmountCents());
+        assertEquals("kokos & co", line.getName().toString());
+        assertTrue(reader.next(line));
+        assertEquals(20170601, line.getDate());
+        assertEquals("salary", line.getName().toString());
+        assertFalse(reader.next(line));
+    }
+}
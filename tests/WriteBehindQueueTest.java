@@ -0,0 +1,175 @@
+import database.PostingRow;
+import database.SqliteConnection;
+import database.WriteBehindQueue;
+import expenses.Expense;
+import org.junit.Test;
+import tools.DateCodec;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests for WriteBehindQueue class
+ */
+public class WriteBehindQueueTest {
+    @Test
+    public void writesInEnqueueOrder() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        List<Integer> order = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            int value = i;
+            futures.add(queue.enqueue(db -> order.add(value)));
+        }
+        queue.flush().get(10, TimeUnit.SECONDS);
+        for(CompletableFuture<Void> future : futures) {
+            assertTrue(future.isDone() && !future.isCompletedExceptionally());
+        }
+        for(int i = 0; i < 100; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void sameKeyIsWrittenOnce() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        CountDownLatch blocked = new CountDownLatch(1);
+        SqliteConnection.getWriter().submit(db -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        });
+        List<Integer> written = new ArrayList<>();
+        CompletableFuture<Void> first = queue.enqueue("accounts:1", db -> written.add(1));
+        CompletableFuture<Void> second = queue.enqueue("accounts:1", db -> written.add(2));
+        blocked.countDown();
+        queue.flush().get(10, TimeUnit.SECONDS);
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertEquals(1, written.size());
+        assertEquals(2, (int) written.get(0));
+        assertEquals(1, queue.getCoalesced());
+    }
+
+    @Test
+    public void failedWriteCompletesExceptionally() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        CompletableFuture<Void> failed = queue.enqueue(db -> db.insertExpenseCategory(null));
+        try {
+            failed.join();
+            fail("NOT NULL constraint should fail");
+        } catch (CompletionException exc) {
+            assertTrue(exc.getCause() instanceof SQLException);
+        }
+        assertEquals(1, queue.getFailures());
+    }
+
+    @Test
+    public void removingMissingPostingFails() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        CompletableFuture<Void> removal = queue.enqueue(db -> db.removeExpensePosting(1, new Expense(-1, "missing", 100)));
+        try {
+            removal.join();
+            fail("removal of missing expense should fail");
+        } catch (CompletionException exc) {
+            assertTrue(exc.getCause() instanceof SQLException);
+        }
+    }
+
+    @Test
+    public void failedWriteDoesNotFailItsFlush() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        CountDownLatch blocked = new CountDownLatch(1);
+        SqliteConnection.getWriter().submit(db -> {
+            try {
+                blocked.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        });
+        long before = countExpenses();
+        List<Integer> written = new ArrayList<>();
+        List<PostingRow> rows = new ArrayList<>();
+        rows.add(new PostingRow(1,1,"TestRolledBack",100,DateCodec.toEpochDay(2016,1,12)));
+        CompletableFuture<Void> first = queue.enqueue(db -> written.add(1));
+        CompletableFuture<Void> failed = queue.enqueue(db -> {
+            assertNotNull(db.insertExpenses(rows));
+            db.insertExpenseCategory(null);
+        });
+        CompletableFuture<Void> last = queue.enqueue(db -> written.add(3));
+        blocked.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        last.get(10, TimeUnit.SECONDS);
+        try {
+            failed.join();
+            fail("NOT NULL constraint should fail");
+        } catch (CompletionException exc) {
+            assertTrue(exc.getCause() instanceof SQLException);
+        }
+        assertEquals(2, written.size());
+        assertEquals(1, queue.getFailures());
+        assertEquals(1, queue.getFlushes());
+        assertEquals(before, countExpenses());
+    }
+
+    @Test
+    public void busyWriteIsRetried() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        queue.setRetryDelayMillis(1);
+        int[] attempts = new int[1];
+        queue.enqueue(db -> {
+            if(++attempts[0] < 3) {
+                throw new RuntimeException(new SQLException("[SQLITE_BUSY] The database file is locked", null, 5));
+            }
+        });
+        queue.flush().get(10, TimeUnit.SECONDS);
+        assertEquals(3, attempts[0]);
+        assertEquals(2, queue.getRetries());
+    }
+
+    @Test
+    public void batchInsertJoinsFlushTransaction() throws Exception {
+        WriteBehindQueue queue = new WriteBehindQueue(SqliteConnection.getWriter());
+        long before = countExpenses();
+        List<PostingRow> rows = new ArrayList<>();
+        rows.add(new PostingRow(1,1,"TestQueuedBatch1",100,DateCodec.toEpochDay(2016,1,12)));
+        rows.add(new PostingRow(1,1,"TestQueuedBatch2",200,DateCodec.toEpochDay(2016,1,13)));
+        CompletableFuture<Void> failed = queue.enqueue(db -> {
+            db.setBatchCommitInterval(1);
+            try {
+                assertNotNull(db.insertExpenses(rows));
+                throw new IllegalStateException("later write fails");
+            } finally {
+                db.setBatchCommitInterval(10_000);
+            }
+        });
+        try {
+            failed.join();
+            fail("mutation should fail");
+        } catch (CompletionException exc) {
+            assertTrue(exc.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(before, countExpenses());
+    }
+
+    private static long countExpenses() throws SQLException {
+        try (Connection connection = SqliteConnection.connector();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM expenses")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}